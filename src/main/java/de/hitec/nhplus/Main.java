@@ -3,11 +3,15 @@ package de.hitec.nhplus;
 import de.hitec.nhplus.datastorage.ConnectionBuilder;
 
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.DaoMetrics;
 import de.hitec.nhplus.presenter.UserLoginPresenter;
+import de.hitec.nhplus.utils.FxStallMonitor;
+import de.hitec.nhplus.utils.StartupOrchestrator;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
@@ -20,7 +24,36 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
+        FxStallMonitor.start();
+        DaoMetrics.start();
+        DaoMetrics.setScreen("UserLoginView");
+        // the database is opened, migrated and preloaded in the background while the login form is shown
+        StartupOrchestrator.start().whenComplete((ignored, exception) -> {
+            if (exception != null) {
+                Throwable cause = exception.getCause() != null ? exception.getCause() : exception;
+                Platform.runLater(() -> showDatabaseError(cause));
+            }
+        });
         loginWindow();
+        StartupOrchestrator.mark("Anmeldung angezeigt");
+    }
+
+    /**
+     * Shows an error message, if the database could not be opened or a migration script failed, and exits the
+     * application. A failed script was rolled back, so the data is untouched.
+     *
+     * @param exception The cause of the failed preparation.
+     */
+    private void showDatabaseError(Throwable exception) {
+        exception.printStackTrace();
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Datenbankfehler");
+        alert.setHeaderText("Die Datenbank konnte nicht aktualisiert werden.");
+        alert.setContentText(exception.getMessage());
+        alert.showAndWait();
+        ConnectionBuilder.closeConnection();
+        Platform.exit();
+        System.exit(1);
     }
 
     /**
@@ -46,6 +79,7 @@ public class Main extends Application {
             this.primaryStage.show();
 
             this.primaryStage.setOnCloseRequest(event -> {
+                DaoFactory.getDaoFactory().closeWriteQueues();
                 ConnectionBuilder.closeConnection();
                 Platform.exit();
                 System.exit(0);
@@ -0,0 +1,173 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Runs the operations of a DAO in the background and returns their results as <code>CompletableFuture</code>s, so
+ * the views can request several lists at once without blocking the FX thread. A failed operation completes its future
+ * exceptionally with the <code>SQLException</code>.
+ *
+ * SQLite allows only one writer at a time, so all writes of all <code>AsyncDao</code>s are executed one after another
+ * on a single writer thread, whose queue holds at most <code>MAX_QUEUED_WRITES</code> writes; further writes are
+ * rejected. Reads are executed one after another on a single reader thread. Every operation gets the DAO of its thread
+ * from the factory, because the statement cache of a DAO must not be shared between threads.
+ *
+ * Unlike the {@link WriteBehindQueue}, the threads do not open connections of their own: their DAOs use the shared
+ * connection of the {@link ConnectionBuilder}, like the DAOs of the FX thread. The driver executes only one call of a
+ * connection at a time, so the calls of the reader thread, the writer thread and the FX thread are serialized on the
+ * shared connection, and a long read delays a write and vice versa; the threads only keep the FX thread free. The
+ * operations must therefore not start transactions: the shared connection stays in auto-commit mode, so a statement of
+ * one thread never becomes part of a transaction of another one.
+ *
+ * Every future fails with a <code>TimeoutException</code> after the timeout of this <code>AsyncDao</code>. A future,
+ * which timed out or was cancelled before its operation started, removes the operation from the queue. An operation,
+ * which is already running, is finished, but its result is discarded.
+ *
+ * @param <T> Type of the entities.
+ * @param <D> Type of the DAO, so specific queries of the DAO can be run with {@link #query(SqlFunction)}.
+ */
+public class AsyncDao<T, D extends Dao<T>> {
+
+    /**
+     * An operation of a DAO.
+     */
+    @FunctionalInterface
+    public interface SqlFunction<D, R> {
+        R apply(D dao) throws SQLException;
+    }
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    private static final int MAX_QUEUED_WRITES = 256;
+
+    private static final ThreadPoolExecutor WRITER = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_WRITES), runnable -> {
+        Thread thread = new Thread(runnable, "nhplus-dao-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ThreadPoolExecutor READER = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "nhplus-dao-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Supplier<D> daoCreator;
+    private final Duration timeout;
+
+    /**
+     * @param daoCreator Returns the DAO of the calling thread, e.g. from the {@link DaoFactory}.
+     */
+    public AsyncDao(Supplier<D> daoCreator) {
+        this(daoCreator, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param daoCreator Returns the DAO of the calling thread, e.g. from the {@link DaoFactory}.
+     * @param timeout    Time after which the futures fail.
+     */
+    public AsyncDao(Supplier<D> daoCreator, Duration timeout) {
+        this.daoCreator = daoCreator;
+        this.timeout = timeout;
+    }
+
+    public CompletableFuture<Void> create(T t) {
+        return execute(dao -> {
+            dao.create(t);
+            return null;
+        });
+    }
+
+    public CompletableFuture<T> read(long key) {
+        return query(dao -> dao.read(key));
+    }
+
+    public CompletableFuture<List<T>> readAll() {
+        return query(Dao::readAll);
+    }
+
+    public CompletableFuture<Void> update(T t) {
+        return execute(dao -> {
+            dao.update(t);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteById(long key) {
+        return execute(dao -> {
+            dao.deleteById(key);
+            return null;
+        });
+    }
+
+    /**
+     * Runs a reading operation on the reader thread.
+     *
+     * @param operation Operation, which gets the DAO of the thread.
+     * @return Future of the result.
+     */
+    public <R> CompletableFuture<R> query(SqlFunction<D, R> operation) {
+        return submit(READER, operation);
+    }
+
+    /**
+     * Runs a writing operation on the writer thread.
+     *
+     * @param operation Operation, which gets the DAO of the thread.
+     * @return Future of the result, which fails with a <code>RejectedExecutionException</code>, if too many writes
+     * are waiting.
+     */
+    public <R> CompletableFuture<R> execute(SqlFunction<D, R> operation) {
+        return submit(WRITER, operation);
+    }
+
+    /**
+     * Publishes the rows of a streaming query of the DAO, e.g. <code>dao -> dao.stream(fetchSize)</code>. The cursor of
+     * every subscription is opened and read on the reader thread, as far as the subscriber requested rows. The
+     * timeout does not apply.
+     *
+     * @param opener Opens the stream with the DAO of the thread.
+     * @return Publisher of the rows.
+     */
+    public <R> QueryPublisher<R> publish(SqlFunction<D, Stream<R>> opener) {
+        return new QueryPublisher<>(() -> opener.apply(this.daoCreator.get()), READER);
+    }
+
+    private <R> CompletableFuture<R> submit(ThreadPoolExecutor executor, SqlFunction<D, R> operation) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (result.isDone()) {
+                    // cancelled or timed out while waiting
+                    return;
+                }
+                try {
+                    result.complete(operation.apply(this.daoCreator.get()));
+                } catch (SQLException | RuntimeException exception) {
+                    result.completeExceptionally(exception);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            result.completeExceptionally(exception);
+            return result;
+        }
+        result.whenComplete((value, exception) -> {
+            if (exception != null && task.cancel(false)) {
+                executor.purge();
+            }
+        });
+        return result.orTimeout(this.timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,12 +1,15 @@
 package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.ChangeTracker;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The CaregiverDao class provides an implementation for managing caregiver records in a database.
@@ -20,7 +23,41 @@ import java.util.ArrayList;
  * - Translating {@code ResultSet} data into {@code Caregiver} objects or lists of {@code Caregiver}.
  * - Executing SQL operations for inserting, reading, updating, and deleting caregiver records.
  */
-public class CaregiverDao extends DaoImp<Caregiver> {
+public class CaregiverDao extends PagedDaoImp<Caregiver> {
+
+    // the fields of Caregiver, which can be changed, mapped to their columns in the order of the table
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("firstName", "firstname");
+        COLUMNS.put("surname", "surname");
+        COLUMNS.put("telNumber", "telNumber");
+    }
+
+    // the fields, which the views can sort by, mapped to their columns; every column is indexed (V6, V7)
+    private static final Map<String, String> SORT_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        SORT_COLUMNS.put("id", "cgID");
+        SORT_COLUMNS.put("firstName", "firstname");
+        SORT_COLUMNS.put("surname", "surname");
+        SORT_COLUMNS.put("telNumber", "telNumber");
+    }
+
+    // maps the rows of all queries by the names of their columns
+    private static final RowMapper<Caregiver> MAPPER = new RowMapper<>(
+            "cgID", "firstname", "surname", "telNumber", "version") {
+        @Override
+        protected Caregiver map(ResultSet result, int[] columns) throws SQLException {
+            Caregiver caregiver = new Caregiver(
+                    result.getInt(columns[0]),
+                    result.getString(columns[1]),
+                    result.getString(columns[2]),
+                    result.getString(columns[3]));
+            caregiver.getChangeTracker().setVersion(result.getLong(columns[4]));
+            return caregiver;
+        }
+    };
 
     /**
      * Constructs a new instance of the CaregiverDao class. This class is responsible
@@ -33,48 +70,17 @@ public class CaregiverDao extends DaoImp<Caregiver> {
         super(connection);
     }
 
-    /**
-     * Maps a single row from a {@code ResultSet} to an instance of the {@code Caregiver} class.
-     * The {@code ResultSet} is expected to contain the following columns in order:
-     * - Column 1: {@code cgID} (Integer)
-     * - Column 2: {@code firstName} (String)
-     * - Column 3: {@code surname} (String)
-     * - Column 4: {@code telNumber} (String)
-     *
-     * @param set The {@code ResultSet} containing the data to be mapped to a {@code Caregiver} object.
-     * @return A new instance of {@code Caregiver} populated with data from the {@code ResultSet}.
-     * @throws SQLException If an SQL error occurs while reading data from the {@code ResultSet}.
-     */
     @Override
-    protected Caregiver getInstanceFromResultSet(ResultSet set) throws SQLException {
-        return new Caregiver(
-                set.getInt(1),
-                set.getString(2),
-                set.getString(3),
-                set.getString(4)
-        );
+    protected RowMapper<Caregiver> getRowMapper() {
+        return MAPPER;
     }
 
-    /**
-     * Extracts a list of Caregiver objects from a given ResultSet.
-     * Each row in the ResultSet is mapped to a Caregiver object.
-     *
-     * @param set the ResultSet containing caregiver data to be transformed into objects.
-     *            It should represent rows of caregivers in the database.
-     * @return an ArrayList of Caregiver objects populated with data from the ResultSet.
-     * @throws SQLException if any SQL error occurs while accessing the ResultSet.
-     */
     @Override
-    protected ArrayList<Caregiver> getListFromResultSet(ResultSet set) throws SQLException {
-        ArrayList<Caregiver> list = new ArrayList<>();
-        while (set.next()) {
-            list.add(new Caregiver(
-                    set.getInt(1),
-                    set.getString(2),
-                    set.getString(3),
-                    set.getString(4)));
-        }
-        return list;
+    protected Caregiver copy(Caregiver caregiver) {
+        Caregiver copy = new Caregiver(caregiver.getId(), caregiver.getFirstName(), caregiver.getSurname(),
+                caregiver.getTelNumber());
+        copy.getChangeTracker().setVersion(caregiver.getChangeTracker().getVersion());
+        return copy;
     }
 
     /**
@@ -84,21 +90,16 @@ public class CaregiverDao extends DaoImp<Caregiver> {
      * @param caregiver The Caregiver object containing data to be inserted into the database.
      *                  Must have valid firstname, surname, and telephone number values.
      * @return A PreparedStatement object ready to execute the insert operation.
-     *         Returns null if a SQLException occurs during statement preparation.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getCreateStatement(Caregiver caregiver) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "INSERT INTO caregiver (firstname, surname, telnumber) " +
-                    "VALUES (?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, caregiver.getFirstName());
-            preparedStatement.setString(2, caregiver.getSurname());
-            preparedStatement.setString(3, caregiver.getTelNumber());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getCreateStatement(Caregiver caregiver) throws SQLException {
+        final String SQL = "INSERT INTO caregiver (firstname, surname, telnumber) " +
+                "VALUES (?, ?, ?)";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setString(1, caregiver.getFirstName());
+        preparedStatement.setString(2, caregiver.getSurname());
+        preparedStatement.setString(3, caregiver.getTelNumber());
         return preparedStatement;
     }
 
@@ -106,91 +107,121 @@ public class CaregiverDao extends DaoImp<Caregiver> {
      * Generates a PreparedStatement to read a caregiver record from the database by its unique ID.
      *
      * @param cgID The unique identifier of the caregiver to be retrieved.
-     * @return A PreparedStatement for executing the query to retrieve the caregiver by ID,
-     *         or null if an SQLException occurs during statement preparation.
+     * @return A PreparedStatement for executing the query to retrieve the caregiver by ID.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getReadByIDStatement(long cgID) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "SELECT * FROM caregiver WHERE cgID = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, cgID);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getReadByIDStatement(long cgID) throws SQLException {
+        final String SQL = "SELECT * FROM caregiver WHERE cgID = ?";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setLong(1, cgID);
         return preparedStatement;
     }
 
     /**
      * Generates a PreparedStatement to retrieve all rows from the caregiver table.
      * The PreparedStatement is constructed using a pre-defined SQL query.
-     * In case of a SQLException, the exception is caught and stack trace is printed.
      *
-     * @return PreparedStatement to query all rows from the caregiver table,
-     * or null if an exception occurs during statement preparation.
+     * @return PreparedStatement to query all rows from the caregiver table.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getReadAllStatement() {
-        PreparedStatement statement = null;
-        try {
-            final String SQL = "SELECT * FROM caregiver";
-            statement = this.connection.prepareStatement(SQL);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getReadAllStatement() throws SQLException {
+        final String SQL = "SELECT * FROM caregiver";
+        PreparedStatement statement = this.prepare(SQL);
         return statement;
     }
 
     /**
-     * Generates a PreparedStatement to update a Caregiver entity in the database.
-     * The query updates the firstname, surname, and telNumber fields of the
-     * caregiver record identified by cgID.
+     * Generates a <code>PreparedStatement</code> to update the changed columns of the given caregiver, identified by
+     * the id of the caregiver (cgID). Columns, which were not changed since the caregiver was read, are not written.
+     *
+     * @param caregiver Caregiver object to update.
+     * @return <code>PreparedStatement</code> to update the given caregiver, or null, if nothing was changed.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    @Override
+    protected PreparedStatement getUpdateStatement(Caregiver caregiver) throws SQLException {
+        return getUpdateStatement(caregiver, caregiver.getChangeTracker().snapshot());
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to update the columns, which were changed in the snapshot, to the
+     * values of the snapshot.
      *
-     * @param caregiver The Caregiver object containing the updated data to be persisted.
-     *                  This includes the Caregiver's ID, firstname, surname, and phone number.
-     * @return A PreparedStatement object configured to update the specified caregiver in
-     *         the database. Returns null if an SQLException occurs during the statement preparation.
+     * @param caregiver Caregiver object to update.
+     * @param changes   Snapshot of the changed fields.
+     * @return <code>PreparedStatement</code> to update the given caregiver, or null, if nothing was changed.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getUpdateStatement(Caregiver caregiver) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL =
-                    "UPDATE caregiver SET " +
-                            "firstname = ?, " +
-                            "surname = ?, " +
-                            "telNumber = ?" +
-                            "WHERE cgID = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, caregiver.getFirstName());
-            preparedStatement.setString(2, caregiver.getSurname());
-            preparedStatement.setString(3, caregiver.getTelNumber());
-            preparedStatement.setLong(4, caregiver.getId());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+    protected PreparedStatement getUpdateStatement(Caregiver caregiver, ChangeTracker.Snapshot changes)
+            throws SQLException {
+        List<String> fields = getChangedFields(changes, COLUMNS);
+        if (fields.isEmpty()) {
+            return null;
+        }
+        PreparedStatement preparedStatement = this.prepare(buildUpdateSql("caregiver", COLUMNS, fields, "cgID"));
+        int index = 1;
+        for (String field : fields) {
+            preparedStatement.setObject(index++, changes.getValue(field));
         }
+        preparedStatement.setLong(index++, caregiver.getId());
+        preparedStatement.setLong(index, caregiver.getChangeTracker().getVersion());
         return preparedStatement;
     }
 
+    @Override
+    protected ChangeTracker getChangeTracker(Caregiver caregiver) {
+        return caregiver.getChangeTracker();
+    }
+
+    @Override
+    protected Map<String, String> getSortColumns() {
+        return SORT_COLUMNS;
+    }
+
+    @Override
+    protected String getKeyField() {
+        return "id";
+    }
+
+    @Override
+    protected String getListSql() {
+        return "SELECT * FROM caregiver";
+    }
+
+    @Override
+    protected Object getSortValue(Caregiver caregiver, String field) {
+        return field.equals("id") ? caregiver.getId() : getColumnValue(caregiver, field);
+    }
+
+    private Object getColumnValue(Caregiver caregiver, String field) {
+        switch (field) {
+            case "firstName":
+                return caregiver.getFirstName();
+            case "surname":
+                return caregiver.getSurname();
+            case "telNumber":
+                return caregiver.getTelNumber();
+            default:
+                throw new IllegalArgumentException("Unbekanntes Feld: " + field);
+        }
+    }
+
     /**
      * Generates a PreparedStatement to delete a caregiver record from the database
      * based on the provided caregiver ID.
      *
      * @param cgID The ID of the caregiver to be deleted.
      * @return A PreparedStatement object configured to execute the deletion query.
-     *         Returns null if an SQLException occurs during statement preparation.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getDeleteStatement(long cgID) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "DELETE FROM caregiver WHERE cgID = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, cgID);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getDeleteStatement(long cgID) throws SQLException {
+        final String SQL = "DELETE FROM caregiver WHERE cgID = ?";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setLong(1, cgID);
         return preparedStatement;
     }
 }
@@ -3,22 +3,35 @@ package de.hitec.nhplus.datastorage;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.sqlite.SQLiteConfig;
 
 public class ConnectionBuilder {
 
-    private static final String DB_NAME = "nursingHome.db";
-    private static final String URL = "jdbc:sqlite:db/" + DB_NAME;
+    private static final DatabaseConfig CONFIG = DatabaseConfig.load();
 
     private static Connection connection;
 
+    // the generations of the connections, which were used so far; closed connections are dropped by the GC
+    private static final Map<Connection, Long> generations = new WeakHashMap<>();
+    private static long lastGeneration;
+
+    /**
+     * Returns the connection shared by the DAOs of all threads of the views, including the threads of
+     * {@link AsyncDao}. Its calls are serialized by the driver. Only the migrations and the setup of the database
+     * use transactions on it, before the views run; afterwards it stays in auto-commit mode, and code, which needs a
+     * transaction, opens its own connection with {@link #openConnection(DatabaseConfig)}, like the
+     * {@link WriteBehindQueue}.
+     *
+     * @return The shared connection, which is opened with the first call, or null, if it could not be opened.
+     */
     synchronized public static Connection getConnection() {
         try {
             if (ConnectionBuilder.connection == null) {
-                SQLiteConfig configuration = new SQLiteConfig();
-                configuration.enforceForeignKeys(true);
-                ConnectionBuilder.connection = DriverManager.getConnection(URL, configuration.toProperties());
+                ConnectionBuilder.connection = ConnectionBuilder.openConnection(CONFIG);
             }
         } catch (SQLException exception) {
             System.out.println("Verbindung zur Datenbank konnte nicht aufgebaut werden!");
@@ -27,6 +40,58 @@ public class ConnectionBuilder {
         return ConnectionBuilder.connection;
     }
 
+    /**
+     * @return The configuration of the shared connection, read from <code>database.properties</code>.
+     */
+    public static DatabaseConfig getConfig() {
+        return CONFIG;
+    }
+
+    /**
+     * Opens a new connection, which is not shared, and tunes it with the PRAGMAs of the configured profile. Used by
+     * <code>getConnection()</code> and by benchmarks comparing the profiles.
+     *
+     * @param config Path and profile of the database.
+     * @return The new connection. The caller has to close it.
+     * @throws SQLException If the database could not be opened or a PRAGMA failed.
+     */
+    public static Connection openConnection(DatabaseConfig config) throws SQLException {
+        SQLiteConfig configuration = new SQLiteConfig();
+        configuration.enforceForeignKeys(true);
+        Connection connection = DriverManager.getConnection(config.getUrl(), configuration.toProperties());
+        try {
+            ConnectionBuilder.applyPragmas(connection, config.getPragmas());
+        } catch (SQLException exception) {
+            connection.close();
+            throw exception;
+        }
+        return connection;
+    }
+
+    /**
+     * Returns the generation of a connection: a number, which is assigned to the connection with the first call and
+     * never to another connection, also not after the connection was closed. Caches key their results by it, because
+     * the state SQLite reports, e.g. <code>data_version</code>, belongs to one connection.
+     *
+     * @param connection An open connection.
+     * @return The generation of the connection.
+     */
+    synchronized public static long getGeneration(Connection connection) {
+        return generations.computeIfAbsent(connection, key -> ++lastGeneration);
+    }
+
+    /**
+     * Applies the PRAGMAs of a profile in the given order. <code>page_size</code> only takes effect on a new database,
+     * before the journal mode is switched to WAL.
+     */
+    private static void applyPragmas(Connection connection, Map<String, String> pragmas) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                statement.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        }
+    }
+
     synchronized public static void closeConnection() {
         try {
             if (ConnectionBuilder.connection != null) {
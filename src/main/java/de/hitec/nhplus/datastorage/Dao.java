@@ -2,6 +2,8 @@ package de.hitec.nhplus.datastorage;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface Dao<T> {
     void create(T t) throws SQLException;
@@ -10,6 +12,26 @@ public interface Dao<T> {
 
     List<T> readAll() throws SQLException;
 
+    /**
+     * Streams all rows without building a list. The rows are read from a forward-only cursor, which is fetched in
+     * chunks of <code>fetchSize</code> rows while the stream is consumed. The stream has to be closed, preferably with
+     * try-with-resources, to close the cursor. Errors while reading are thrown as {@link UncheckedSQLException}.
+     *
+     * @param fetchSize Number of rows fetched at once, 0 for the default of the driver.
+     * @return Lazily filled stream of all rows.
+     * @throws SQLException If the query could not be executed.
+     */
+    Stream<T> stream(int fetchSize) throws SQLException;
+
+    /**
+     * Passes all rows to the action, one after another, without building a list. The cursor is closed afterwards.
+     *
+     * @param fetchSize Number of rows fetched at once, 0 for the default of the driver.
+     * @param action    Action to apply to every row.
+     * @throws SQLException If the rows could not be read.
+     */
+    void forEach(int fetchSize, Consumer<? super T> action) throws SQLException;
+
     void update(T t) throws SQLException;
 
     void deleteById(long key) throws SQLException;
@@ -1,45 +1,213 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Hands out the DAOs of the shared connection. The DAOs are reused, so their statement caches survive between the
+ * calls of the views. Because the statement cache of a DAO must not be used by two threads at the same time, every
+ * thread gets its own instance of each DAO. When the shared connection was closed and opened again, new DAOs are
+ * created for the new connection and the statements of the old ones are closed. Threads, which end, close their DAOs
+ * with {@link #releaseThreadDaos()}.
+ */
 public class DaoFactory {
 
-    private static DaoFactory instance;
+    private WriteBehindQueue<Patient> patientWriteQueue;
+    private WriteBehindQueue<Caregiver> caregiverWriteQueue;
+
+    // the DAOs of each thread, created for the connection, which was shared when they were created
+    private final ThreadLocal<ThreadDaos> threadDaos = new ThreadLocal<>();
 
     private DaoFactory() {
     }
 
-    public static DaoFactory getDaoFactory() {
-        if (DaoFactory.instance == null) {
-            DaoFactory.instance = new DaoFactory();
+    // initialized by the class loader with the first access, which is thread-safe without locking
+    private static class Holder {
+        private static final DaoFactory INSTANCE = new DaoFactory();
+    }
+
+    private static class ThreadDaos {
+        private final Connection connection;
+        private final Map<Class<?>, Object> daos = new HashMap<>();
+
+        private ThreadDaos(Connection connection) {
+            this.connection = connection;
+        }
+
+        // closes the cached statements of the DAOs, which are dropped
+        private void close() {
+            for (Object dao : this.daos.values()) {
+                if (dao instanceof AutoCloseable closeable) {
+                    try {
+                        closeable.close();
+                    } catch (Exception exception) {
+                        exception.printStackTrace();
+                    }
+                }
+            }
+            this.daos.clear();
         }
-        return DaoFactory.instance;
     }
 
+    public static DaoFactory getDaoFactory() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the {@code TreatmentDao} of the current thread.
+     *
+     * @return The shared {@code TreatmentDao} of the current thread and connection.
+     */
     public TreatmentDao createTreatmentDao() {
-        return new TreatmentDao(ConnectionBuilder.getConnection());
+        return getDao(TreatmentDao.class, TreatmentDao::new);
     }
 
+    /**
+     * Returns the {@code PatientDao} of the current thread.
+     *
+     * @return The shared {@code PatientDao} of the current thread and connection.
+     */
     public PatientDao createPatientDao() {
-        return new PatientDao(ConnectionBuilder.getConnection());
+        return getDao(PatientDao.class, PatientDao::new);
     }
 
     /**
-     * Creates and returns an instance of {@code CaregiverDao} to manage caregiver-related database operations.
-     * This method initializes the DAO with a database connection retrieved from {@code ConnectionBuilder}.
+     * Returns the instance of {@code CaregiverDao} of the current thread to manage caregiver-related database
+     * operations. The DAO uses the database connection retrieved from {@code ConnectionBuilder}.
      *
-     * @return An instance of {@code CaregiverDao} configured with a valid database connection.
+     * @return The shared {@code CaregiverDao} of the current thread and connection.
      */
     public CaregiverDao createCaregiverDao() {
-        return new CaregiverDao(ConnectionBuilder.getConnection());
+        return getDao(CaregiverDao.class, CaregiverDao::new);
     }
 
     /**
-     * Creates an instance of the UserDao class to manage data access operations
-     * related to the User entity. This method initializes the UserDao with a database
-     * connection provided by the ConnectionBuilder.
+     * Returns the instance of the UserDao class of the current thread to manage data access operations
+     * related to the User entity. The UserDao uses the database connection provided by the ConnectionBuilder.
      *
-     * @return an instance of UserDao configured with a database connection.
+     * @return the shared UserDao of the current thread and connection.
      */
     public UserDao createUserDao() {
-        return new UserDao(ConnectionBuilder.getConnection());
+        return getDao(UserDao.class, UserDao::new);
+    }
+
+    /**
+     * Returns the instance of the ReportDao class of the current thread, which aggregates care minutes per month
+     * for patients, caregivers and care levels.
+     *
+     * @return the shared ReportDao of the current thread and connection.
+     */
+    public ReportDao createReportDao() {
+        return getDao(ReportDao.class, ReportDao::new);
+    }
+
+    /**
+     * Returns the DAO of the current thread, or creates it with the shared connection. The DAOs of a thread are
+     * replaced, if the shared connection changed since they were created.
+     *
+     * @param type    Class of the DAO.
+     * @param creator Creates the DAO with a connection.
+     * @return The DAO of the current thread.
+     */
+    private <D> D getDao(Class<D> type, Function<Connection, D> creator) {
+        Connection connection = ConnectionBuilder.getConnection();
+        ThreadDaos daos = this.threadDaos.get();
+        if (daos == null || daos.connection != connection) {
+            if (daos != null) {
+                daos.close();
+            }
+            daos = new ThreadDaos(connection);
+            this.threadDaos.set(daos);
+        }
+        return type.cast(daos.daos.computeIfAbsent(type, key -> creator.apply(connection)));
+    }
+
+    /**
+     * Closes the statements of the DAOs of the current thread. Threads, which end, call it, because their DAOs are not
+     * used anymore, but would keep their statements open as long as the connection is open. If the thread asks for a
+     * DAO again, a new one is created.
+     */
+    public void releaseThreadDaos() {
+        ThreadDaos daos = this.threadDaos.get();
+        if (daos != null) {
+            daos.close();
+            this.threadDaos.remove();
+        }
+    }
+
+    /**
+     * Creates a facade, which runs the operations of {@code PatientDao}s in the background.
+     *
+     * @return An {@code AsyncDao} of the patients.
+     */
+    public AsyncDao<Patient, PatientDao> createAsyncPatientDao() {
+        return new AsyncDao<>(this::createPatientDao);
+    }
+
+    /**
+     * Creates a facade, which runs the operations of {@code CaregiverDao}s in the background.
+     *
+     * @return An {@code AsyncDao} of the caregivers.
+     */
+    public AsyncDao<Caregiver, CaregiverDao> createAsyncCaregiverDao() {
+        return new AsyncDao<>(this::createCaregiverDao);
+    }
+
+    /**
+     * Creates a facade, which runs the operations of {@code TreatmentDao}s in the background.
+     *
+     * @return An {@code AsyncDao} of the treatments.
+     */
+    public AsyncDao<Treatment, TreatmentDao> createAsyncTreatmentDao() {
+        return new AsyncDao<>(this::createTreatmentDao);
+    }
+
+    /**
+     * Returns the queue, which writes the edited patients in the background. The queue is created with the first
+     * call and shared by all views.
+     *
+     * @return The write-behind queue of the patients.
+     */
+    public synchronized WriteBehindQueue<Patient> getPatientWriteQueue() {
+        if (this.patientWriteQueue == null) {
+            this.patientWriteQueue = new WriteBehindQueue<>("Patient", PatientDao::new, Patient::getId,
+                    Patient::getChangeTracker);
+        }
+        return this.patientWriteQueue;
+    }
+
+    /**
+     * Returns the queue, which writes the edited caregivers in the background. The queue is created with the first
+     * call and shared by all views.
+     *
+     * @return The write-behind queue of the caregivers.
+     */
+    public synchronized WriteBehindQueue<Caregiver> getCaregiverWriteQueue() {
+        if (this.caregiverWriteQueue == null) {
+            this.caregiverWriteQueue = new WriteBehindQueue<>("Caregiver", CaregiverDao::new, Caregiver::getId,
+                    Caregiver::getChangeTracker);
+        }
+        return this.caregiverWriteQueue;
+    }
+
+    /**
+     * Writes the pending changes of all write-behind queues and closes them. Has to be called before the application
+     * exits.
+     */
+    public synchronized void closeWriteQueues() {
+        if (this.patientWriteQueue != null) {
+            this.patientWriteQueue.close();
+            this.patientWriteQueue = null;
+        }
+        if (this.caregiverWriteQueue != null) {
+            this.caregiverWriteQueue.close();
+            this.caregiverWriteQueue = null;
+        }
     }
 }
@@ -1,57 +1,453 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.model.ChangeTracker;
+
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Base class of the DAOs. Every operation is measured by {@link DaoMetrics}. The prepared statements of a DAO are
+ * cached by their SQL, so a DAO, which is used repeatedly, compiles every statement only once. The cache keeps the
+ * <code>STATEMENT_CACHE_SIZE</code> most recently used statements and closes the others, and <code>close</code>
+ * closes all of them. A cached statement is reused by the next call with the same SQL, which closes the
+ * <code>ResultSet</code> of the previous call. Slow executions of the statements are logged by {@link SlowQueryLog}.
+ * The rows of all queries are mapped by the {@link RowMapper} of the DAO, which looks up the columns by name once per
+ * <code>ResultSet</code>. The <code>ResultSet</code>s of lists are closed as soon as the list is built. A stream takes
+ * its statement out of the cache, so other calls cannot close its cursor, and closes the statement together with the
+ * stream.
+ *
+ * Entities with a {@link ChangeTracker} are updated column by column: <code>getUpdateStatement</code> only sets the
+ * changed columns, an entity without changes is not written at all, and the written changes are cleared after the
+ * commit.
+ * The update is conditional on the version of the row, which was read. If the row was changed by another workstation
+ * in the meantime, no row is updated and an {@link OptimisticLockException} is thrown. Errors while preparing the
+ * update are thrown as they are and never reported as a conflict.
+ *
+ * Lists read with <code>readCached</code> are served from the {@link QueryCache}, as long as none of the tables they
+ * read was changed. Every write of a DAO marks its table as changed. DAOs of large tables extend {@link PagedDaoImp},
+ * which reads them page by page.
+ */
+public abstract class DaoImp<T> implements Dao<T>, AutoCloseable {
+    // every combination of changed columns has its own UPDATE, so the cache is bounded
+    private static final int STATEMENT_CACHE_SIZE = 32;
 
-public abstract class DaoImp<T> implements Dao<T> {
     protected Connection connection;
+    protected final String entity;
+    // in access order, so the least recently used statement is evicted and closed first
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= STATEMENT_CACHE_SIZE) {
+                return false;
+            }
+            closeStatement(eldest.getValue());
+            return true;
+        }
+    };
 
     public DaoImp(Connection connection) {
         this.connection = connection;
+        this.entity = getClass().getSimpleName().replace("Dao", "");
     }
 
     @Override
     public void create(T t) throws SQLException {
-        getCreateStatement(t).executeUpdate();
+        try {
+            measure("create", () -> getCreateStatement(t).executeUpdate());
+        } finally {
+            QueryCache.tableChanged(this.entity);
+        }
     }
 
     @Override
     public T read(long key) throws SQLException {
-        T object = null;
-        ResultSet result = getReadByIDStatement(key).executeQuery();
-        if (result.next()) {
-            object = getInstanceFromResultSet(result);
-        }
-        return object;
+        return measure("read", () -> {
+            T object = null;
+            try (ResultSet result = getReadByIDStatement(key).executeQuery()) {
+                if (result.next()) {
+                    object = getRowMapper().mapRow(result);
+                }
+            }
+            return object;
+        });
     }
 
     @Override
     public List<T> readAll() throws SQLException {
-        return getListFromResultSet(getReadAllStatement().executeQuery());
+        return measure("readAll", () -> readList(getReadAllStatement()));
+    }
+
+    @Override
+    public Stream<T> stream(int fetchSize) throws SQLException {
+        return stream("stream", getReadAllStatement(), fetchSize);
+    }
+
+    @Override
+    public void forEach(int fetchSize, Consumer<? super T> action) throws SQLException {
+        try (Stream<T> rows = stream(fetchSize)) {
+            rows.forEach(action);
+        } catch (UncheckedSQLException exception) {
+            throw exception.getCause();
+        }
     }
 
     @Override
     public void update(T t) throws SQLException {
-        getUpdateStatement(t).executeUpdate();
+        ChangeTracker changes = getChangeTracker(t);
+        if (changes != null) {
+            // in auto-commit mode the update is committed, when it returns
+            ChangeTracker.Snapshot written = changes.snapshot();
+            changes.clear(written, update(t, written));
+            return;
+        }
+        try {
+            measure("update", () -> {
+                PreparedStatement statement = getUpdateStatement(t);
+                return statement != null ? statement.executeUpdate() : 0;
+            });
+        } finally {
+            QueryCache.tableChanged(this.entity);
+        }
+    }
+
+    /**
+     * Writes the changed fields of an entity with a {@link ChangeTracker}, as they were when the snapshot was taken.
+     * The entity itself is only read for its key and version, so the snapshot can be written on another thread than
+     * the one editing the entity. Neither the fields are cleared nor the version is incremented, because the
+     * transaction may still be rolled back; the caller passes the snapshot and the returned version to
+     * {@link ChangeTracker#clear} after the commit.
+     *
+     * @param t       The entity.
+     * @param written Snapshot of the changed fields.
+     * @return The version of the row after the update.
+     * @throws OptimisticLockException If the row was changed by another workstation since it was read.
+     * @throws SQLException            If the statement could not be prepared or executed.
+     */
+    long update(T t, ChangeTracker.Snapshot written) throws SQLException {
+        long version = getChangeTracker(t).getVersion();
+        PreparedStatement statement = written.isEmpty() ? null : getUpdateStatement(t, written);
+        if (statement == null) {
+            return version;
+        }
+        int rows;
+        try {
+            rows = measure("update", statement::executeUpdate);
+        } finally {
+            QueryCache.tableChanged(this.entity);
+        }
+        if (rows == 0) {
+            throw new OptimisticLockException(this.entity);
+        }
+        return version + 1;
     }
 
     @Override
     public void deleteById(long key) throws SQLException {
-        getDeleteStatement(key).executeUpdate();
+        try {
+            measure("deleteById", () -> getDeleteStatement(key).executeUpdate());
+        } finally {
+            QueryCache.tableChanged(this.entity);
+        }
+    }
+
+    /**
+     * Reads the rows of a query from the {@link QueryCache}, or executes the query and caches its rows. The rows are
+     * only taken from the cache, if none of the tables of <code>getQueryTables</code> was changed since they were read.
+     * The stamp of the tables is taken before the query, so a write during the query makes the rows stale. The cache
+     * keeps copies of the rows and every read gets new copies of them, so the returned entities can be edited without
+     * changing the cache or the rows of other reads.
+     *
+     * @param operation  Name of the operation for {@link DaoMetrics}.
+     * @param sql        SQL of the query.
+     * @param parameters Values of the parameters.
+     * @return The rows of the query in a new list.
+     * @throws SQLException If the query failed.
+     */
+    protected ArrayList<T> readCached(String operation, String sql, List<Object> parameters) throws SQLException {
+        return readCached(operation, sql, parameters, rows -> rows);
+    }
+
+    /**
+     * Reads a result built from the rows of a query from the {@link QueryCache}, or executes the query and caches the
+     * result. See {@link #readCached(String, String, List)}. The result is built for every read from its own copies
+     * of the rows.
+     *
+     * @param operation  Name of the operation for {@link DaoMetrics}, which also separates the results of the
+     *                   operations in the cache.
+     * @param sql        SQL of the query.
+     * @param parameters Values of the parameters.
+     * @param result     Builds the result from the rows.
+     * @return The cached or new result.
+     * @throws SQLException If the query failed.
+     */
+    protected <R> R readCached(String operation, String sql, List<Object> parameters, Function<ArrayList<T>, R> result)
+            throws SQLException {
+        // the data_version in the stamp belongs to the connection, so results of other connections never match
+        String key = operation + "|" + ConnectionBuilder.getGeneration(this.connection) + "|" + sql + "|" + parameters;
+        return measure(operation, () -> {
+            long[] stamp = getDataStamp(getQueryTables());
+            List<T> cached = QueryCache.get(key, stamp);
+            if (cached != null) {
+                return result.apply(copyAll(cached));
+            }
+            PreparedStatement statement = this.prepare(sql);
+            int index = 1;
+            for (Object parameter : parameters) {
+                statement.setObject(index++, parameter);
+            }
+            ArrayList<T> rows = readList(statement);
+            // copied before the rows are handed out and can be edited
+            QueryCache.put(key, stamp, Collections.unmodifiableList(copyAll(rows)));
+            return result.apply(rows);
+        });
+    }
+
+    private ArrayList<T> copyAll(List<T> rows) {
+        ArrayList<T> copies = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            copies.add(copy(row));
+        }
+        return copies;
+    }
+
+    /**
+     * Returns the state of the data a query reads: the number of changes of each of the given tables and the
+     * <code>data_version</code> of the connection, which SQLite changes whenever another connection committed a write.
+     * Views compare the stamps to skip reloading data, which did not change since it was shown.
+     *
+     * @param tables Names of the entities, whose tables are read.
+     * @return The stamp of the data.
+     * @throws SQLException If the data version could not be read.
+     */
+    public long[] getDataStamp(String... tables) throws SQLException {
+        long[] stamp = new long[tables.length + 1];
+        for (int i = 0; i < tables.length; i++) {
+            stamp[i] = QueryCache.getTableVersion(tables[i]);
+        }
+        try (ResultSet result = this.prepare("PRAGMA data_version").executeQuery()) {
+            stamp[tables.length] = result.next() ? result.getLong(1) : 0;
+        }
+        return stamp;
+    }
+
+    /**
+     * Executes an operation of this DAO and records it in {@link DaoMetrics} under the entity of this DAO.
+     *
+     * @param operation    Name of the operation.
+     * @param sqlOperation The call to the database.
+     * @return The result of the call.
+     * @throws SQLException If the call failed.
+     */
+    protected <R> R measure(String operation, DaoMetrics.SqlOperation<R> sqlOperation) throws SQLException {
+        return DaoMetrics.measure(this.entity, operation, sqlOperation);
+    }
+
+    /**
+     * Executes a query and maps all rows to a list. The <code>ResultSet</code> is closed afterwards.
+     *
+     * @param statement Query with bound parameters.
+     * @return All rows of the query.
+     * @throws SQLException If the query failed.
+     */
+    protected ArrayList<T> readList(PreparedStatement statement) throws SQLException {
+        try (ResultSet result = statement.executeQuery()) {
+            return getRowMapper().mapAll(result);
+        }
+    }
+
+    /**
+     * Executes a query and returns its rows as a lazily filled stream. The statement is removed from the cache, so it
+     * belongs to the stream, and it is closed with the stream. Only opening the cursor is measured.
+     *
+     * @param operation Name of the operation for {@link DaoMetrics}.
+     * @param statement Query with bound parameters, usually returned by <code>prepare</code>.
+     * @param fetchSize Number of rows fetched at once, 0 for the default of the driver.
+     * @return Stream of the rows, which has to be closed.
+     * @throws SQLException If the query failed. The statement is closed then.
+     */
+    protected Stream<T> stream(String operation, PreparedStatement statement, int fetchSize) throws SQLException {
+        this.statements.values().removeIf(cached -> cached == statement);
+        RowMapper<T> mapper = getRowMapper();
+        ResultSet result;
+        try {
+            statement.setFetchSize(fetchSize);
+            result = measure(operation, statement::executeQuery);
+        } catch (SQLException exception) {
+            statement.close();
+            throw exception;
+        }
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private int[] indexes;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!result.next()) {
+                        return false;
+                    }
+                    if (this.indexes == null) {
+                        this.indexes = mapper.resolve(result);
+                    }
+                    action.accept(mapper.map(result, this.indexes));
+                    return true;
+                } catch (SQLException exception) {
+                    throw new UncheckedSQLException(exception);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try (statement; result) {
+                // closes the cursor and the statement
+            } catch (SQLException exception) {
+                throw new UncheckedSQLException(exception);
+            }
+        });
+    }
+
+    /**
+     * Returns the cached <code>PreparedStatement</code> of the given SQL with cleared parameters, or prepares and
+     * caches a new one.
+     *
+     * @param sql SQL of the statement.
+     * @return <code>PreparedStatement</code> to bind the parameters to.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    protected PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = this.statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            DaoMetrics.recordStatementCache(true);
+            statement.clearParameters();
+            return statement;
+        }
+        DaoMetrics.recordStatementCache(false);
+        statement = SlowQueryLog.wrap(this.connection, sql, this.connection.prepareStatement(sql));
+        this.statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Closes all cached statements. The DAO can still be used afterwards, it prepares its statements again.
+     */
+    @Override
+    public void close() {
+        for (PreparedStatement statement : this.statements.values()) {
+            closeStatement(statement);
+        }
+        this.statements.clear();
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the tracker of the changed fields of an entity. Entities without a tracker are always updated
+     * completely.
+     *
+     * @param t The entity.
+     * @return The tracker, or null.
+     */
+    protected ChangeTracker getChangeTracker(T t) {
+        return null;
+    }
+
+    /**
+     * Returns the statement updating the fields of a snapshot. DAOs of entities with a {@link ChangeTracker} have to
+     * bind the values of the snapshot instead of the current values of the entity.
+     *
+     * @param t       The entity.
+     * @param changes Snapshot of the changed fields.
+     * @return The statement, or null, if nothing was changed.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    protected PreparedStatement getUpdateStatement(T t, ChangeTracker.Snapshot changes) throws SQLException {
+        return getUpdateStatement(t);
+    }
+
+    /**
+     * Returns the changed fields of an entity in the canonical order of the columns.
+     *
+     * @param changes Snapshot of the changed fields.
+     * @param columns Names of the fields mapped to the names of their columns, in canonical order.
+     * @return The names of the changed fields.
+     */
+    protected static List<String> getChangedFields(ChangeTracker.Snapshot changes, Map<String, String> columns) {
+        List<String> fields = new ArrayList<>();
+        for (String field : columns.keySet()) {
+            if (changes.isChanged(field)) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Builds an UPDATE statement, which sets only the given columns and increments the version of the row, if it
+     * still has the version, which was read. Every set of changed columns gives a different SQL, so each one is
+     * prepared once and then reused from the statement cache.
+     *
+     * @param table     Name of the table.
+     * @param columns   Names of the fields mapped to the names of their columns.
+     * @param fields    Changed fields, bound as parameters in this order.
+     * @param keyColumn Name of the primary key column, bound after the fields.
+     * @return The SQL of the statement. The version, which was read, is bound as last parameter.
+     */
+    protected static String buildUpdateSql(String table, Map<String, String> columns, List<String> fields,
+                                           String keyColumn) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < fields.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(columns.get(fields.get(i))).append(" = ?");
+        }
+        sql.append(", version = version + 1");
+        return sql.append(" WHERE ").append(keyColumn).append(" = ? AND version = ?").toString();
+    }
+
+    /**
+     * Returns the entities, whose tables are read by the cached queries of this DAO. A cached result is stale, as soon
+     * as one of them was written.
+     *
+     * @return Names of the entities, by default the entity of this DAO.
+     */
+    protected String[] getQueryTables() {
+        return new String[]{this.entity};
     }
 
-    protected abstract T getInstanceFromResultSet(ResultSet set) throws SQLException;
+    /**
+     * @return The mapper of the rows of all queries of this DAO.
+     */
+    protected abstract RowMapper<T> getRowMapper();
 
-    protected abstract ArrayList<T> getListFromResultSet(ResultSet set) throws SQLException;
+    /**
+     * Copies an entity, which was read and not changed, with the version of its row. Used by <code>readCached</code>,
+     * so the cached rows are never the objects the views edit.
+     *
+     * @param t The entity.
+     * @return A new entity with the same values.
+     */
+    protected abstract T copy(T t);
 
-    protected abstract PreparedStatement getCreateStatement(T t);
+    protected abstract PreparedStatement getCreateStatement(T t) throws SQLException;
 
-    protected abstract PreparedStatement getReadByIDStatement(long key);
+    protected abstract PreparedStatement getReadByIDStatement(long key) throws SQLException;
 
-    protected abstract PreparedStatement getReadAllStatement();
+    protected abstract PreparedStatement getReadAllStatement() throws SQLException;
 
-    protected abstract PreparedStatement getUpdateStatement(T t);
+    protected abstract PreparedStatement getUpdateStatement(T t) throws SQLException;
 
-    protected abstract PreparedStatement getDeleteStatement(long key);
+    protected abstract PreparedStatement getDeleteStatement(long key) throws SQLException;
 }
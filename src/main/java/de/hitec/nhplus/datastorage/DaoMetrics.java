@@ -0,0 +1,311 @@
+package de.hitec.nhplus.datastorage;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency, the number of calls, failures and returned rows of every DAO operation, grouped by the screen,
+ * which was shown when the operation ran, the entity and the operation. The latencies are counted in a histogram with
+ * one bucket per power of two microseconds, so recording is a few atomic increments and the percentiles are exact to a
+ * factor of two (and never above the maximum), independent of the number of calls. The hits and misses of the
+ * statement caches of the DAOs and of the {@link QueryCache} are counted, too.
+ *
+ * The metrics are exposed via JMX as <code>de.hitec.nhplus:type=DaoMetrics</code> and printed periodically. The
+ * interval in seconds is set with the system property <code>nhplus.metrics.interval</code> (default 300, 0 disables
+ * the output). The metrics are printed once more when the application exits.
+ */
+public class DaoMetrics implements DaoMetricsMXBean {
+
+    /**
+     * A call to the database, which may fail with an <code>SQLException</code>.
+     *
+     * @param <R> Type of the result.
+     */
+    @FunctionalInterface
+    public interface SqlOperation<R> {
+        R execute() throws SQLException;
+    }
+
+    private static final int BUCKETS = 40;
+    private static final String NO_SCREEN = "-";
+    private static final DaoMetrics INSTANCE = new DaoMetrics();
+
+    private static volatile String screen = NO_SCREEN;
+    private static ScheduledExecutorService dumper;
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder queryCacheHits = new LongAdder();
+    private final LongAdder queryCacheMisses = new LongAdder();
+
+    private DaoMetrics() {
+    }
+
+    /**
+     * @return The metrics of the application.
+     */
+    public static DaoMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics at the platform MBean server and starts the periodic output. Calling the method again has
+     * no effect.
+     */
+    public static synchronized void start() {
+        if (dumper != null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                    new ObjectName("de.hitec.nhplus:type=DaoMetrics"));
+        } catch (JMException exception) {
+            exception.printStackTrace();
+        }
+        long interval = Long.getLong("nhplus.metrics.interval", 300);
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (interval > 0) {
+            dumper.scheduleAtFixedRate(INSTANCE::dump, interval, interval, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::dump, "nhplus-metrics-exit"));
+        }
+    }
+
+    /**
+     * Sets the screen, to which the following operations are attributed. Operations of background threads are
+     * attributed to the screen shown at that time.
+     *
+     * @param name Name of the shown screen.
+     */
+    public static void setScreen(String name) {
+        screen = name == null ? NO_SCREEN : name;
+    }
+
+    /**
+     * @return Name of the screen shown at the moment.
+     */
+    public static String getScreen() {
+        return screen;
+    }
+
+    /**
+     * Executes the operation and records its latency, its failure or the number of rows it returned or changed.
+     *
+     * @param entity       Name of the entity, e.g. "Patient".
+     * @param operation    Name of the operation, e.g. "readAll".
+     * @param sqlOperation The call to the database.
+     * @return The result of the call.
+     * @throws SQLException If the call failed. The failure is recorded.
+     */
+    public static <R> R measure(String entity, String operation, SqlOperation<R> sqlOperation) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            R result = sqlOperation.execute();
+            INSTANCE.record(entity, operation, System.nanoTime() - start, rowsOf(result), false);
+            return result;
+        } catch (SQLException | RuntimeException exception) {
+            INSTANCE.record(entity, operation, System.nanoTime() - start, 0, true);
+            throw exception;
+        }
+    }
+
+    /**
+     * Counts a lookup in the statement cache of a DAO.
+     *
+     * @param hit true, if a prepared statement was reused.
+     */
+    public static void recordStatementCache(boolean hit) {
+        if (hit) {
+            INSTANCE.statementCacheHits.increment();
+        } else {
+            INSTANCE.statementCacheMisses.increment();
+        }
+    }
+
+    /**
+     * Counts a lookup in the {@link QueryCache}.
+     *
+     * @param hit true, if a cached result was returned.
+     */
+    public static void recordQueryCache(boolean hit) {
+        if (hit) {
+            INSTANCE.queryCacheHits.increment();
+        } else {
+            INSTANCE.queryCacheMisses.increment();
+        }
+    }
+
+    @Override
+    public List<OperationStatistics> getOperationStatistics() {
+        List<Operation> sorted = new ArrayList<>(this.operations.values());
+        sorted.sort(Comparator.comparingLong((Operation operation) -> operation.totalNanos.sum()).reversed());
+        List<OperationStatistics> statistics = new ArrayList<>();
+        for (Operation operation : sorted) {
+            statistics.add(operation.toStatistics());
+        }
+        return statistics;
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return this.statementCacheHits.sum();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return this.statementCacheMisses.sum();
+    }
+
+    @Override
+    public double getStatementCacheHitRate() {
+        long hits = getStatementCacheHits();
+        long lookups = hits + getStatementCacheMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getQueryCacheHits() {
+        return this.queryCacheHits.sum();
+    }
+
+    @Override
+    public long getQueryCacheMisses() {
+        return this.queryCacheMisses.sum();
+    }
+
+    @Override
+    public double getQueryCacheHitRate() {
+        long hits = getQueryCacheHits();
+        long lookups = hits + getQueryCacheMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public void reset() {
+        this.operations.clear();
+        this.statementCacheHits.reset();
+        this.statementCacheMisses.reset();
+        this.queryCacheHits.reset();
+        this.queryCacheMisses.reset();
+    }
+
+    /**
+     * Prints the metrics of all operations, slowest first, and the hit rates of the statement and query caches.
+     */
+    public void dump() {
+        List<OperationStatistics> statistics = getOperationStatistics();
+        if (statistics.isEmpty()) {
+            return;
+        }
+        System.out.printf("DAO-Metriken (Statement-Cache: %d Treffer, %d Fehlgriffe, Trefferquote %.1f %%; " +
+                        "Abfrage-Cache: %d Treffer, %d Fehlgriffe, Trefferquote %.1f %%)%n",
+                getStatementCacheHits(), getStatementCacheMisses(), getStatementCacheHitRate() * 100,
+                getQueryCacheHits(), getQueryCacheMisses(), getQueryCacheHitRate() * 100);
+        for (OperationStatistics operation : statistics) {
+            System.out.println("  " + operation);
+        }
+    }
+
+    private void record(String entity, String operation, long nanos, long rows, boolean failed) {
+        String currentScreen = screen;
+        this.operations.computeIfAbsent(currentScreen + '|' + entity + '|' + operation,
+                key -> new Operation(currentScreen, entity, operation)).record(nanos, rows, failed);
+    }
+
+    private static long rowsOf(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        if (result instanceof TreatmentSnapshot) {
+            return ((TreatmentSnapshot) result).size();
+        }
+        return 1;
+    }
+
+    /**
+     * The counters and the latency histogram of one operation. Bucket 0 counts calls below one microsecond, bucket
+     * i &gt; 0 calls from 2^(i-1) up to 2^i microseconds.
+     */
+    private static class Operation {
+        private final String screen;
+        private final String entity;
+        private final String operation;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private Operation(String screen, String entity, String operation) {
+            this.screen = screen;
+            this.entity = entity;
+            this.operation = operation;
+        }
+
+        private void record(long nanos, long rows, boolean failed) {
+            this.count.increment();
+            if (failed) {
+                this.errors.increment();
+            }
+            this.rows.add(rows);
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulateAndGet(nanos, Math::max);
+            long micros = nanos / 1_000;
+            int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            this.histogram.incrementAndGet(bucket);
+        }
+
+        private OperationStatistics toStatistics() {
+            long[] buckets = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = this.histogram.get(i);
+                total += buckets[i];
+            }
+            long calls = this.count.sum();
+            double maxMillis = this.maxNanos.get() / 1e6;
+            return new OperationStatistics(this.screen, this.entity, this.operation, calls, this.errors.sum(),
+                    this.rows.sum(), calls == 0 ? 0 : this.totalNanos.sum() / 1e6 / calls,
+                    Math.min(percentile(buckets, total, 0.50), maxMillis),
+                    Math.min(percentile(buckets, total, 0.95), maxMillis),
+                    Math.min(percentile(buckets, total, 0.99), maxMillis), maxMillis);
+        }
+
+        private static double percentile(long[] buckets, long total, double quantile) {
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return (1L << i) / 1_000.0;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link DaoMetrics}, registered as <code>de.hitec.nhplus:type=DaoMetrics</code>. It can be inspected
+ * with JConsole or VisualVM while NHPlus is running.
+ */
+public interface DaoMetricsMXBean {
+
+    /**
+     * @return The metrics of every operation, ordered by the total time spent, slowest first.
+     */
+    List<OperationStatistics> getOperationStatistics();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    /**
+     * @return The share of statements taken from the statement caches of the DAOs, between 0 and 1.
+     */
+    double getStatementCacheHitRate();
+
+    long getQueryCacheHits();
+
+    long getQueryCacheMisses();
+
+    /**
+     * @return The share of list queries answered by the {@link QueryCache}, between 0 and 1.
+     */
+    double getQueryCacheHitRate();
+
+    /**
+     * Forgets all recorded metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,164 @@
+package de.hitec.nhplus.datastorage;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * The configuration of the SQLite database: the path of the database file and the PRAGMA tuning of the active profile.
+ * The defaults are read from <code>/de/hitec/nhplus/db/database.properties</code>. They are overridden by the file
+ * <code>database.properties</code> in the working directory (or the file given by the system property
+ * <code>nhplus.db.config</code>) and by the system properties <code>nhplus.db.path</code> and
+ * <code>nhplus.db.profile</code>. The threshold of the slow query log can be overridden by
+ * <code>nhplus.db.slowQueryMs</code>.
+ *
+ * A profile is a set of keys <code>&lt;profile&gt;.&lt;pragma&gt;</code>. Only the PRAGMAs of
+ * <code>PRAGMAS</code> are applied, in this order, because <code>page_size</code> has to be set before the journal
+ * mode switches to WAL. WAL only works if all connections run on the host storing the database file; the profile
+ * <code>shared</code> uses a rollback journal for a file on a network share.
+ */
+public class DatabaseConfig {
+
+    private static final String DEFAULTS = "/de/hitec/nhplus/db/database.properties";
+    private static final String LOCAL_FILE = "database.properties";
+    private static final String[] PRAGMAS = {"page_size", "journal_mode", "synchronous", "cache_size", "mmap_size",
+            "temp_store", "busy_timeout"};
+    // PRAGMA values cannot be bound as parameters, so only plain words and numbers are accepted
+    private static final Pattern VALUE = Pattern.compile("-?[A-Za-z0-9_]+");
+
+    private final Properties properties;
+    private final String path;
+    private final String profile;
+
+    private DatabaseConfig(Properties properties, String path, String profile) {
+        this.properties = properties;
+        this.path = path;
+        this.profile = profile;
+    }
+
+    /**
+     * Reads the configuration from the defaults, the local file and the system properties.
+     *
+     * @return The configuration to connect with.
+     */
+    public static DatabaseConfig load() {
+        Properties properties = new Properties();
+        try (InputStream stream = DatabaseConfig.class.getResourceAsStream(DEFAULTS)) {
+            if (stream != null) {
+                properties.load(stream);
+            }
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+        Path localFile = Path.of(System.getProperty("nhplus.db.config", LOCAL_FILE));
+        if (Files.isRegularFile(localFile)) {
+            try (InputStream stream = new FileInputStream(localFile.toFile())) {
+                properties.load(stream);
+            } catch (IOException exception) {
+                exception.printStackTrace();
+            }
+        }
+        String path = System.getProperty("nhplus.db.path", properties.getProperty("db.path", "db/nursingHome.db"));
+        String profile = System.getProperty("nhplus.db.profile", properties.getProperty("db.profile", "production"));
+        return new DatabaseConfig(properties, path, profile);
+    }
+
+    /**
+     * Returns a copy of this configuration using another profile.
+     *
+     * @param profile Name of the profile.
+     * @return The configuration with the given profile.
+     */
+    public DatabaseConfig withProfile(String profile) {
+        return new DatabaseConfig(this.properties, this.path, profile);
+    }
+
+    /**
+     * Returns a copy of this configuration using another database file.
+     *
+     * @param path Path of the database file.
+     * @return The configuration with the given path.
+     */
+    public DatabaseConfig withPath(String path) {
+        return new DatabaseConfig(this.properties, path, this.profile);
+    }
+
+    public String getPath() {
+        return this.path;
+    }
+
+    public String getUrl() {
+        return "jdbc:sqlite:" + this.path;
+    }
+
+    /**
+     * @return Threshold in milliseconds, above which statements are logged by {@link SlowQueryLog}. A negative value
+     * disables the log.
+     */
+    public long getSlowQueryMillis() {
+        String value = System.getProperty("nhplus.db.slowQueryMs",
+                this.properties.getProperty("db.slow_query_ms", "100"));
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException exception) {
+            System.out.println("Ungültiger Schwellwert für langsame Abfragen: " + value);
+            return 100;
+        }
+    }
+
+    public String getProfile() {
+        return this.profile;
+    }
+
+    /**
+     * @return The names of all profiles defined in the configuration, in alphabetical order.
+     */
+    public List<String> getProfiles() {
+        List<String> profiles = new ArrayList<>();
+        for (String key : this.properties.stringPropertyNames()) {
+            int dot = key.indexOf('.');
+            String name = key.substring(0, Math.max(dot, 0));
+            if (dot > 0 && !name.equals("db") && !profiles.contains(name)) {
+                profiles.add(name);
+            }
+        }
+        profiles.sort(String::compareTo);
+        return profiles;
+    }
+
+    /**
+     * Returns the PRAGMAs of the active profile in the order they have to be applied. Missing PRAGMAs keep the
+     * defaults of SQLite, invalid values are reported and skipped.
+     *
+     * @return Map of PRAGMA name to value.
+     */
+    public Map<String, String> getPragmas() {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        for (String pragma : PRAGMAS) {
+            String value = this.properties.getProperty(this.profile + "." + pragma);
+            if (value == null) {
+                continue;
+            }
+            value = value.trim();
+            if (VALUE.matcher(value).matches()) {
+                pragmas.put(pragma, value);
+            } else {
+                System.out.println("Ungültiger Wert für PRAGMA " + pragma + ": " + value);
+            }
+        }
+        return pragmas;
+    }
+
+    @Override
+    public String toString() {
+        return this.path + " (" + this.profile + ")";
+    }
+}
@@ -0,0 +1,92 @@
+package de.hitec.nhplus.datastorage;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the metrics of one DAO operation of one entity, recorded while one screen was shown. Returned by
+ * {@link DaoMetrics} and exposed via JMX as composite data. The latencies are given in milliseconds; the percentiles
+ * are the upper bounds of the histogram buckets they fall into.
+ */
+public class OperationStatistics {
+
+    private final String screen;
+    private final String entity;
+    private final String operation;
+    private final long count;
+    private final long errors;
+    private final long rows;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    @ConstructorProperties({"screen", "entity", "operation", "count", "errors", "rows", "meanMillis", "p50Millis",
+            "p95Millis", "p99Millis", "maxMillis"})
+    public OperationStatistics(String screen, String entity, String operation, long count, long errors, long rows,
+                               double meanMillis, double p50Millis, double p95Millis, double p99Millis,
+                               double maxMillis) {
+        this.screen = screen;
+        this.entity = entity;
+        this.operation = operation;
+        this.count = count;
+        this.errors = errors;
+        this.rows = rows;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public String getScreen() {
+        return screen;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP95Millis() {
+        return p95Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-20s %-10s %-26s %7d Aufrufe %4d Fehler %8d Zeilen  mittel %7.2f ms  p50 %7.2f ms  " +
+                        "p95 %7.2f ms  p99 %7.2f ms  max %7.2f ms", screen, entity, operation, count, errors, rows,
+                meanMillis, p50Millis, p95Millis, p99Millis, maxMillis);
+    }
+}
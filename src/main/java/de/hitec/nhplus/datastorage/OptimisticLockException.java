@@ -0,0 +1,24 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown by <code>update</code>, if the row was changed by another workstation or deleted since it was read. The
+ * changes of the entity are kept, so they can be written again after the current version was read.
+ */
+public class OptimisticLockException extends SQLException {
+
+    private final String entity;
+
+    /**
+     * @param entity Name of the entity, e.g. "Patient".
+     */
+    public OptimisticLockException(String entity) {
+        super(entity + " wurde inzwischen an einem anderen Arbeitsplatz geändert oder gelöscht");
+        this.entity = entity;
+    }
+
+    public String getEntity() {
+        return this.entity;
+    }
+}
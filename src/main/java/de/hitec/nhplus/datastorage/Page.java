@@ -0,0 +1,54 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of rows read by a {@link PagedDaoImp}, together with the keyset of its last row: the value of the sort
+ * field and the key, which the next page starts after. The keyset is taken from the rows as they were read, so edits
+ * of the shown rows do not move the start of the next page. A page cannot be changed, so it can be cached.
+ *
+ * @param <T> Type of the rows.
+ */
+public final class Page<T> {
+
+    private final List<T> rows;
+    private final String field;
+    private final boolean ascending;
+    // sort value and key of the last row, or null for an empty page
+    private final Object[] keyset;
+
+    Page(List<T> rows, String field, boolean ascending, Object[] keyset) {
+        this.rows = Collections.unmodifiableList(rows);
+        this.field = field;
+        this.ascending = ascending;
+        this.keyset = keyset;
+    }
+
+    /**
+     * @return The rows of the page, which cannot be changed.
+     */
+    public List<T> getRows() {
+        return this.rows;
+    }
+
+    /**
+     * @return true, if the page has no rows. The next page has to start after the last page with rows.
+     */
+    public boolean isEmpty() {
+        return this.rows.isEmpty();
+    }
+
+    /**
+     * @param field     Sort field of the next page.
+     * @param ascending Order of the next page.
+     * @return true, if the next page can start after this page.
+     */
+    boolean isSortedBy(String field, boolean ascending) {
+        return this.field.equals(field) && this.ascending == ascending;
+    }
+
+    Object[] getKeyset() {
+        return this.keyset;
+    }
+}
@@ -0,0 +1,152 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class of the DAOs of large tables, which are read page by page: a page is sorted by the database and starts
+ * after the last row of the previous page (keyset pagination), so no page has to skip the rows before it. Every
+ * sortable column has an index, which ends with the key of the row, so the database neither sorts nor skips rows.
+ * The keyset of a page is taken, when its rows are read, and the pages are served from the {@link QueryCache}, as
+ * long as none of the tables they read was changed.
+ *
+ * @param <T> Type of the rows.
+ */
+public abstract class PagedDaoImp<T> extends DaoImp<T> {
+
+    public PagedDaoImp(Connection connection) {
+        super(connection);
+    }
+
+    /**
+     * @param field Name of a field of the entity.
+     * @return true, if the database can sort the rows by this field.
+     */
+    public boolean isSortable(String field) {
+        return getSortColumns().containsKey(field);
+    }
+
+    /**
+     * Reads one page of rows, sorted by the given field and then by the key, so the order is unique.
+     *
+     * @param field     Sortable field, or null to sort by the key.
+     * @param ascending true for ascending, false for descending order.
+     * @param after     Previous page in the same order, or null for the first page.
+     * @param limit     Maximum number of rows.
+     * @return The page. A page with less than <code>limit</code> rows is the last one.
+     * @throws SQLException If a database access error occurs.
+     */
+    public Page<T> readPage(String field, boolean ascending, Page<T> after, int limit) throws SQLException {
+        return readPage(null, List.of(), field, ascending, after, limit);
+    }
+
+    /**
+     * Reads one page of the rows matching a condition. See {@link #readPage(String, boolean, Page, int)}.
+     *
+     * @param where      Condition with parameters, or null for all rows.
+     * @param parameters Values of the parameters of the condition.
+     * @param field      Sortable field, or null to sort by the key.
+     * @param ascending  true for ascending, false for descending order.
+     * @param after      Previous page with the same condition and order, or null for the first page.
+     * @param limit      Maximum number of rows.
+     * @return The page.
+     * @throws SQLException If a database access error occurs.
+     */
+    protected Page<T> readPage(String where, List<Object> parameters, String field, boolean ascending, Page<T> after,
+                               int limit) throws SQLException {
+        String keyField = getKeyField();
+        String sortField = field != null ? field : keyField;
+        String sortColumn = getSortColumns().get(sortField);
+        if (sortColumn == null) {
+            throw new IllegalArgumentException("Nicht sortierbares Feld: " + sortField);
+        }
+        if (after != null && (after.isEmpty() || !after.isSortedBy(sortField, ascending))) {
+            throw new IllegalArgumentException("Die Seite kann nicht nach der vorherigen Seite gelesen werden");
+        }
+        String keyColumn = getSortColumns().get(keyField);
+        String sql = buildPageSql(getListSql(), where, sortColumn, keyColumn, ascending, after != null);
+        List<Object> values = new ArrayList<>(parameters);
+        if (after != null) {
+            Object[] keyset = after.getKeyset();
+            values.add(keyset[0]);
+            if (!sortField.equals(keyField)) {
+                values.add(keyset[1]);
+            }
+        }
+        values.add(limit);
+        return readCached("readPage", sql, values, rows -> {
+            // the keyset is taken from the freshly read row, before it is shown and can be edited
+            if (rows.isEmpty()) {
+                return new Page<>(rows, sortField, ascending, null);
+            }
+            T last = rows.get(rows.size() - 1);
+            return new Page<>(rows, sortField, ascending,
+                    new Object[]{getSortValue(last, sortField), getSortValue(last, keyField)});
+        });
+    }
+
+    /**
+     * Builds the query of one page. Rows after the previous page are selected by comparing the row value of sort
+     * column and key, which SQLite answers with an index on the sort column, because every index ends with the key.
+     *
+     * @param listSql    Query of all rows without condition and order, e.g. <code>SELECT * FROM patient</code>.
+     * @param where      Condition, or null.
+     * @param sortColumn Column to sort by.
+     * @param keyColumn  Primary key column, which orders rows with equal values.
+     * @param ascending  true for ascending, false for descending order.
+     * @param after      true, if the page continues after a row, whose sort value and key are bound.
+     * @return The SQL of the query. The limit is bound as last parameter.
+     */
+    protected static String buildPageSql(String listSql, String where, String sortColumn, String keyColumn,
+                                         boolean ascending, boolean after) {
+        StringBuilder sql = new StringBuilder(listSql);
+        String direction = ascending ? " ASC" : " DESC";
+        List<String> conditions = new ArrayList<>();
+        if (where != null) {
+            conditions.add("(" + where + ")");
+        }
+        if (after && sortColumn.equals(keyColumn)) {
+            conditions.add(keyColumn + (ascending ? " > ?" : " < ?"));
+        } else if (after) {
+            conditions.add("(" + sortColumn + ", " + keyColumn + (ascending ? ") > (?, ?)" : ") < (?, ?)"));
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(sortColumn).append(direction);
+        if (!sortColumn.equals(keyColumn)) {
+            sql.append(", ").append(keyColumn).append(direction);
+        }
+        return sql.append(" LIMIT ?").toString();
+    }
+
+    /**
+     * Returns the fields, which the database can sort by, mapped to their columns. The map has to contain the key
+     * field, and every other column needs an index.
+     *
+     * @return Sortable fields mapped to their columns.
+     */
+    protected abstract Map<String, String> getSortColumns();
+
+    /**
+     * @return Name of the field of the primary key, which is contained in the sortable columns.
+     */
+    protected abstract String getKeyField();
+
+    /**
+     * @return Query of all rows with the columns of a list, without condition and order.
+     */
+    protected abstract String getListSql();
+
+    /**
+     * Returns the value of a sortable field of an entity as it is stored in its column.
+     *
+     * @param t     The entity.
+     * @param field Sortable field.
+     * @return Value of the field.
+     */
+    protected abstract Object getSortValue(T t, String field);
+}
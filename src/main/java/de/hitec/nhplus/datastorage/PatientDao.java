@@ -1,17 +1,59 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.model.ChangeTracker;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.utils.DateConverter;
 
 import java.sql.*;
-import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
  * to execute the specific SQL Statements.
  */
-public class PatientDao extends DaoImp<Patient> {
+public class PatientDao extends PagedDaoImp<Patient> {
+
+    // the fields of Patient, which can be changed, mapped to their columns in the order of the table
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("firstName", "firstname");
+        COLUMNS.put("surname", "surname");
+        COLUMNS.put("dateOfBirth", "dateOfBirth");
+        COLUMNS.put("careLevel", "carelevel");
+        COLUMNS.put("roomNumber", "roomnumber");
+    }
+
+    // the fields, which the views can sort by, mapped to their columns; every column is indexed (V6, V7)
+    private static final Map<String, String> SORT_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        SORT_COLUMNS.put("id", "pid");
+        SORT_COLUMNS.put("firstName", "firstname");
+        SORT_COLUMNS.put("surname", "surname");
+        SORT_COLUMNS.put("dateOfBirth", "dateOfBirth");
+        SORT_COLUMNS.put("careLevel", "carelevel");
+        SORT_COLUMNS.put("roomNumber", "roomnumber");
+    }
+
+    // maps the rows of all queries by the names of their columns
+    private static final RowMapper<Patient> MAPPER = new RowMapper<>(
+            "pid", "firstname", "surname", "dateOfBirth", "carelevel", "roomnumber", "version") {
+        @Override
+        protected Patient map(ResultSet result, int[] columns) throws SQLException {
+            Patient patient = new Patient(
+                    result.getInt(columns[0]),
+                    result.getString(columns[1]),
+                    result.getString(columns[2]),
+                    DateConverter.convertStringToLocalDate(result.getString(columns[3])),
+                    result.getString(columns[4]),
+                    result.getString(columns[5]));
+            patient.getChangeTracker().setVersion(result.getLong(columns[6]));
+            return patient;
+        }
+    };
 
     /**
      * The constructor initiates an object of <code>PatientDao</code> and passes the connection to its super class.
@@ -27,22 +69,18 @@ public class PatientDao extends DaoImp<Patient> {
      *
      * @param patient Object of <code>Patient</code> to persist.
      * @return <code>PreparedStatement</code> to insert the given patient.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getCreateStatement(Patient patient) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber) " +
-                    "VALUES (?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, patient.getFirstName());
-            preparedStatement.setString(2, patient.getSurname());
-            preparedStatement.setString(3, patient.getDateOfBirth());
-            preparedStatement.setString(4, patient.getCareLevel());
-            preparedStatement.setString(5, patient.getRoomNumber());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getCreateStatement(Patient patient) throws SQLException {
+        final String SQL = "INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setString(1, patient.getFirstName());
+        preparedStatement.setString(2, patient.getSurname());
+        preparedStatement.setString(3, patient.getDateOfBirth());
+        preparedStatement.setString(4, patient.getCareLevel());
+        preparedStatement.setString(5, patient.getRoomNumber());
         return preparedStatement;
     }
 
@@ -51,126 +89,136 @@ public class PatientDao extends DaoImp<Patient> {
      *
      * @param pid Patient id to query.
      * @return <code>PreparedStatement</code> to query the patient.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getReadByIDStatement(long pid) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "SELECT * FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, pid);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getReadByIDStatement(long pid) throws SQLException {
+        final String SQL = "SELECT * FROM patient WHERE pid = ?";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setLong(1, pid);
         return preparedStatement;
     }
 
-    /**
-     * Maps a <code>ResultSet</code> of one patient to an object of <code>Patient</code>.
-     *
-     * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Patient</code>.
-     * @return Object of class <code>Patient</code> with the data from the resultSet.
-     */
     @Override
-    protected Patient getInstanceFromResultSet(ResultSet result) throws SQLException {
-        return new Patient(
-                result.getInt(1),
-                result.getString(2),
-                result.getString(3),
-                DateConverter.convertStringToLocalDate(result.getString(4)),
-                result.getString(5),
-                result.getString(6));
+    protected RowMapper<Patient> getRowMapper() {
+        return MAPPER;
+    }
+
+    @Override
+    protected Patient copy(Patient patient) {
+        Patient copy = new Patient(patient.getId(), patient.getFirstName(), patient.getSurname(),
+                DateConverter.convertStringToLocalDate(patient.getDateOfBirth()), patient.getCareLevel(),
+                patient.getRoomNumber());
+        copy.getChangeTracker().setVersion(patient.getChangeTracker().getVersion());
+        return copy;
     }
 
     /**
      * Generates a <code>PreparedStatement</code> to query all patients.
      *
      * @return <code>PreparedStatement</code> to query all patients.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getReadAllStatement() {
-        PreparedStatement statement = null;
-        try {
-            final String SQL = "SELECT * FROM patient";
-            statement = this.connection.prepareStatement(SQL);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getReadAllStatement() throws SQLException {
+        final String SQL = "SELECT * FROM patient";
+        PreparedStatement statement = this.prepare(SQL);
         return statement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of all patients to an <code>ArrayList</code> of <code>Patient</code> objects.
+     * Generates a <code>PreparedStatement</code> to update the changed columns of the given patient, identified by
+     * the id of the patient (pid). Columns, which were not changed since the patient was read, are not written.
      *
-     * @param result ResultSet with all rows. The Columns will be mapped to objects of class <code>Patient</code>.
-     * @return <code>ArrayList</code> with objects of class <code>Patient</code> of all rows in the
-     * <code>ResultSet</code>.
+     * @param patient Patient object to update.
+     * @return <code>PreparedStatement</code> to update the given patient, or null, if nothing was changed.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected ArrayList<Patient> getListFromResultSet(ResultSet result) throws SQLException {
-        ArrayList<Patient> list = new ArrayList<>();
-        while (result.next()) {
-            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(4));
-            Patient patient = new Patient(
-                    result.getInt(1),
-                    result.getString(2),
-                    result.getString(3),
-                    date,
-                    result.getString(5),
-                    result.getString(6));
-            list.add(patient);
-        }
-        return list;
+    protected PreparedStatement getUpdateStatement(Patient patient) throws SQLException {
+        return getUpdateStatement(patient, patient.getChangeTracker().snapshot());
     }
 
     /**
-     * Generates a <code>PreparedStatement</code> to update the given patient, identified
-     * by the id of the patient (pid).
+     * Generates a <code>PreparedStatement</code> to update the columns, which were changed in the snapshot, to the
+     * values of the snapshot.
      *
      * @param patient Patient object to update.
-     * @return <code>PreparedStatement</code> to update the given patient.
+     * @param changes Snapshot of the changed fields.
+     * @return <code>PreparedStatement</code> to update the given patient, or null, if nothing was changed.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getUpdateStatement(Patient patient) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL =
-                    "UPDATE patient SET " +
-                            "firstname = ?, " +
-                            "surname = ?, " +
-                            "dateOfBirth = ?, " +
-                            "carelevel = ?, " +
-                            "roomnumber = ? " +
-                            "WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, patient.getFirstName());
-            preparedStatement.setString(2, patient.getSurname());
-            preparedStatement.setString(3, patient.getDateOfBirth());
-            preparedStatement.setString(4, patient.getCareLevel());
-            preparedStatement.setString(5, patient.getRoomNumber());
-            preparedStatement.setLong(6, patient.getId());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+    protected PreparedStatement getUpdateStatement(Patient patient, ChangeTracker.Snapshot changes)
+            throws SQLException {
+        List<String> fields = getChangedFields(changes, COLUMNS);
+        if (fields.isEmpty()) {
+            return null;
         }
+        PreparedStatement preparedStatement = this.prepare(buildUpdateSql("patient", COLUMNS, fields, "pid"));
+        int index = 1;
+        for (String field : fields) {
+            preparedStatement.setObject(index++, changes.getValue(field));
+        }
+        preparedStatement.setLong(index++, patient.getId());
+        preparedStatement.setLong(index, patient.getChangeTracker().getVersion());
         return preparedStatement;
     }
 
+    @Override
+    protected ChangeTracker getChangeTracker(Patient patient) {
+        return patient.getChangeTracker();
+    }
+
+    @Override
+    protected Map<String, String> getSortColumns() {
+        return SORT_COLUMNS;
+    }
+
+    @Override
+    protected String getKeyField() {
+        return "id";
+    }
+
+    @Override
+    protected String getListSql() {
+        return "SELECT * FROM patient";
+    }
+
+    @Override
+    protected Object getSortValue(Patient patient, String field) {
+        return field.equals("id") ? patient.getId() : getColumnValue(patient, field);
+    }
+
+    private Object getColumnValue(Patient patient, String field) {
+        switch (field) {
+            case "firstName":
+                return patient.getFirstName();
+            case "surname":
+                return patient.getSurname();
+            case "dateOfBirth":
+                return patient.getDateOfBirth();
+            case "careLevel":
+                return patient.getCareLevel();
+            case "roomNumber":
+                return patient.getRoomNumber();
+            default:
+                throw new IllegalArgumentException("Unbekanntes Feld: " + field);
+        }
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to delete a patient with the given id.
      *
      * @param pid id of the patient to delete.
      * @return <code>PreparedStatement</code> to delete patient with the given id.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getDeleteStatement(long pid) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "DELETE FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, pid);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getDeleteStatement(long pid) throws SQLException {
+        final String SQL = "DELETE FROM patient WHERE pid = ?";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setLong(1, pid);
         return preparedStatement;
     }
 }
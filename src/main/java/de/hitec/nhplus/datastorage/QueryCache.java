@@ -0,0 +1,116 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of list queries, so switching back and forth between the same filters and sort orders is served
+ * from memory. The cache holds at most <code>MAX_ENTRIES</code> results and forgets the least recently used one first.
+ * A result is keyed by its SQL and the values of its parameters, which is the normalized form of the filter.
+ *
+ * Every result is stored together with a stamp of the data it was read from:
+ * <ul>
+ *     <li>the modification counters of the tables, which the query reads. <code>DaoImp</code> increments the counter
+ *     of its table on every write, so writes of this application, also on other connections, make results stale.</li>
+ *     <li>the <code>data_version</code> of the reading connection, which SQLite changes whenever another connection
+ *     committed, e.g. another workstation.</li>
+ * </ul>
+ * A result is only returned, if the current stamp equals the stored one, so stale data is never shown.
+ *
+ * The cache never hands out the entities the views edit: <code>DaoImp</code> stores copies of the rows it read and
+ * copies them again for every read from the cache, so an edit, which is not written yet, is never seen by other reads.
+ */
+public class QueryCache {
+
+    private static final int MAX_ENTRIES = 100;
+
+    private static final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private static final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private QueryCache() {
+    }
+
+    /**
+     * Marks a table as changed, which makes all cached results reading the table stale.
+     *
+     * @param table Name of the table.
+     */
+    public static void tableChanged(String table) {
+        tableVersions.computeIfAbsent(table, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * @param table Name of the table.
+     * @return Number of changes of the table since the start of the application.
+     */
+    public static long getTableVersion(String table) {
+        AtomicLong version = tableVersions.get(table);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Returns a cached result, if it was read from the same data.
+     *
+     * @param key   SQL and parameters of the query.
+     * @param stamp Current stamp of the data.
+     * @return The cached result, which is shared by all reads and must only be copied, or null.
+     */
+    static <R> R get(String key, long[] stamp) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && !Arrays.equals(entry.stamp, stamp)) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        DaoMetrics.recordQueryCache(entry != null);
+        if (entry == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        R result = (R) entry.result;
+        return result;
+    }
+
+    /**
+     * Stores the result of a query. The result is shared by all later reads, so it must not be handed out to code,
+     * which changes it, e.g. the views editing the entities.
+     *
+     * @param key    SQL and parameters of the query.
+     * @param stamp  Stamp of the data, taken before the query was executed.
+     * @param result The result, e.g. an unmodifiable list of copies of the rows.
+     */
+    static void put(String key, long[] stamp, Object result) {
+        synchronized (entries) {
+            entries.put(key, new Entry(stamp, result));
+        }
+    }
+
+    /**
+     * Forgets all cached results, e.g. after the tables were recreated.
+     */
+    public static void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static class Entry {
+        private final long[] stamp;
+        private final Object result;
+
+        private Entry(long[] stamp, Object result) {
+            this.stamp = stamp;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Publishes the rows of a query to subscribers, which request them in chunks of their own size (backpressure). Every
+ * subscription opens its own cursor with the first request and reads only as many rows as were requested, so a slow
+ * subscriber never gets more rows than it can handle. Cancelling the subscription, an error and the last row close the
+ * cursor. If <code>onNext</code> of the subscriber throws an exception, the cursor is closed and the exception is
+ * passed to <code>onError</code>.
+ *
+ * The cursor is only used by one task of the executor at a time, which reads the requested rows and passes them to
+ * the subscriber.
+ *
+ * @param <T> Type of the rows.
+ */
+public class QueryPublisher<T> implements Flow.Publisher<T> {
+
+    /**
+     * Opens the cursor of the query as stream.
+     */
+    @FunctionalInterface
+    public interface StreamOpener<T> {
+        Stream<T> open() throws SQLException;
+    }
+
+    private final StreamOpener<T> opener;
+    private final Executor executor;
+
+    /**
+     * @param opener   Opens the cursor of a subscription, e.g. <code>dao.stream(fetchSize)</code>.
+     * @param executor Executor, which reads the rows.
+     */
+    public QueryPublisher(StreamOpener<T> opener, Executor executor) {
+        this.opener = opener;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscriber.onSubscribe(new Subscription(subscriber));
+    }
+
+    private class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger scheduled = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException invalidRequest;
+
+        // only used by the task reading the rows
+        private Stream<T> stream;
+        private Iterator<T> rows;
+        private boolean finished;
+
+        private Subscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.invalidRequest = new IllegalArgumentException(
+                        "Anzahl der angeforderten Zeilen muss positiv sein: " + n);
+            } else {
+                // the demand is unbounded, once it exceeds Long.MAX_VALUE
+                this.demand.getAndAccumulate(n,
+                        (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            schedule();
+        }
+
+        /**
+         * Starts the task reading the rows, unless it is running already. A running task reads again, if rows were
+         * requested or the subscription was cancelled in the meantime.
+         */
+        private void schedule() {
+            if (this.scheduled.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException exception) {
+                    this.scheduled.set(0);
+                    this.subscriber.onError(exception);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                try {
+                    emit();
+                } catch (RuntimeException exception) {
+                    // thrown by onComplete or onError of the subscriber; no further signals are sent
+                    finish();
+                    exception.printStackTrace();
+                }
+                missed = this.scheduled.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            if (this.finished) {
+                return;
+            }
+            if (this.cancelled) {
+                finish();
+                return;
+            }
+            if (this.invalidRequest != null) {
+                finish();
+                this.subscriber.onError(this.invalidRequest);
+                return;
+            }
+            try {
+                if (this.rows == null) {
+                    this.stream = opener.open();
+                    this.rows = this.stream.iterator();
+                }
+                long requested = this.demand.get();
+                long emitted = 0;
+                while (emitted < requested) {
+                    if (this.cancelled) {
+                        finish();
+                        return;
+                    }
+                    if (!this.rows.hasNext()) {
+                        finish();
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    T row = this.rows.next();
+                    try {
+                        this.subscriber.onNext(row);
+                    } catch (RuntimeException exception) {
+                        finish();
+                        this.subscriber.onError(exception);
+                        return;
+                    }
+                    emitted++;
+                }
+                if (requested != Long.MAX_VALUE) {
+                    this.demand.addAndGet(-emitted);
+                }
+            } catch (SQLException exception) {
+                finish();
+                this.subscriber.onError(exception);
+            } catch (UncheckedSQLException exception) {
+                finish();
+                this.subscriber.onError(exception.getCause());
+            }
+        }
+
+        /**
+         * Closes the cursor. No further rows are emitted.
+         */
+        private void finish() {
+            this.finished = true;
+            if (this.stream != null) {
+                try {
+                    this.stream.close();
+                } catch (UncheckedSQLException exception) {
+                    exception.getCause().printStackTrace();
+                } finally {
+                    this.stream = null;
+                }
+            }
+        }
+    }
+}
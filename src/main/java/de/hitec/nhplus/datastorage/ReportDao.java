@@ -0,0 +1,144 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.CareMinutes;
+import de.hitec.nhplus.utils.DateConverter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ReportDao aggregates the care minutes of the treatments per month. The sums are calculated by SQLite with
+ * <code>GROUP BY</code> over the table <code>treatment_daily_summary</code>, which is kept up to date by triggers on
+ * the treatment table. A report therefore reads at most one row per day, patient and caregiver instead of every
+ * treatment, and the date range is restricted by the primary key of the summary.
+ */
+public class ReportDao {
+
+    private static final String MONTH = "substr(s.summary_date, 1, 7)";
+
+    private final Connection connection;
+
+    /**
+     * Constructs a new ReportDao using the given connection for all queries.
+     *
+     * @param connection The database connection to be used for all SQL operations.
+     */
+    public ReportDao(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Sums the care minutes per month and patient. Used for billing.
+     *
+     * @param from First day of the report (inclusive).
+     * @param to   Last day of the report (inclusive).
+     * @return One row per month and patient, ordered by month and patient id.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<CareMinutes> readMinutesPerPatient(LocalDate from, LocalDate to) throws SQLException {
+        final String SQL = "SELECT " + MONTH + " AS month, s.pid, p.surname || ', ' || p.firstname, " +
+                "SUM(s.minutes), SUM(s.treatment_count) " +
+                "FROM treatment_daily_summary s JOIN patient p ON p.pid = s.pid " +
+                "WHERE s.summary_date BETWEEN ? AND ? " +
+                "GROUP BY month, s.pid ORDER BY month, s.pid";
+        return DaoMetrics.measure("Report", "readMinutesPerPatient",
+                () -> readReport(SQL, from, to));
+    }
+
+    /**
+     * Sums the care minutes per month and caregiver. Used for staff planning.
+     *
+     * @param from First day of the report (inclusive).
+     * @param to   Last day of the report (inclusive).
+     * @return One row per month and caregiver, ordered by month and caregiver id.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<CareMinutes> readMinutesPerCaregiver(LocalDate from, LocalDate to) throws SQLException {
+        final String SQL = "SELECT " + MONTH + " AS month, s.cgid, c.surname || ', ' || c.firstname, " +
+                "SUM(s.minutes), SUM(s.treatment_count) " +
+                "FROM treatment_daily_summary s JOIN caregiver c ON c.cgID = s.cgid " +
+                "WHERE s.summary_date BETWEEN ? AND ? " +
+                "GROUP BY month, s.cgid ORDER BY month, s.cgid";
+        return DaoMetrics.measure("Report", "readMinutesPerCaregiver",
+                () -> readReport(SQL, from, to));
+    }
+
+    /**
+     * Sums the care minutes per month and care level of the treated patients.
+     *
+     * @param from First day of the report (inclusive).
+     * @param to   Last day of the report (inclusive).
+     * @return One row per month and care level, ordered by month and care level.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<CareMinutes> readMinutesPerCareLevel(LocalDate from, LocalDate to) throws SQLException {
+        final String SQL = "SELECT " + MONTH + " AS month, p.carelevel, 'Pflegestufe ' || p.carelevel, " +
+                "SUM(s.minutes), SUM(s.treatment_count) " +
+                "FROM treatment_daily_summary s JOIN patient p ON p.pid = s.pid " +
+                "WHERE s.summary_date BETWEEN ? AND ? " +
+                "GROUP BY month, p.carelevel ORDER BY month, p.carelevel";
+        return DaoMetrics.measure("Report", "readMinutesPerCareLevel",
+                () -> readReport(SQL, from, to));
+    }
+
+    /**
+     * Executes a report query. Report statements are not cached, so the statement is closed together with its
+     * <code>ResultSet</code>.
+     *
+     * @param sql  Report query with two parameters for the first and last day.
+     * @param from First day of the report (inclusive).
+     * @param to   Last day of the report (inclusive).
+     * @return One object of <code>CareMinutes</code> per row.
+     * @throws SQLException If a database access error occurs.
+     */
+    private ArrayList<CareMinutes> readReport(String sql, LocalDate from, LocalDate to) throws SQLException {
+        try (PreparedStatement statement = getReportStatement(sql, from, to)) {
+            return getListFromResultSet(statement.executeQuery());
+        }
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> for the given report query and binds the date range.
+     *
+     * @param sql  Report query with two parameters for the first and last day.
+     * @param from First day of the report (inclusive).
+     * @param to   Last day of the report (inclusive).
+     * @return <code>PreparedStatement</code> to query the report.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    private PreparedStatement getReportStatement(String sql, LocalDate from, LocalDate to) throws SQLException {
+        PreparedStatement preparedStatement =
+                SlowQueryLog.wrap(this.connection, sql, this.connection.prepareStatement(sql));
+        preparedStatement.setString(1, DateConverter.convertLocalDateToString(from));
+        preparedStatement.setString(2, DateConverter.convertLocalDateToString(to));
+        return preparedStatement;
+    }
+
+    /**
+     * Maps the rows of a report query to objects of <code>CareMinutes</code>. The columns are month, key, label,
+     * minutes and count.
+     *
+     * @param result ResultSet of a report query.
+     * @return <code>ArrayList</code> with one object of <code>CareMinutes</code> per row.
+     * @throws SQLException If an SQL error occurs while reading the ResultSet.
+     */
+    private ArrayList<CareMinutes> getListFromResultSet(ResultSet result) throws SQLException {
+        ArrayList<CareMinutes> list = new ArrayList<>();
+        try (result) {
+            while (result.next()) {
+                list.add(new CareMinutes(
+                        result.getString(1),
+                        result.getString(2),
+                        result.getString(3),
+                        result.getLong(4),
+                        result.getLong(5)));
+            }
+        }
+        return list;
+    }
+}
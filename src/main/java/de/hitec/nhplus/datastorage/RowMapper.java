@@ -0,0 +1,111 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Maps the rows of a <code>ResultSet</code> to objects by the names of the columns instead of their positions, so
+ * every query of a DAO can select its own columns in any order and all of them are mapped by the same code.
+ *
+ * A mapper declares the names of the columns it reads. The positions of these columns are looked up once per
+ * <code>ResultSet</code> with {@link #resolve(ResultSet)}, afterwards every row is read by index without any lookup
+ * or reflection. A query has to select every required column, otherwise <code>resolve</code> fails with the name of
+ * the missing column. Optional columns, which a query does not select, get the position 0, which <code>map</code>
+ * checks before reading them.
+ *
+ * @param <T> Type of the mapped objects.
+ */
+public abstract class RowMapper<T> {
+
+    private final String[] columns;
+    // the number of required columns, which precede the optional ones
+    private final int required;
+
+    /**
+     * @param columns Names of the required columns, which are read by <code>map</code>. The names are compared
+     *                ignoring the case, like SQLite does.
+     */
+    protected RowMapper(String... columns) {
+        this(columns, new String[0]);
+    }
+
+    /**
+     * @param columns         Names of the required columns.
+     * @param optionalColumns Names of the columns, which only some queries select. Their positions follow the ones of
+     *                        the required columns.
+     */
+    protected RowMapper(String[] columns, String... optionalColumns) {
+        this.columns = new String[columns.length + optionalColumns.length];
+        System.arraycopy(columns, 0, this.columns, 0, columns.length);
+        System.arraycopy(optionalColumns, 0, this.columns, columns.length, optionalColumns.length);
+        this.required = columns.length;
+    }
+
+    /**
+     * Maps the current row.
+     *
+     * @param result  The result, positioned at a row.
+     * @param indexes The positions of the columns in the order of the constructor, or 0 for missing optional
+     *                columns.
+     * @return The mapped object.
+     * @throws SQLException If a column could not be read.
+     */
+    protected abstract T map(ResultSet result, int[] indexes) throws SQLException;
+
+    /**
+     * Looks up the positions of the columns of this mapper in a result.
+     *
+     * @param result The result.
+     * @return The positions of the columns in the order of the constructor, or 0 for missing optional columns.
+     * @throws SQLException If the metadata of the result could not be read, or a required column is missing.
+     */
+    public int[] resolve(ResultSet result) throws SQLException {
+        ResultSetMetaData metaData = result.getMetaData();
+        int[] indexes = new int[this.columns.length];
+        for (int column = metaData.getColumnCount(); column >= 1; column--) {
+            String label = metaData.getColumnLabel(column);
+            for (int i = 0; i < this.columns.length; i++) {
+                if (this.columns[i].equalsIgnoreCase(label)) {
+                    // counting down keeps the first column of a name, like ResultSet.findColumn
+                    indexes[i] = column;
+                }
+            }
+        }
+        for (int i = 0; i < this.required; i++) {
+            if (indexes[i] == 0) {
+                throw new SQLException("Die Abfrage liefert die Spalte " + this.columns[i] + " nicht");
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Maps the current row, looking up the columns first. Use {@link #mapAll(ResultSet)} or <code>resolve</code> for
+     * more than one row.
+     *
+     * @param result The result, positioned at a row.
+     * @return The mapped object.
+     * @throws SQLException If a column could not be read.
+     */
+    public T mapRow(ResultSet result) throws SQLException {
+        return map(result, resolve(result));
+    }
+
+    /**
+     * Maps all remaining rows. The columns are looked up once.
+     *
+     * @param result The result, positioned before the first row.
+     * @return The mapped objects in the order of the rows.
+     * @throws SQLException If a row could not be read.
+     */
+    public ArrayList<T> mapAll(ResultSet result) throws SQLException {
+        int[] indexes = resolve(result);
+        ArrayList<T> list = new ArrayList<>();
+        while (result.next()) {
+            list.add(map(result, indexes));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,254 @@
+package de.hitec.nhplus.datastorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date by applying numbered migration scripts. The scripts are located in
+ * <code>/de/hitec/nhplus/db/migration</code> and named <code>V&lt;version&gt;__&lt;description&gt;.sql</code>. Every
+ * applied version is recorded in the table <code>schema_version</code> together with its execution time, so each
+ * script runs exactly once per database.
+ *
+ * Each script is applied in its own transaction. If a statement fails, the whole script is rolled back, no further
+ * scripts are applied and the existing data stays untouched.
+ */
+public class SchemaMigrator {
+
+    private static final String MIGRATION_PATH = "/de/hitec/nhplus/db/migration/";
+
+    /**
+     * All migration scripts in the order of their versions. New scripts are appended at the end.
+     */
+    private static final String[] MIGRATIONS = {
+            "V1__base_schema.sql",
+            "V2__treatment_type.sql",
+            "V3__treatment_indexes.sql",
+            "V4__treatment_daily_summary.sql",
+            "V5__row_versions.sql",
+            "V6__sort_indexes.sql",
+            "V7__remaining_sort_indexes.sql"
+    };
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Applies all migration scripts, which have not been applied to the database yet.
+     *
+     * @param connection Connection to the database to migrate.
+     * @return The number of applied scripts.
+     * @throws SQLException If a script could not be read or applied. The failed script is rolled back.
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        long start = System.nanoTime();
+        createVersionTable(connection);
+        int currentVersion = readCurrentVersion(connection);
+        int applied = 0;
+        for (String migration : MIGRATIONS) {
+            int version = parseVersion(migration);
+            if (version > currentVersion) {
+                apply(connection, version, migration);
+                applied++;
+            }
+        }
+        if (applied > 0) {
+            System.out.printf("Datenbankschema auf Version %d aktualisiert (%d Migrationen, %d ms)%n",
+                    readCurrentVersion(connection), applied, (System.nanoTime() - start) / 1_000_000);
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the version of the last applied migration script.
+     *
+     * @param connection Connection to the database.
+     * @return The current schema version, or 0 if no script was applied yet.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static int readCurrentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        final String SQL = "CREATE TABLE IF NOT EXISTS schema_version (" +
+                "   version INTEGER PRIMARY KEY, " +
+                "   description TEXT NOT NULL, " +
+                "   installed_on TEXT NOT NULL, " +
+                "   execution_ms INTEGER NOT NULL" +
+                ");";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(SQL);
+        }
+    }
+
+    private static void apply(Connection connection, int version, String migration) throws SQLException {
+        List<String> statements = splitStatements(readScript(migration));
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+            long executionMillis = (System.nanoTime() - start) / 1_000_000;
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO schema_version " +
+                    "(version, description, installed_on, execution_ms) VALUES (?, ?, ?, ?)")) {
+                insert.setInt(1, version);
+                insert.setString(2, parseDescription(migration));
+                insert.setString(3, LocalDateTime.now().withNano(0).toString());
+                insert.setLong(4, executionMillis);
+                insert.executeUpdate();
+            }
+            connection.commit();
+            System.out.printf("Migration %s angewendet (%d ms)%n", migration, executionMillis);
+        } catch (SQLException exception) {
+            connection.rollback();
+            throw new SQLException("Migration " + migration + " fehlgeschlagen: " + exception.getMessage(), exception);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static String readScript(String migration) throws SQLException {
+        try (InputStream stream = SchemaMigrator.class.getResourceAsStream(MIGRATION_PATH + migration)) {
+            if (stream == null) {
+                throw new SQLException("Migration " + migration + " nicht gefunden");
+            }
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new SQLException("Migration " + migration + " konnte nicht gelesen werden", exception);
+        }
+    }
+
+    /**
+     * Splits a script into single statements. A statement ends with a semicolon outside of string literals, quoted
+     * identifiers and comments. Within a <code>CREATE TRIGGER</code> statement, the semicolons of the body do not end
+     * the statement, only the one after the <code>END</code> closing the body. Within the trigger, only the
+     * <code>BEGIN</code> of the body and the <code>CASE</code> expressions of the body count as blocks, so columns
+     * named like the keywords, e.g. <code>OLD.end</code> or <code>UPDATE OF begin, end</code>, do not end the body.
+     * An <code>END</code>, which does not close a <code>CASE</code>, only closes the body, if it follows the semicolon
+     * of the last statement of the body. Comments are removed.
+     */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        // true, while the statement consists only of CREATE, TEMP and TEMPORARY
+        boolean header = true;
+        boolean trigger = false;
+        // within the column list of UPDATE OF, whose columns may be named begin or end
+        boolean columns = false;
+        boolean body = false;
+        // nesting of CASE within the body of a trigger
+        int cases = 0;
+        // the last character before the current word, which is no whitespace, e.g. the dot of OLD.end
+        char previous = 0;
+        int length = script.length();
+        int i = 0;
+        while (i < length) {
+            char c = script.charAt(i);
+            char next = i + 1 < length ? script.charAt(i + 1) : 0;
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                if (word.length() == 0) {
+                    previous = lastCharacter(current);
+                }
+                word.append(c);
+                current.append(c);
+                i++;
+                continue;
+            }
+            if (word.length() > 0) {
+                String keyword = word.toString().toUpperCase();
+                word.setLength(0);
+                if (header && keyword.equals("TRIGGER")) {
+                    trigger = true;
+                }
+                header = header && (keyword.equals("CREATE") || keyword.equals("TEMP") || keyword.equals("TEMPORARY"));
+                if (trigger && previous != '.') {
+                    if (!body) {
+                        if (keyword.equals("OF")) {
+                            columns = true;
+                        } else if (keyword.equals("ON")) {
+                            columns = false;
+                        } else if (keyword.equals("BEGIN") && !columns) {
+                            body = true;
+                        }
+                    } else if (keyword.equals("CASE")) {
+                        cases++;
+                    } else if (keyword.equals("END")) {
+                        if (cases > 0) {
+                            cases--;
+                        } else if (previous == ';') {
+                            body = false;
+                        }
+                    }
+                }
+            }
+            if (c == '-' && next == '-') {
+                int lineEnd = script.indexOf('\n', i);
+                i = lineEnd < 0 ? length : lineEnd;
+            } else if (c == '/' && next == '*') {
+                int commentEnd = script.indexOf("*/", i + 2);
+                i = commentEnd < 0 ? length : commentEnd + 2;
+                current.append(' ');
+            } else if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                // a doubled quote within a literal continues the literal like a second literal
+                int close = script.indexOf(c == '[' ? ']' : c, i + 1);
+                int literalEnd = close < 0 ? length : close + 1;
+                current.append(script, i, literalEnd);
+                i = literalEnd;
+            } else if (c == ';' && !body) {
+                current.append(c);
+                String statement = current.toString().trim();
+                if (!statement.equals(";")) {
+                    statements.add(statement);
+                }
+                current.setLength(0);
+                header = true;
+                trigger = false;
+                columns = false;
+                cases = 0;
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    /**
+     * @return The last character of the statement, which is no whitespace, or 0, if there is none.
+     */
+    private static char lastCharacter(StringBuilder statement) {
+        for (int i = statement.length() - 1; i >= 0; i--) {
+            if (!Character.isWhitespace(statement.charAt(i))) {
+                return statement.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    private static int parseVersion(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    private static String parseDescription(String migration) {
+        return migration.substring(migration.indexOf("__") + 2, migration.lastIndexOf('.')).replace('_', ' ');
+    }
+}
@@ -0,0 +1,198 @@
+package de.hitec.nhplus.datastorage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logs every statement, which takes longer than the configured threshold (<code>db.slow_query_ms</code> in
+ * <code>database.properties</code>), together with its bound parameters. The first time a statement is slow, the
+ * output of <code>EXPLAIN QUERY PLAN</code> for it is logged, too, and full table scans are marked.
+ *
+ * The statements of the DAOs are wrapped in a proxy, which records the parameters and measures the execution. For
+ * queries the time spent in <code>ResultSet.next()</code> is added, because SQLite steps through the rows lazily;
+ * the time the DAO needs to map the rows is not counted.
+ */
+public class SlowQueryLog {
+
+    private static final int MAX_PARAMETER_LENGTH = 40;
+    private static final Set<String> explainedStatements = ConcurrentHashMap.newKeySet();
+
+    private SlowQueryLog() {
+    }
+
+    /**
+     * Wraps a prepared statement to log its slow executions. If the log is disabled by a negative threshold, the
+     * statement is returned unchanged.
+     *
+     * @param connection Connection of the statement, used to explain the query plan.
+     * @param sql        SQL of the statement.
+     * @param statement  Statement to wrap.
+     * @return The wrapped statement.
+     */
+    public static PreparedStatement wrap(Connection connection, String sql, PreparedStatement statement) {
+        long thresholdMillis = ConnectionBuilder.getConfig().getSlowQueryMillis();
+        if (thresholdMillis < 0) {
+            return statement;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new StatementHandler(connection, sql, statement, thresholdMillis * 1_000_000));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    private static void log(Connection connection, String sql, Map<Integer, Object> parameters, long nanos) {
+        StringBuilder message = new StringBuilder(String.format("Langsame Abfrage (%.1f ms): %s", nanos / 1e6,
+                sql.replaceAll("\\s+", " ")));
+        if (!parameters.isEmpty()) {
+            message.append(System.lineSeparator()).append("  Parameter: ").append(formatParameters(parameters));
+        }
+        if (explainedStatements.add(sql)) {
+            appendQueryPlan(message, connection, sql, parameters);
+        }
+        System.out.println(message);
+    }
+
+    private static String formatParameters(Map<Integer, Object> parameters) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            Object value = parameter.getValue();
+            String formatted = value instanceof String ? "'" + value + "'" : String.valueOf(value);
+            if (formatted.length() > MAX_PARAMETER_LENGTH) {
+                formatted = formatted.substring(0, MAX_PARAMETER_LENGTH) + "...";
+            }
+            text.append(parameter.getKey()).append('=').append(formatted);
+        }
+        return text.toString();
+    }
+
+    private static void appendQueryPlan(StringBuilder message, Connection connection, String sql,
+                                        Map<Integer, Object> parameters) {
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                explain.setObject(parameter.getKey(), parameter.getValue());
+            }
+            try (ResultSet plan = explain.executeQuery()) {
+                while (plan.next()) {
+                    String detail = plan.getString(4);
+                    message.append(System.lineSeparator()).append("  Plan: ").append(detail);
+                    if (detail.startsWith("SCAN ") && !detail.contains("INDEX")) {
+                        message.append("  <-- vollständiger Tabellenscan");
+                    }
+                }
+            }
+        } catch (SQLException exception) {
+            message.append(System.lineSeparator()).append("  Plan nicht verfügbar: ").append(exception.getMessage());
+        }
+    }
+
+    /**
+     * Records the parameters bound to the statement and measures its executions.
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final Connection connection;
+        private final String sql;
+        private final PreparedStatement statement;
+        private final long thresholdNanos;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+
+        private StatementHandler(Connection connection, String sql, PreparedStatement statement, long thresholdNanos) {
+            this.connection = connection;
+            this.sql = sql;
+            this.statement = statement;
+            this.thresholdNanos = thresholdNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                this.parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                this.parameters.clear();
+            } else if (name.equals("executeQuery") && (args == null || args.length == 0)) {
+                long start = System.nanoTime();
+                ResultSet result = (ResultSet) SlowQueryLog.invoke(this.statement, method, args);
+                return Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler(this, result, System.nanoTime() - start, new TreeMap<>(this.parameters)));
+            } else if (name.startsWith("execute") && (args == null || args.length == 0)) {
+                long start = System.nanoTime();
+                Object result = SlowQueryLog.invoke(this.statement, method, args);
+                check(System.nanoTime() - start, this.parameters);
+                return result;
+            }
+            return SlowQueryLog.invoke(this.statement, method, args);
+        }
+
+        private void check(long nanos, Map<Integer, Object> parameters) {
+            if (nanos >= this.thresholdNanos) {
+                log(this.connection, this.sql, parameters, nanos);
+            }
+        }
+    }
+
+    /**
+     * Adds the time spent stepping through the rows and checks the total time when the last row was read, the
+     * <code>ResultSet</code> is closed or the threshold is exceeded before.
+     */
+    private static class ResultSetHandler implements InvocationHandler {
+        private final StatementHandler statement;
+        private final ResultSet result;
+        private final Map<Integer, Object> parameters;
+        private long nanos;
+        private boolean checked;
+
+        private ResultSetHandler(StatementHandler statement, ResultSet result, long nanos,
+                                 Map<Integer, Object> parameters) {
+            this.statement = statement;
+            this.result = result;
+            this.nanos = nanos;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("next")) {
+                long start = System.nanoTime();
+                Object hasNext = SlowQueryLog.invoke(this.result, method, args);
+                this.nanos += System.nanoTime() - start;
+                // a DAO reading a single row never reaches the end, so the threshold is also checked on the way
+                if (!(Boolean) hasNext || this.nanos >= this.statement.thresholdNanos) {
+                    finish();
+                }
+                return hasNext;
+            }
+            if (name.equals("close")) {
+                finish();
+            }
+            return SlowQueryLog.invoke(this.result, method, args);
+        }
+
+        private void finish() {
+            if (!this.checked) {
+                this.checked = true;
+                this.statement.check(this.nanos, this.parameters);
+            }
+        }
+    }
+}
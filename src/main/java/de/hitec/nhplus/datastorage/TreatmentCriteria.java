@@ -0,0 +1,251 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.utils.DateConverter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable filter for treatments, which is compiled to a parameterized condition on the treatment table. Only the
+ * parameters differ between two filters with the same kinds of criteria, so their SQL is the same and the statement
+ * is reused from the statement cache of the DAO. The conditions are built in a fixed order:
+ * <ul>
+ *     <li>patient and caregiver compare <code>pid</code> and <code>cgid</code>, which are indexed together with the
+ *     date</li>
+ *     <li>the date range compares <code>treatment_date</code>, which is indexed</li>
+ *     <li>the description selects the id of the treatment type, so the names are not compared per treatment</li>
+ *     <li>care level and room number select the matching patients in a subquery</li>
+ * </ul>
+ * Criteria, which are not set, match every treatment. Create filters with {@link #builder()}.
+ */
+public class TreatmentCriteria {
+
+    /**
+     * Filter matching all treatments.
+     */
+    public static final TreatmentCriteria ALL = builder().build();
+
+    private final Long pid;
+    private final Long cgid;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String description;
+    private final String careLevel;
+    private final String roomNumber;
+    private final String where;
+    private final List<Object> parameters;
+
+    private TreatmentCriteria(Builder builder) {
+        this.pid = builder.pid;
+        this.cgid = builder.cgid;
+        this.from = builder.from;
+        this.to = builder.to;
+        this.description = builder.description;
+        this.careLevel = builder.careLevel;
+        this.roomNumber = builder.roomNumber;
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        if (this.pid != null) {
+            conditions.add("pid = ?");
+            values.add(this.pid);
+        }
+        if (this.cgid != null) {
+            conditions.add("cgid = ?");
+            values.add(this.cgid);
+        }
+        if (this.from != null) {
+            conditions.add("treatment_date >= ?");
+            values.add(DateConverter.convertLocalDateToString(this.from));
+        }
+        if (this.to != null) {
+            conditions.add("treatment_date <= ?");
+            values.add(DateConverter.convertLocalDateToString(this.to));
+        }
+        if (this.description != null) {
+            conditions.add("ttid = (SELECT ttid FROM treatment_type WHERE name = ?)");
+            values.add(this.description);
+        }
+        if (this.careLevel != null || this.roomNumber != null) {
+            List<String> patientConditions = new ArrayList<>();
+            if (this.careLevel != null) {
+                patientConditions.add("carelevel = ?");
+                values.add(this.careLevel);
+            }
+            if (this.roomNumber != null) {
+                patientConditions.add("roomnumber = ?");
+                values.add(this.roomNumber);
+            }
+            conditions.add("pid IN (SELECT pid FROM patient WHERE " + String.join(" AND ", patientConditions) + ")");
+        }
+        this.where = conditions.isEmpty() ? null : String.join(" AND ", conditions);
+        this.parameters = Collections.unmodifiableList(values);
+    }
+
+    /**
+     * @return A new builder without any criteria.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return A builder with the criteria of this filter, to derive a changed filter.
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.pid = this.pid;
+        builder.cgid = this.cgid;
+        builder.from = this.from;
+        builder.to = this.to;
+        builder.description = this.description;
+        builder.careLevel = this.careLevel;
+        builder.roomNumber = this.roomNumber;
+        return builder;
+    }
+
+    public Long getPid() {
+        return pid;
+    }
+
+    public Long getCgid() {
+        return cgid;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getCareLevel() {
+        return careLevel;
+    }
+
+    public String getRoomNumber() {
+        return roomNumber;
+    }
+
+    /**
+     * @return true, if the filter matches all treatments.
+     */
+    public boolean isEmpty() {
+        return this.where == null;
+    }
+
+    /**
+     * @return Condition on the columns of the treatment table with one parameter per value, or null without criteria.
+     */
+    String getWhere() {
+        return where;
+    }
+
+    /**
+     * @return Values of the parameters of the condition, in the order of the condition.
+     */
+    List<Object> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return this.where == null ? "alle Behandlungen" : this.where + " " + this.parameters;
+    }
+
+    /**
+     * Collects the criteria of a filter. Every criterion, which is set to null or a blank text, is removed.
+     */
+    public static class Builder {
+
+        private Long pid;
+        private Long cgid;
+        private LocalDate from;
+        private LocalDate to;
+        private String description;
+        private String careLevel;
+        private String roomNumber;
+
+        private Builder() {
+        }
+
+        /**
+         * @param pid Id of the treated patient.
+         */
+        public Builder patient(Long pid) {
+            this.pid = pid;
+            return this;
+        }
+
+        /**
+         * @param cgid Id of the caregiver.
+         */
+        public Builder caregiver(Long cgid) {
+            this.cgid = cgid;
+            return this;
+        }
+
+        /**
+         * @param from First day (inclusive).
+         */
+        public Builder from(LocalDate from) {
+            this.from = from;
+            return this;
+        }
+
+        /**
+         * @param to Last day (inclusive).
+         */
+        public Builder to(LocalDate to) {
+            this.to = to;
+            return this;
+        }
+
+        /**
+         * @param from First day (inclusive).
+         * @param to   Last day (inclusive).
+         */
+        public Builder between(LocalDate from, LocalDate to) {
+            return from(from).to(to);
+        }
+
+        /**
+         * @param description Name of the treatment type, e.g. "Waschen".
+         */
+        public Builder description(String description) {
+            this.description = blankToNull(description);
+            return this;
+        }
+
+        /**
+         * @param careLevel Care level of the treated patients.
+         */
+        public Builder careLevel(String careLevel) {
+            this.careLevel = blankToNull(careLevel);
+            return this;
+        }
+
+        /**
+         * @param roomNumber Room number of the treated patients.
+         */
+        public Builder roomNumber(String roomNumber) {
+            this.roomNumber = blankToNull(roomNumber);
+            return this;
+        }
+
+        public TreatmentCriteria build() {
+            return new TreatmentCriteria(this);
+        }
+
+        private static String blankToNull(String text) {
+            return text == null || text.isBlank() ? null : text.trim();
+        }
+    }
+}
@@ -1,19 +1,74 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.model.ChangeTracker;
 import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.utils.DateConverter;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
  * to execute the specific SQL Statements.
  */
-public class TreatmentDao extends DaoImp<Treatment> {
+public class TreatmentDao extends PagedDaoImp<Treatment> {
+
+    // the columns shown in lists; the long remark texts are only read for a single treatment
+    private static final String LIST_COLUMNS = "tid, pid, treatment_date, begin, end, ttid, cgid, version";
+
+    // the fields of Treatment, which can be changed, mapped to their columns in the order of the table
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("date", "treatment_date");
+        COLUMNS.put("begin", "begin");
+        COLUMNS.put("end", "end");
+        COLUMNS.put("description", "ttid");
+        COLUMNS.put("remarks", "remark");
+    }
+
+    // the fields, which the views can sort by, mapped to their columns; the description is stored as
+    // type id, so it is not sortable
+    private static final Map<String, String> SORT_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        SORT_COLUMNS.put("tid", "tid");
+        SORT_COLUMNS.put("pid", "pid");
+        SORT_COLUMNS.put("date", "treatment_date");
+        SORT_COLUMNS.put("begin", "begin");
+        SORT_COLUMNS.put("end", "end");
+    }
+
+    // the last snapshot read by any TreatmentDao, together with the stamp of the data it was read from
+    private static TreatmentSnapshot snapshot;
+    private static long[] snapshotStamp;
+
+    // maps the rows of all queries by the names of their columns; the remarks are only loaded, if they were selected
+    private final RowMapper<Treatment> mapper = new RowMapper<>(
+            new String[]{"tid", "pid", "treatment_date", "begin", "end", "ttid", "cgid", "version"}, "remark") {
+        @Override
+        protected Treatment map(ResultSet result, int[] columns) throws SQLException {
+            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(columns[2]));
+            LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(columns[3]));
+            LocalTime end = DateConverter.convertStringToLocalTime(result.getString(columns[4]));
+            Treatment treatment = new Treatment(result.getLong(columns[0]), result.getLong(columns[1]), date, begin,
+                    end, TreatmentTypeCache.getName(connection, result.getLong(columns[5])), null,
+                    result.getLong(columns[6]));
+            treatment.getChangeTracker().setVersion(result.getLong(columns[7]));
+            if (columns[8] > 0) {
+                treatment.loadRemarks(result.getString(columns[8]));
+            } else {
+                treatment.unloadRemarks();
+            }
+            return treatment;
+        }
+    };
 
     /**
      * The constructor initiates an object of <code>TreatmentDao</code> and passes the connection to its super class.
@@ -29,184 +84,414 @@ public class TreatmentDao extends DaoImp<Treatment> {
      *
      * @param treatment Object of <code>Treatment</code> to persist.
      * @return <code>PreparedStatement</code> to insert the given patient.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getCreateStatement(Treatment treatment) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "INSERT INTO treatment (pid, treatment_date, begin, end, description, remark, cgid) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, treatment.getPid());
-            preparedStatement.setString(2, treatment.getDate());
-            preparedStatement.setString(3, treatment.getBegin());
-            preparedStatement.setString(4, treatment.getEnd());
-            preparedStatement.setString(5, treatment.getDescription());
-            preparedStatement.setString(6, treatment.getRemarks());
-            preparedStatement.setLong(7, treatment.getCgid());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getCreateStatement(Treatment treatment) throws SQLException {
+        final String SQL = "INSERT INTO treatment (pid, treatment_date, begin, end, ttid, remark, cgid) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setLong(1, treatment.getPid());
+        preparedStatement.setString(2, treatment.getDate());
+        preparedStatement.setString(3, treatment.getBegin());
+        preparedStatement.setString(4, treatment.getEnd());
+        preparedStatement.setLong(5, TreatmentTypeCache.getOrCreateId(this.connection, treatment.getDescription()));
+        preparedStatement.setString(6, treatment.getRemarks());
+        preparedStatement.setLong(7, treatment.getCgid());
         return preparedStatement;
     }
 
     /**
-     * Generates a <code>PreparedStatement</code> to query a treatment by a given treatment id (tid).
+     * Generates a <code>PreparedStatement</code> to query a treatment by a given treatment id (tid), including its
+     * remarks.
      *
      * @param tid Treatment id to query.
      * @return <code>PreparedStatement</code> to query the treatment.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getReadByIDStatement(long tid) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "SELECT * FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, tid);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getReadByIDStatement(long tid) throws SQLException {
+        final String SQL = "SELECT " + LIST_COLUMNS + ", remark FROM treatment WHERE tid = ?";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setLong(1, tid);
         return preparedStatement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of one treatment to an object of <code>Treatment</code>.
+     * Reads the remarks of a treatment, which was read for a list without them.
      *
-     * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Treatment</code>.
-     * @return Object of class <code>Treatment</code> with the data from the resultSet.
+     * @param tid Treatment id.
+     * @return The remarks, or null, if there are none or the treatment does not exist.
+     * @throws SQLException If a database access error occurs.
      */
+    public String readRemarks(long tid) throws SQLException {
+        return measure("readRemarks", () -> {
+            PreparedStatement statement = this.prepare("SELECT remark FROM treatment WHERE tid = ?");
+            statement.setLong(1, tid);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        });
+    }
+
+    @Override
+    protected RowMapper<Treatment> getRowMapper() {
+        return this.mapper;
+    }
+
     @Override
-    protected Treatment getInstanceFromResultSet(ResultSet result) throws SQLException {
-        LocalDate date = DateConverter.convertStringToLocalDate(result.getString(3));
-        LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(4));
-        LocalTime end = DateConverter.convertStringToLocalTime(result.getString(5));
-        return new Treatment(result.getLong(1), result.getLong(2),
-                date, begin, end, result.getString(6), result.getString(7),result.getLong(7));
+    protected Treatment copy(Treatment treatment) {
+        Treatment copy = new Treatment(treatment.getTid(), treatment.getPid(), treatment.getLocalDate(),
+                DateConverter.convertStringToLocalTime(treatment.getBegin()),
+                DateConverter.convertStringToLocalTime(treatment.getEnd()), treatment.getDescription(),
+                treatment.getRemarks(), treatment.getCgid());
+        copy.getChangeTracker().setVersion(treatment.getChangeTracker().getVersion());
+        if (!treatment.isRemarksLoaded()) {
+            copy.unloadRemarks();
+        }
+        return copy;
     }
 
     /**
-     * Generates a <code>PreparedStatement</code> to query all treatments.
+     * Generates a <code>PreparedStatement</code> to query the list columns of all treatments.
      *
      * @return <code>PreparedStatement</code> to query all treatments.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getReadAllStatement() {
-        PreparedStatement statement = null;
-        try {
-            final String SQL = "SELECT * FROM treatment";
-            statement = this.connection.prepareStatement(SQL);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getReadAllStatement() throws SQLException {
+        final String SQL = "SELECT " + LIST_COLUMNS + " FROM treatment";
+        PreparedStatement statement = this.prepare(SQL);
         return statement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of all treatments to an <code>ArrayList</code> with objects of class
-     * <code>Treatment</code>.
-     *
-     * @param result ResultSet with all rows. The columns will be mapped to objects of class <code>Treatment</code>.
-     * @return <code>ArrayList</code> with objects of class <code>Treatment</code> of all rows in the
-     * <code>ResultSet</code>.
+     * @param criteria Filter of the treatments.
+     * @return SQL of the query of the treatments matching a filter, ordered by date and begin.
      */
-    @Override
-    protected ArrayList<Treatment> getListFromResultSet(ResultSet result) throws SQLException {
-        ArrayList<Treatment> list = new ArrayList<Treatment>();
-        while (result.next()) {
-            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(3));
-            LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(4));
-            LocalTime end = DateConverter.convertStringToLocalTime(result.getString(5));
-            Treatment treatment = new Treatment(result.getLong(1), result.getLong(2),
-                    date, begin, end, result.getString(6), result.getString(7),result.getLong(8));
-            list.add(treatment);
-        }
-        return list;
+    private static String getReadTreatmentsSql(TreatmentCriteria criteria) {
+        return "SELECT " + LIST_COLUMNS + " FROM treatment" +
+                (criteria.isEmpty() ? "" : " WHERE " + criteria.getWhere()) + " ORDER BY treatment_date, begin";
     }
 
     /**
-     * Generates a PreparedStatement to query all treatments associated with a specific person,
-     * identified by their ID and the column name to match against.
+     * Generates a <code>PreparedStatement</code> to query the treatments matching a filter, ordered by date and begin.
      *
-     * @param id The ID of the person whose treatments are to be queried.
-     * @param columnName The name of the column in the database table to match the person's ID against.
-     * @return A PreparedStatement to query all treatments for the specified person.
+     * @param criteria Filter of the treatments.
+     * @return <code>PreparedStatement</code> to query the matching treatments.
+     * @throws SQLException If the statement could not be prepared.
      */
-    private PreparedStatement getReadAllTreatmentsOfOnePersonById(long id, String columnName) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "SELECT * FROM treatment WHERE " + columnName + " = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, id);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+    private PreparedStatement getReadTreatmentsStatement(TreatmentCriteria criteria) throws SQLException {
+        PreparedStatement preparedStatement = this.prepare(getReadTreatmentsSql(criteria));
+        int index = 1;
+        for (Object parameter : criteria.getParameters()) {
+            preparedStatement.setObject(index++, parameter);
         }
         return preparedStatement;
     }
 
+    /**
+     * Retrieves the treatments matching a filter, ordered by date and begin. The filter is applied by the database.
+     * Repeated queries of the same filter are answered from the {@link QueryCache}, until the treatments or patients
+     * are changed.
+     *
+     * @param criteria Filter of the treatments.
+     * @return A list of {@code Treatment} objects matching the filter.
+     * @throws SQLException If a database access error occurs during the query execution or result mapping.
+     */
+    public List<Treatment> readTreatments(TreatmentCriteria criteria) throws SQLException {
+        return readCached("readTreatments", getReadTreatmentsSql(criteria), criteria.getParameters());
+    }
+
+    /**
+     * Streams the treatments matching a filter without building a list. The rows are read from a forward-only cursor,
+     * which is closed together with the stream.
+     *
+     * @param criteria  Filter of the treatments.
+     * @param fetchSize Number of rows fetched at once, 0 for the default of the driver.
+     * @return Lazily filled stream of the treatments, which has to be closed.
+     * @throws SQLException If the query could not be executed.
+     */
+    public Stream<Treatment> streamTreatments(TreatmentCriteria criteria, int fetchSize) throws SQLException {
+        return stream("streamTreatments", getReadTreatmentsStatement(criteria), fetchSize);
+    }
+
     /**
      * Retrieves a list of treatments for a specific person by their ID and specified column name.
      *
      * @param id         The ID of the person for whom the treatments are to be retrieved.
-     * @param columnName The name of the database column used to filter treatments (e.g., patient's or caregiver's ID column).
+     * @param columnName The column of the person's ID, either "pid" for a patient or "cgid" for a caregiver.
      * @return A list of {@code Treatment} objects representing the treatments associated with the specified person.
      * @throws SQLException If a database access error occurs during the query execution or result mapping.
+     * @throws IllegalArgumentException If the column is neither "pid" nor "cgid".
      */
     public List<Treatment> readTreatmentsById(long id, String columnName) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOnePersonById(id, columnName).executeQuery();
-        return getListFromResultSet(result);
+        return readTreatments(getCriteriaOfPerson(id, columnName));
+    }
+
+    /**
+     * Streams the treatments of a specific person without building a list.
+     *
+     * @param id         The ID of the person for whom the treatments are to be streamed.
+     * @param columnName The column of the person's ID, either "pid" for a patient or "cgid" for a caregiver.
+     * @param fetchSize  Number of rows fetched at once, 0 for the default of the driver.
+     * @return Lazily filled stream of the treatments, which has to be closed.
+     * @throws SQLException If the query could not be executed.
+     * @throws IllegalArgumentException If the column is neither "pid" nor "cgid".
+     */
+    public Stream<Treatment> streamTreatmentsById(long id, String columnName, int fetchSize) throws SQLException {
+        return streamTreatments(getCriteriaOfPerson(id, columnName), fetchSize);
+    }
+
+    private TreatmentCriteria getCriteriaOfPerson(long id, String columnName) {
+        switch (columnName) {
+            case "pid":
+                return TreatmentCriteria.builder().patient(id).build();
+            case "cgid":
+                return TreatmentCriteria.builder().caregiver(id).build();
+            default:
+                throw new IllegalArgumentException("Unbekannte Spalte: " + columnName);
+        }
+    }
+
+    /**
+     * @return The names of all treatment types in alphabetical order, e.g. to filter by description.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<String> readDescriptions() throws SQLException {
+        return TreatmentTypeCache.getNames(this.connection);
+    }
+
+    /**
+     * Reads one page of the treatments matching a filter. See {@link PagedDaoImp#readPage(String, boolean, Page, int)}.
+     *
+     * @param criteria  Filter of the treatments.
+     * @param field     Sortable field, or null to sort by the treatment id.
+     * @param ascending true for ascending, false for descending order.
+     * @param after     Previous page with the same filter and order, or null for the first page.
+     * @param limit     Maximum number of treatments.
+     * @return The page of treatments.
+     * @throws SQLException If a database access error occurs.
+     */
+    public Page<Treatment> readTreatmentsPage(TreatmentCriteria criteria, String field, boolean ascending,
+                                              Page<Treatment> after, int limit) throws SQLException {
+        return readPage(criteria.getWhere(), criteria.getParameters(), field, ascending, after, limit);
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query all treatments within a date range. The query is served by
+     * the index on <code>treatment_date</code>.
+     *
+     * @param from First day of the range (inclusive).
+     * @param to   Last day of the range (inclusive).
+     * @return <code>PreparedStatement</code> to query all treatments of the range.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    private PreparedStatement getReadTreatmentsBetweenStatement(LocalDate from, LocalDate to) throws SQLException {
+        final String SQL = "SELECT " + LIST_COLUMNS + " FROM treatment WHERE treatment_date BETWEEN ? AND ? " +
+                "ORDER BY treatment_date, begin";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setString(1, DateConverter.convertLocalDateToString(from));
+        preparedStatement.setString(2, DateConverter.convertLocalDateToString(to));
+        return preparedStatement;
+    }
+
+    /**
+     * Retrieves all treatments within a date range, ordered by date and begin.
+     *
+     * @param from First day of the range (inclusive).
+     * @param to   Last day of the range (inclusive).
+     * @return A list of {@code Treatment} objects of the range.
+     * @throws SQLException If a database access error occurs during the query execution or result mapping.
+     */
+    public List<Treatment> readTreatmentsBetween(LocalDate from, LocalDate to) throws SQLException {
+        return measure("readTreatmentsBetween",
+                () -> readList(getReadTreatmentsBetweenStatement(from, to)));
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to query the treatments of one caregiver on one day. The query is
+     * served by the index on <code>(cgid, treatment_date)</code>.
+     *
+     * @param cgid Id of the caregiver.
+     * @param date Day of the treatments.
+     * @return <code>PreparedStatement</code> to query the treatments.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    private PreparedStatement getReadTreatmentsOfCaregiverOnDateStatement(long cgid, LocalDate date)
+            throws SQLException {
+        final String SQL = "SELECT " + LIST_COLUMNS + " FROM treatment WHERE cgid = ? AND treatment_date = ? " +
+                "ORDER BY begin";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setLong(1, cgid);
+        preparedStatement.setString(2, DateConverter.convertLocalDateToString(date));
+        return preparedStatement;
+    }
+
+    /**
+     * Retrieves the treatments of one caregiver on one day, ordered by begin.
+     *
+     * @param cgid Id of the caregiver.
+     * @param date Day of the treatments.
+     * @return A list of {@code Treatment} objects of the caregiver on that day.
+     * @throws SQLException If a database access error occurs during the query execution or result mapping.
+     */
+    public List<Treatment> readTreatmentsOfCaregiverOnDate(long cgid, LocalDate date) throws SQLException {
+        return measure("readTreatmentsOfCaregiverOnDate",
+                () -> readList(getReadTreatmentsOfCaregiverOnDateStatement(cgid, date)));
     }
 
     /**
-     * Generates a <code>PreparedStatement</code> to update the given treatment, identified
-     * by the id of the treatment (tid).
+     * Returns a read-only {@link TreatmentSnapshot} of all treatments. The snapshot is kept and returned again, until
+     * the treatments were written by this application or another connection committed a write, because only then the
+     * table has to be streamed again. The rows are copied straight into primitive columns, so no
+     * <code>Treatment</code> objects are created and the remarks are not read at all.
+     *
+     * @return Column store of all treatments.
+     * @throws SQLException If a database access error occurs.
+     */
+    public TreatmentSnapshot readSnapshot() throws SQLException {
+        // the stamp is taken before reading, so a write during the read makes the snapshot stale
+        long[] stamp = getDataStamp(this.entity);
+        synchronized (TreatmentDao.class) {
+            if (snapshot != null && Arrays.equals(snapshotStamp, stamp)) {
+                return snapshot;
+            }
+        }
+        TreatmentSnapshot read = readSnapshotFromDatabase();
+        synchronized (TreatmentDao.class) {
+            snapshot = read;
+            snapshotStamp = stamp;
+        }
+        return read;
+    }
+
+    /**
+     * Streams all treatments once into a new {@link TreatmentSnapshot}.
+     */
+    private TreatmentSnapshot readSnapshotFromDatabase() throws SQLException {
+        final String SQL = "SELECT t.tid, t.pid, t.treatment_date, t.begin, t.end, tt.name, t.cgid " +
+                "FROM treatment t JOIN treatment_type tt ON tt.ttid = t.ttid";
+        return measure("readSnapshot", () -> {
+            TreatmentSnapshot.Builder builder = new TreatmentSnapshot.Builder();
+            // not cached: the snapshot is read rarely and the statement is closed right away
+            try (PreparedStatement statement = SlowQueryLog.wrap(this.connection, SQL,
+                    this.connection.prepareStatement(SQL));
+                 ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    builder.add(result);
+                }
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to update the changed columns of the given treatment, identified by
+     * the id of the treatment (tid). Columns, which were not changed since the treatment was read, are not written.
      *
      * @param treatment Treatment object to update.
-     * @return <code>PreparedStatement</code> to update the given treatment.
+     * @return <code>PreparedStatement</code> to update the given treatment, or null, if nothing was changed.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getUpdateStatement(Treatment treatment) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL =
-                    "UPDATE treatment SET " +
-                            "pid = ?, " +
-                            "treatment_date = ?, " +
-                            "begin = ?, " +
-                            "end = ?, " +
-                            "description = ?, " +
-                            "remark = ? " +
-                            "WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, treatment.getPid());
-            preparedStatement.setString(2, treatment.getDate());
-            preparedStatement.setString(3, treatment.getBegin());
-            preparedStatement.setString(4, treatment.getEnd());
-            preparedStatement.setString(5, treatment.getDescription());
-            preparedStatement.setString(6, treatment.getRemarks());
-            preparedStatement.setLong(7, treatment.getTid());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+    protected PreparedStatement getUpdateStatement(Treatment treatment) throws SQLException {
+        return getUpdateStatement(treatment, treatment.getChangeTracker().snapshot());
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to update the columns, which were changed in the snapshot, to the
+     * values of the snapshot.
+     *
+     * @param treatment Treatment object to update.
+     * @param changes   Snapshot of the changed fields.
+     * @return <code>PreparedStatement</code> to update the given treatment, or null, if nothing was changed.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    @Override
+    protected PreparedStatement getUpdateStatement(Treatment treatment, ChangeTracker.Snapshot changes)
+            throws SQLException {
+        List<String> fields = getChangedFields(changes, COLUMNS);
+        if (fields.isEmpty()) {
+            return null;
+        }
+        PreparedStatement preparedStatement = this.prepare(buildUpdateSql("treatment", COLUMNS, fields, "tid"));
+        int index = 1;
+        for (String field : fields) {
+            preparedStatement.setObject(index++, toColumnValue(field, changes.getValue(field)));
         }
+        preparedStatement.setLong(index++, treatment.getTid());
+        preparedStatement.setLong(index, treatment.getChangeTracker().getVersion());
         return preparedStatement;
     }
 
+    @Override
+    protected ChangeTracker getChangeTracker(Treatment treatment) {
+        return treatment.getChangeTracker();
+    }
+
+    @Override
+    protected Map<String, String> getSortColumns() {
+        return SORT_COLUMNS;
+    }
+
+    @Override
+    protected String getKeyField() {
+        return "tid";
+    }
+
+    @Override
+    protected String getListSql() {
+        return "SELECT " + LIST_COLUMNS + " FROM treatment";
+    }
+
+    /**
+     * Filters by care level and room number read the patients, whose deletion also deletes their treatments.
+     */
+    @Override
+    protected String[] getQueryTables() {
+        return new String[]{this.entity, "Patient"};
+    }
+
+    @Override
+    protected Object getSortValue(Treatment treatment, String field) {
+        switch (field) {
+            case "tid":
+                return treatment.getTid();
+            case "pid":
+                return treatment.getPid();
+            case "date":
+                return treatment.getDate();
+            case "begin":
+                return treatment.getBegin();
+            case "end":
+                return treatment.getEnd();
+            default:
+                throw new IllegalArgumentException("Unbekanntes Feld: " + field);
+        }
+    }
+
+    // converts the value of a changed field to the value of its column
+    private Object toColumnValue(String field, Object value) throws SQLException {
+        if (field.equals("description")) {
+            return TreatmentTypeCache.getOrCreateId(this.connection, (String) value);
+        }
+        return value != null ? value.toString() : null;
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to delete a treatment with the given id.
      *
      * @param tid Id of the Treatment to delete.
      * @return <code>PreparedStatement</code> to delete treatment with the given id.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getDeleteStatement(long tid) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL =
-                    "DELETE FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, tid);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getDeleteStatement(long tid) throws SQLException {
+        final String SQL =
+                "DELETE FROM treatment WHERE tid = ?";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setLong(1, tid);
         return preparedStatement;
     }
 }
\ No newline at end of file
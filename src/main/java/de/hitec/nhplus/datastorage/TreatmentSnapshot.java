@@ -0,0 +1,267 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.CareMinutes;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only column store of all treatments for analytics. Every attribute is held in its own primitive array, so a
+ * scan touches only the columns it needs and runs over contiguous memory instead of following references to
+ * <code>LocalDate</code>, <code>LocalTime</code> and <code>String</code> objects per treatment:
+ * <ul>
+ *     <li><code>tid</code>, <code>pid</code> and <code>cgid</code> as <code>long[]</code></li>
+ *     <li>the date as epoch day and as month index (year * 12 + month - 1) in <code>int[]</code></li>
+ *     <li>begin and end as minute of the day in <code>short[]</code></li>
+ *     <li>the description dictionary-encoded as <code>int[]</code> codes into a small <code>String[]</code></li>
+ * </ul>
+ * The remarks are not part of the snapshot. Large scans are split into chunks, which are aggregated in parallel.
+ */
+public class TreatmentSnapshot {
+
+    private static final int PARALLEL_THRESHOLD = 10_000;
+    private static final int CHUNK_SIZE = 4_096;
+
+    private final int size;
+    private final long[] tid;
+    private final long[] pid;
+    private final long[] cgid;
+    private final int[] epochDay;
+    private final int[] month;
+    private final short[] begin;
+    private final short[] end;
+    private final int[] description;
+    private final String[] dictionary;
+
+    private TreatmentSnapshot(Builder builder) {
+        this.size = builder.size;
+        this.tid = Arrays.copyOf(builder.tid, builder.size);
+        this.pid = Arrays.copyOf(builder.pid, builder.size);
+        this.cgid = Arrays.copyOf(builder.cgid, builder.size);
+        this.epochDay = Arrays.copyOf(builder.epochDay, builder.size);
+        this.month = Arrays.copyOf(builder.month, builder.size);
+        this.begin = Arrays.copyOf(builder.begin, builder.size);
+        this.end = Arrays.copyOf(builder.end, builder.size);
+        this.description = Arrays.copyOf(builder.description, builder.size);
+        this.dictionary = builder.dictionary.toArray(new String[0]);
+    }
+
+    /**
+     * @return The number of treatments in the snapshot.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The distinct descriptions of the treatments. The position of a description is its code.
+     */
+    public List<String> getDescriptions() {
+        return List.of(dictionary);
+    }
+
+    /**
+     * Sums the care minutes of all treatments within the date range.
+     *
+     * @param from First day (inclusive).
+     * @param to   Last day (inclusive).
+     * @return The summed care minutes.
+     */
+    public long sumMinutes(LocalDate from, LocalDate to) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        return rows().map(i -> {
+            int day = this.epochDay[i];
+            return day >= fromDay && day <= toDay ? this.end[i] - this.begin[i] : 0;
+        }).asLongStream().sum();
+    }
+
+    /**
+     * Sums the care minutes per patient within the date range.
+     *
+     * @param from First day (inclusive).
+     * @param to   Last day (inclusive).
+     * @return The summed care minutes per patient id.
+     */
+    public Map<Long, Long> sumMinutesPerPatient(LocalDate from, LocalDate to) {
+        return sumMinutesPerKey(this.pid, from, to);
+    }
+
+    /**
+     * Sums the care minutes per caregiver within the date range.
+     *
+     * @param from First day (inclusive).
+     * @param to   Last day (inclusive).
+     * @return The summed care minutes per caregiver id.
+     */
+    public Map<Long, Long> sumMinutesPerCaregiver(LocalDate from, LocalDate to) {
+        return sumMinutesPerKey(this.cgid, from, to);
+    }
+
+    /**
+     * Sums the care minutes and counts the treatments per month and description within the date range. This report
+     * is not covered by the daily summary table, because the summary does not distinguish descriptions.
+     *
+     * @param from First day (inclusive).
+     * @param to   Last day (inclusive).
+     * @return One row per month and description, ordered by month and description.
+     */
+    public List<CareMinutes> sumMinutesPerMonthAndDescription(LocalDate from, LocalDate to) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        int firstMonth = from.getYear() * 12 + from.getMonthValue() - 1;
+        int months = to.getYear() * 12 + to.getMonthValue() - firstMonth;
+        int codes = this.dictionary.length;
+        if (months <= 0 || codes == 0) {
+            return new ArrayList<>();
+        }
+        // minutes and counts are accumulated in one flat array: [month][code][minutes, count]
+        long[] totals = chunks().mapToObj(chunk -> {
+            long[] partial = new long[months * codes * 2];
+            int last = Math.min(chunk + CHUNK_SIZE, this.size);
+            for (int i = chunk; i < last; i++) {
+                int day = this.epochDay[i];
+                if (day >= fromDay && day <= toDay) {
+                    int slot = ((this.month[i] - firstMonth) * codes + this.description[i]) * 2;
+                    partial[slot] += this.end[i] - this.begin[i];
+                    partial[slot + 1]++;
+                }
+            }
+            return partial;
+        }).reduce(TreatmentSnapshot::add).orElse(new long[months * codes * 2]);
+
+        List<CareMinutes> rows = new ArrayList<>();
+        for (int m = 0; m < months; m++) {
+            int monthIndex = firstMonth + m;
+            String monthName = String.format("%04d-%02d", monthIndex / 12, monthIndex % 12 + 1);
+            for (int code = 0; code < codes; code++) {
+                int slot = (m * codes + code) * 2;
+                if (totals[slot + 1] > 0) {
+                    rows.add(new CareMinutes(monthName, String.valueOf(code), this.dictionary[code],
+                            totals[slot], totals[slot + 1]));
+                }
+            }
+        }
+        rows.sort((left, right) -> left.getMonth().equals(right.getMonth())
+                ? left.getLabel().compareTo(right.getLabel())
+                : left.getMonth().compareTo(right.getMonth()));
+        return rows;
+    }
+
+    private Map<Long, Long> sumMinutesPerKey(long[] keys, LocalDate from, LocalDate to) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        return chunks().mapToObj(chunk -> {
+            Map<Long, Long> partial = new HashMap<>();
+            int last = Math.min(chunk + CHUNK_SIZE, this.size);
+            for (int i = chunk; i < last; i++) {
+                int day = this.epochDay[i];
+                if (day >= fromDay && day <= toDay) {
+                    partial.merge(keys[i], (long) (this.end[i] - this.begin[i]), Long::sum);
+                }
+            }
+            return partial;
+        }).reduce(new HashMap<>(), (left, right) -> {
+            Map<Long, Long> merged = new HashMap<>(left);
+            right.forEach((key, minutes) -> merged.merge(key, minutes, Long::sum));
+            return merged;
+        });
+    }
+
+    private IntStream rows() {
+        IntStream rows = IntStream.range(0, this.size);
+        return this.size >= PARALLEL_THRESHOLD ? rows.parallel() : rows;
+    }
+
+    private IntStream chunks() {
+        IntStream chunks = IntStream.range(0, (this.size + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(chunk -> chunk * CHUNK_SIZE);
+        return this.size >= PARALLEL_THRESHOLD ? chunks.parallel() : chunks;
+    }
+
+    private static long[] add(long[] left, long[] right) {
+        long[] sum = new long[left.length];
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = left[i] + right[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Collects the rows of a <code>ResultSet</code> into growing primitive arrays. The dates and times are parsed
+     * directly from their text representation instead of going through <code>DateTimeFormatter</code>.
+     */
+    static class Builder {
+        private int size;
+        private long[] tid = new long[1024];
+        private long[] pid = new long[1024];
+        private long[] cgid = new long[1024];
+        private int[] epochDay = new int[1024];
+        private int[] month = new int[1024];
+        private short[] begin = new short[1024];
+        private short[] end = new short[1024];
+        private int[] description = new int[1024];
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        /**
+         * Appends the current row of the result. The columns are expected in the order tid, pid, treatment_date,
+         * begin, end, description, cgid.
+         */
+        void add(ResultSet result) throws SQLException {
+            if (this.size == this.tid.length) {
+                grow();
+            }
+            int i = this.size++;
+            this.tid[i] = result.getLong(1);
+            this.pid[i] = result.getLong(2);
+            String date = result.getString(3);
+            int year = parse(date, 0, 4);
+            int monthOfYear = parse(date, 5, 7);
+            this.epochDay[i] = (int) LocalDate.of(year, monthOfYear, parse(date, 8, 10)).toEpochDay();
+            this.month[i] = year * 12 + monthOfYear - 1;
+            this.begin[i] = minuteOfDay(result.getString(4));
+            this.end[i] = minuteOfDay(result.getString(5));
+            this.description[i] = this.codes.computeIfAbsent(result.getString(6), text -> {
+                this.dictionary.add(text);
+                return this.dictionary.size() - 1;
+            });
+            this.cgid[i] = result.getLong(7);
+        }
+
+        TreatmentSnapshot build() {
+            return new TreatmentSnapshot(this);
+        }
+
+        private void grow() {
+            int capacity = this.tid.length * 2;
+            this.tid = Arrays.copyOf(this.tid, capacity);
+            this.pid = Arrays.copyOf(this.pid, capacity);
+            this.cgid = Arrays.copyOf(this.cgid, capacity);
+            this.epochDay = Arrays.copyOf(this.epochDay, capacity);
+            this.month = Arrays.copyOf(this.month, capacity);
+            this.begin = Arrays.copyOf(this.begin, capacity);
+            this.end = Arrays.copyOf(this.end, capacity);
+            this.description = Arrays.copyOf(this.description, capacity);
+        }
+
+        private static short minuteOfDay(String time) {
+            return (short) (parse(time, 0, 2) * 60 + parse(time, 3, 5));
+        }
+
+        private static int parse(String text, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                value = value * 10 + (text.charAt(i) - '0');
+            }
+            return value;
+        }
+    }
+}
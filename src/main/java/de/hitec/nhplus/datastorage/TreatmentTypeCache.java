@@ -0,0 +1,106 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the lookup table <code>treatment_type</code>, which holds the few distinct treatment descriptions
+ * ("Gespräch", "Waschen", "KG", ...). The treatment table only stores the id (ttid) of a type. Every treatment of the
+ * same type shares the one <code>String</code> instance held by this cache, instead of materializing its own copy
+ * per row.
+ *
+ * The table is read completely on the first access and again whenever an unknown id is requested, e.g. after another
+ * workstation added a new type.
+ */
+public class TreatmentTypeCache {
+
+    private static final Map<Long, String> namesById = new HashMap<>();
+    private static final Map<String, Long> idsByName = new HashMap<>();
+
+    private TreatmentTypeCache() {
+    }
+
+    /**
+     * Returns the name of the treatment type with the given id.
+     *
+     * @param connection Connection to load the types with on a cache miss.
+     * @param ttid       Id of the treatment type.
+     * @return The shared name of the type, or null if no type with this id exists.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static synchronized String getName(Connection connection, long ttid) throws SQLException {
+        String name = namesById.get(ttid);
+        if (name == null) {
+            load(connection);
+            name = namesById.get(ttid);
+        }
+        return name;
+    }
+
+    /**
+     * Returns the id of the treatment type with the given name. Unknown names are added to the lookup table.
+     *
+     * @param connection Connection to load or insert the type with.
+     * @param name       Name of the treatment type.
+     * @return The id of the type.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static synchronized long getOrCreateId(Connection connection, String name) throws SQLException {
+        Long ttid = idsByName.get(name);
+        if (ttid != null) {
+            return ttid;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT OR IGNORE INTO treatment_type (name) VALUES (?)")) {
+            statement.setString(1, name);
+            statement.executeUpdate();
+        }
+        load(connection);
+        return idsByName.get(name);
+    }
+
+    /**
+     * Returns the names of all treatment types in alphabetical order.
+     *
+     * @param connection Connection to load the types with on the first access.
+     * @return The names of all treatment types.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static synchronized List<String> getNames(Connection connection) throws SQLException {
+        if (namesById.isEmpty()) {
+            load(connection);
+        }
+        List<String> names = new ArrayList<>(idsByName.keySet());
+        names.sort(String::compareTo);
+        return names;
+    }
+
+    /**
+     * Forgets all cached types. Must be called when the lookup table was recreated, e.g. by <code>SetUpDB</code>.
+     */
+    public static synchronized void clear() {
+        namesById.clear();
+        idsByName.clear();
+    }
+
+    private static void load(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT ttid, name FROM treatment_type");
+             ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                long ttid = result.getLong(1);
+                String name = result.getString(2);
+                if (!namesById.containsKey(ttid)) {
+                    String shared = name.intern();
+                    namesById.put(ttid, shared);
+                    idsByName.put(shared, ttid);
+                }
+            }
+        }
+    }
+}
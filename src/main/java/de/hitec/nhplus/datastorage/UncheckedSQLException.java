@@ -0,0 +1,19 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps an <code>SQLException</code>, which occurred while a stream of a DAO was consumed, because the methods of
+ * <code>Stream</code> cannot throw checked exceptions.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -5,7 +5,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
 
 /**
  * UserDao is a concrete implementation of the generic DaoImp class designed to manage User entities.
@@ -16,6 +15,15 @@ import java.util.ArrayList;
  * Each method is tailored to handle operations specific to the User entity.
  */
 public class UserDao extends DaoImp<User>{
+
+    // maps the rows of all queries by the names of their columns
+    private static final RowMapper<User> MAPPER = new RowMapper<>("username", "password") {
+        @Override
+        protected User map(ResultSet result, int[] columns) throws SQLException {
+            return new User(result.getString(columns[0]), result.getString(columns[1]));
+        }
+    };
+
     /**
      * Constructs a new instance of the UserDao class. The class is responsible
      * for data access operations related to the User entity. It uses the provided
@@ -27,41 +35,15 @@ public class UserDao extends DaoImp<User>{
         super(connection);
     }
 
-    /**
-     * Retrieves an instance of the User object from the provided ResultSet.
-     * This method extracts user data from the ResultSet and converts it into
-     * a User object with the relevant fields populated.
-     *
-     * @param result The ResultSet containing the user data retrieved from the database.
-     * @return A User object with the data mapped from the given ResultSet.
-     * @throws SQLException If an error occurs while accessing the ResultSet.
-     */
     @Override
-    protected User getInstanceFromResultSet(ResultSet result) throws SQLException {
-        return new User(
-                result.getString(1),
-                result.getString(2));
+    protected RowMapper<User> getRowMapper() {
+        return MAPPER;
     }
 
-    /**
-     * Retrieves a list of User objects from the provided ResultSet by iterating through
-     * all rows and mapping each row to a User instance.
-     *
-     * @param result The ResultSet containing data retrieved from the database. Each row
-     *               in the ResultSet corresponds to a User record.
-     * @return An ArrayList of User objects populated with data from the ResultSet.
-     * @throws SQLException if an SQL exception occurs while accessing the ResultSet.
-     */
     @Override
-    protected ArrayList<User> getListFromResultSet(ResultSet result) throws SQLException {
-        ArrayList<User> list = new ArrayList<>();
-        while (result.next()) {
-            User user = new User(
-                    result.getString(1),
-                    result.getString(2));
-            list.add(user);
-        }
-        return list;    }
+    protected User copy(User user) {
+        return new User(user.getName(), user.getPassword());
+    }
 
     /**
      * Creates a PreparedStatement for inserting a User object into the database.
@@ -69,42 +51,34 @@ public class UserDao extends DaoImp<User>{
      *
      * @param user The User object containing the username and password to be inserted into the database.
      * @return A PreparedStatement object configured to execute the SQL INSERT statement
-     *         for the provided User object. Returns null if a database error occurs while creating the statement.
+     *         for the provided User object.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getCreateStatement(User user) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "INSERT INTO user (username, password)" +
-                    "VALUES (?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, user.getName());
-            preparedStatement.setString(2, user.getPassword());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    protected PreparedStatement getCreateStatement(User user) throws SQLException {
+        final String SQL = "INSERT INTO user (username, password)" +
+                "VALUES (?, ?)";
+        PreparedStatement preparedStatement = this.prepare(SQL);
+        preparedStatement.setString(1, user.getName());
+        preparedStatement.setString(2, user.getPassword());
         return preparedStatement;
     }
 
     /**
      * Prepares and returns a SQL statement to retrieve all entries from the "user" table.
      * This method constructs a {@link PreparedStatement} object using the database connection
-     * and a predefined query. If an SQL error occurs during statement preparation, the
-     * exception stack trace is printed, and the method returns null.
+     * and a predefined query.
      *
      * @return a {@link PreparedStatement} for executing a query to retrieve all records
-     *         from the "user" table, or null if there is a SQL error.
+     *         from the "user" table.
+     * @throws SQLException If the statement could not be prepared.
      */
     @Override
-    protected PreparedStatement getReadAllStatement() {
-        PreparedStatement statement = null;
-        try {
-            final String SQL = "SELECT * FROM user";
-            statement = this.connection.prepareStatement(SQL);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        return statement;    }
+    protected PreparedStatement getReadAllStatement() throws SQLException {
+        final String SQL = "SELECT * FROM user";
+        PreparedStatement statement = this.prepare(SQL);
+        return statement;
+    }
 
     @Override
     protected PreparedStatement getReadByIDStatement(long key) {
@@ -0,0 +1,349 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.ChangeTracker;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes changed objects in the background, so editing a table never waits for the database. When an object is
+ * submitted, a snapshot of its changed fields is taken on the calling thread, and only the snapshot is written, so the
+ * background thread never reads the fields, which the FX thread is editing. Submitted objects are coalesced by their
+ * id: repeated edits of the same row before the next flush result in a single update with the latest snapshot. A
+ * flush starts shortly after the first pending change and writes all pending changes in one
+ * transaction on a background thread.
+ *
+ * The queue uses its own connection, so its transactions never include statements of the FX thread. If a flush
+ * fails, the transaction is rolled back and the changes are written again after a growing delay; after
+ * <code>MAX_ATTEMPTS</code> failed attempts the changes are dropped and reported. Listeners are informed about the
+ * number of unsaved changes on the background thread.
+ *
+ * An object, whose row was changed by another workstation since it was read, is not written and not retried. The
+ * other changes of the batch are committed, and the conflicting object is handed to the conflict listeners, which
+ * decide whether to write it again based on the current version.
+ *
+ * @param <T> Type of the written objects.
+ */
+public class WriteBehindQueue<T> {
+
+    /**
+     * Gets informed, when the number of unsaved changes or the state of the last flush changed. Called on the
+     * background thread of the queue.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void changed(int pending, boolean failing);
+    }
+
+    private static final long FLUSH_DELAY_MILLIS = 250;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final String entity;
+    private final DatabaseConfig config;
+    private final Function<Connection, DaoImp<T>> daoCreator;
+    private final ToLongFunction<T> keyOf;
+    private final Function<T, ChangeTracker> trackerOf;
+    private final ScheduledExecutorService writer;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<T>> conflictListeners = new CopyOnWriteArrayList<>();
+    // guarded by this: changes not yet taken by a flush, and the changes of the running flush
+    private final Map<Long, Change<T>> pending = new LinkedHashMap<>();
+    private final Map<Long, Change<T>> inFlight = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private boolean failing;
+    private int attempts;
+
+    // only used on the writer thread
+    private Connection connection;
+    private DaoImp<T> dao;
+
+    // a submitted object with the snapshot of its changed fields
+    private static final class Change<T> {
+        private final T object;
+        private final ChangeTracker.Snapshot changes;
+
+        private Change(T object, ChangeTracker.Snapshot changes) {
+            this.object = object;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * @param entity     Name of the entity, used for the name of the thread, the metrics and the log.
+     * @param daoCreator Creates the DAO writing the objects with the connection of the queue.
+     * @param keyOf      Returns the id of an object.
+     * @param trackerOf  Returns the tracker of the changed fields of an object.
+     */
+    public WriteBehindQueue(String entity, Function<Connection, DaoImp<T>> daoCreator, ToLongFunction<T> keyOf,
+                            Function<T, ChangeTracker> trackerOf) {
+        this(entity, ConnectionBuilder.getConfig(), daoCreator, keyOf, trackerOf);
+    }
+
+    /**
+     * @param entity     Name of the entity, used for the name of the thread, the metrics and the log.
+     * @param config     Database, which the queue opens its connection to, e.g. a test database.
+     * @param daoCreator Creates the DAO writing the objects with the connection of the queue.
+     * @param keyOf      Returns the id of an object.
+     * @param trackerOf  Returns the tracker of the changed fields of an object.
+     */
+    WriteBehindQueue(String entity, DatabaseConfig config, Function<Connection, DaoImp<T>> daoCreator,
+                     ToLongFunction<T> keyOf, Function<T, ChangeTracker> trackerOf) {
+        this.entity = entity;
+        this.config = config;
+        this.daoCreator = daoCreator;
+        this.keyOf = keyOf;
+        this.trackerOf = trackerOf;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-write-behind-" + entity.toLowerCase());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the update of the given object. A pending update of the same row is replaced. Has to be called on the
+     * thread editing the object, which takes the snapshot of the changed fields.
+     *
+     * @param object The changed object.
+     */
+    public void submit(T object) {
+        Change<T> change = new Change<>(object, this.trackerOf.apply(object).snapshot());
+        synchronized (this) {
+            this.pending.put(this.keyOf.applyAsLong(object), change);
+            scheduleFlush(FLUSH_DELAY_MILLIS);
+        }
+        notifyListeners();
+    }
+
+    /**
+     * Discards the pending update of a row, e.g. because the row is deleted. An update, which is written at the
+     * moment, is not affected.
+     *
+     * @param key Id of the row.
+     */
+    public void discard(long key) {
+        synchronized (this) {
+            this.pending.remove(key);
+        }
+        notifyListeners();
+    }
+
+    /**
+     * Replaces the objects of a freshly read list by the objects with unsaved changes, so reloading a table does not
+     * show the old values of rows, which are not written yet.
+     *
+     * @param objects List read from the database.
+     */
+    public synchronized void replaceUnsaved(List<T> objects) {
+        if (this.pending.isEmpty() && this.inFlight.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < objects.size(); i++) {
+            long key = this.keyOf.applyAsLong(objects.get(i));
+            Change<T> unsaved = this.pending.containsKey(key) ? this.pending.get(key) : this.inFlight.get(key);
+            if (unsaved != null) {
+                objects.set(i, unsaved.object);
+            }
+        }
+    }
+
+    /**
+     * @return Number of changes, which are not written yet.
+     */
+    public synchronized int getPendingCount() {
+        int count = this.pending.size();
+        for (Long key : this.inFlight.keySet()) {
+            if (!this.pending.containsKey(key)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void addListener(Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Adds a listener, which gets the objects, whose rows were changed by another workstation. Called on the
+     * background thread of the queue.
+     *
+     * @param listener Listener to add.
+     */
+    public void addConflictListener(Consumer<T> listener) {
+        this.conflictListeners.add(listener);
+    }
+
+    /**
+     * Writes all pending changes and closes the connection of the queue. Waits at most
+     * <code>CLOSE_TIMEOUT_SECONDS</code>; changes, which could not be written until then, are reported.
+     */
+    public void close() {
+        try {
+            Future<?> flushed = this.writer.submit(() -> {
+                for (int attempt = 0; attempt < MAX_ATTEMPTS && getPendingCount() > 0; attempt++) {
+                    flush();
+                }
+                closeConnection();
+            });
+            flushed.get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException exception) {
+            System.out.println(getPendingCount() + " Änderungen (" + this.entity +
+                    ") konnten nicht mehr gespeichert werden");
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        } finally {
+            this.writer.shutdownNow();
+        }
+        int unsaved = getPendingCount();
+        if (unsaved > 0) {
+            System.out.println(unsaved + " Änderungen (" + this.entity + ") wurden nicht gespeichert");
+        }
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        if (!this.flushScheduled && !this.writer.isShutdown()) {
+            this.flushScheduled = true;
+            this.writer.schedule(this::flushAndReschedule, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushAndReschedule() {
+        synchronized (this) {
+            this.flushScheduled = false;
+        }
+        boolean written = flush();
+        synchronized (this) {
+            if (!this.pending.isEmpty()) {
+                scheduleFlush(written ? FLUSH_DELAY_MILLIS
+                        : Math.min(FLUSH_DELAY_MILLIS << (2 * this.attempts), MAX_RETRY_DELAY_MILLIS));
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes in one transaction. On failure, the changes are put back, unless they were replaced
+     * by newer changes in the meantime.
+     *
+     * @return true, if the changes were written or there were none.
+     */
+    private boolean flush() {
+        List<Change<T>> batch;
+        synchronized (this) {
+            if (this.pending.isEmpty()) {
+                return true;
+            }
+            this.inFlight.putAll(this.pending);
+            this.pending.clear();
+            batch = new ArrayList<>(this.inFlight.values());
+        }
+        boolean written;
+        List<T> conflicts = new ArrayList<>();
+        try {
+            DaoMetrics.measure(this.entity, "writeBehind", () -> writeBatch(batch, conflicts));
+            written = true;
+        } catch (SQLException | RuntimeException exception) {
+            exception.printStackTrace();
+            written = false;
+        }
+        synchronized (this) {
+            if (written) {
+                this.attempts = 0;
+                this.failing = false;
+            } else if (++this.attempts < MAX_ATTEMPTS) {
+                this.failing = true;
+                for (Map.Entry<Long, Change<T>> change : this.inFlight.entrySet()) {
+                    this.pending.putIfAbsent(change.getKey(), change.getValue());
+                }
+            } else {
+                System.out.println(this.inFlight.size() + " Änderungen (" + this.entity + ") konnten nach " +
+                        MAX_ATTEMPTS + " Versuchen nicht gespeichert werden: " + this.inFlight.keySet());
+                this.attempts = 0;
+                this.failing = true;
+            }
+            this.inFlight.clear();
+        }
+        notifyListeners();
+        if (written) {
+            for (T conflict : conflicts) {
+                for (Consumer<T> listener : this.conflictListeners) {
+                    listener.accept(conflict);
+                }
+            }
+        }
+        return written;
+    }
+
+    private int writeBatch(List<Change<T>> batch, List<T> conflicts) throws SQLException {
+        if (this.connection == null) {
+            this.connection = ConnectionBuilder.openConnection(this.config);
+            this.dao = this.daoCreator.apply(this.connection);
+        }
+        this.connection.setAutoCommit(false);
+        try {
+            conflicts.clear();
+            // the written changes with the versions of their rows after the update
+            Map<Change<T>, Long> written = new LinkedHashMap<>();
+            for (Change<T> change : batch) {
+                try {
+                    written.put(change, this.dao.update(change.object, change.changes));
+                } catch (OptimisticLockException exception) {
+                    conflicts.add(change.object);
+                }
+            }
+            this.connection.commit();
+            // a rolled back batch is written again, so the changes and versions are only taken after the commit
+            for (Map.Entry<Change<T>, Long> change : written.entrySet()) {
+                this.trackerOf.apply(change.getKey().object).clear(change.getKey().changes, change.getValue());
+            }
+        } catch (SQLException | RuntimeException exception) {
+            this.connection.rollback();
+            throw exception;
+        } finally {
+            this.connection.setAutoCommit(true);
+        }
+        return batch.size() - conflicts.size();
+    }
+
+    private void closeConnection() {
+        if (this.connection != null) {
+            try {
+                this.connection.close();
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+            this.connection = null;
+            this.dao = null;
+        }
+    }
+
+    private void notifyListeners() {
+        int count = getPendingCount();
+        boolean failed;
+        synchronized (this) {
+            failed = this.failing;
+        }
+        for (Listener listener : this.listeners) {
+            listener.changed(count, failed);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.hitec.nhplus.model;
+
+/**
+ * Represents one row of a care minutes report: the summed treatment time and the number of treatments of one
+ * month for one group, e.g. a patient, a caregiver or a care level.
+ */
+public class CareMinutes {
+    private final String month;
+    private final String key;
+    private final String label;
+    private final long minutes;
+    private final long count;
+
+    /**
+     * Constructs a new report row.
+     *
+     * @param month   The month of the row in format "yyyy-MM".
+     * @param key     The key of the group, e.g. the patient id or the care level.
+     * @param label   A readable name of the group.
+     * @param minutes The summed duration of all treatments of the group in minutes.
+     * @param count   The number of treatments of the group.
+     */
+    public CareMinutes(String month, String key, String label, long minutes, long count) {
+        this.month = month;
+        this.key = key;
+        this.label = label;
+        this.minutes = minutes;
+        this.count = count;
+    }
+
+    public String getMonth() {
+        return month;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getMinutes() {
+        return minutes;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns a string representation of the report row.
+     *
+     * @return A string representation of the report row.
+     */
+    @Override
+    public String toString() {
+        return "CareMinutes" +
+                "\nMonth: " + this.month +
+                "\nKey: " + this.key +
+                "\nLabel: " + this.label +
+                "\nMinutes: " + this.minutes +
+                "\nCount: " + this.count +
+                "\n";
+    }
+}
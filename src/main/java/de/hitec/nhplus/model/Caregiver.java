@@ -45,7 +45,24 @@ public class Caregiver extends Person{
     }
 
     public void setTelNumber(String telNumber) {
-        this.telNumber.set(telNumber);
+        synchronized (getChangeTracker()) {
+            String oldValue = this.telNumber.get();
+            this.telNumber.set(telNumber);
+            getChangeTracker().markChanged("telNumber", oldValue, telNumber);
+        }
+    }
+
+    /**
+     * Applies the changed fields of this caregiver to the current version of the same row, which was read after a
+     * conflict with another workstation.
+     *
+     * @param current The current version of the caregiver.
+     */
+    public void copyChangesTo(Caregiver current) {
+        super.copyChangesTo(current);
+        if (getChangeTracker().isChanged("telNumber")) {
+            current.setTelNumber(getTelNumber());
+        }
     }
 
     /**
@@ -0,0 +1,116 @@
+package de.hitec.nhplus.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Tracks the fields of an entity, which were changed since it was read or last written, so the DAO updates only
+ * these columns. Every change is stamped with a sequence number and keeps the new value. A {@link Snapshot} copies
+ * the changed values, so they can be written on another thread without reading the entity. Clearing with a snapshot
+ * keeps the fields, which were changed again after the snapshot was taken, e.g. by the FX thread while the
+ * write-behind queue writes the entity. The setters of the entities change a field and mark it while holding the
+ * lock of the tracker, so a snapshot never sees a field marked without its new value. The written fields are only
+ * cleared after the transaction writing them was committed.
+ *
+ * The tracker also keeps the version of the row, which was read. An update only succeeds, if the row still has this
+ * version, so changes made by another workstation in the meantime are not overwritten.
+ */
+public class ChangeTracker {
+
+    private final Map<String, Long> changes = new HashMap<>();
+    private final Map<String, Object> values = new HashMap<>();
+    private long sequence;
+    private long version;
+
+    /**
+     * Marks a field as changed, if the new value differs from the old one, and keeps the new value.
+     *
+     * @param field    Name of the field.
+     * @param oldValue Value before the change.
+     * @param newValue Value after the change.
+     */
+    public synchronized void markChanged(String field, Object oldValue, Object newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            this.changes.put(field, ++this.sequence);
+            this.values.put(field, newValue);
+        }
+    }
+
+    /**
+     * @return Version of the row, when it was read or last written.
+     */
+    public synchronized long getVersion() {
+        return this.version;
+    }
+
+    public synchronized void setVersion(long version) {
+        this.version = version;
+    }
+
+    public synchronized boolean isChanged(String field) {
+        return this.changes.containsKey(field);
+    }
+
+    public synchronized boolean hasChanges() {
+        return !this.changes.isEmpty();
+    }
+
+    /**
+     * @return Copy of the changed fields with their values and the stamps of their last change.
+     */
+    public synchronized Snapshot snapshot() {
+        Map<String, Object> changed = new HashMap<>();
+        for (String field : this.changes.keySet()) {
+            changed.put(field, this.values.get(field));
+        }
+        return new Snapshot(new HashMap<>(this.changes), changed);
+    }
+
+    /**
+     * Clears the fields of a snapshot, which were not changed again since the snapshot was taken, and takes the version
+     * of the written row. Called after the update was committed.
+     *
+     * @param written Snapshot of the written fields.
+     * @param version Version of the row after the update.
+     */
+    public synchronized void clear(Snapshot written, long version) {
+        this.version = version;
+        for (Map.Entry<String, Long> field : written.stamps.entrySet()) {
+            if (this.changes.remove(field.getKey(), field.getValue())) {
+                this.values.remove(field.getKey());
+            }
+        }
+    }
+
+    /**
+     * The changed fields of an entity at one point in time. A snapshot cannot be changed, so it can be handed to
+     * another thread.
+     */
+    public static final class Snapshot {
+        private final Map<String, Long> stamps;
+        private final Map<String, Object> values;
+
+        private Snapshot(Map<String, Long> stamps, Map<String, Object> values) {
+            this.stamps = Collections.unmodifiableMap(stamps);
+            this.values = Collections.unmodifiableMap(values);
+        }
+
+        public boolean isEmpty() {
+            return this.stamps.isEmpty();
+        }
+
+        public boolean isChanged(String field) {
+            return this.stamps.containsKey(field);
+        }
+
+        /**
+         * @param field Name of a changed field.
+         * @return The value of the field, when the snapshot was taken.
+         */
+        public Object getValue(String field) {
+            return this.values.get(field);
+        }
+    }
+}
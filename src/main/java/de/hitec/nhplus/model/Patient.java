@@ -67,7 +67,11 @@ public class Patient extends Person {
      * @param dateOfBirth as string in the following format: YYYY-MM-DD.
      */
     public void setDateOfBirth(String dateOfBirth) {
-        this.dateOfBirth.set(dateOfBirth);
+        synchronized (getChangeTracker()) {
+            String oldValue = this.dateOfBirth.get();
+            this.dateOfBirth.set(dateOfBirth);
+            getChangeTracker().markChanged("dateOfBirth", oldValue, dateOfBirth);
+        }
     }
 
     public String getCareLevel() {
@@ -79,7 +83,11 @@ public class Patient extends Person {
     }
 
     public void setCareLevel(String careLevel) {
-        this.careLevel.set(careLevel);
+        synchronized (getChangeTracker()) {
+            String oldValue = this.careLevel.get();
+            this.careLevel.set(careLevel);
+            getChangeTracker().markChanged("careLevel", oldValue, careLevel);
+        }
     }
 
     public String getRoomNumber() {
@@ -92,7 +100,30 @@ public class Patient extends Person {
 
 
     public void setRoomNumber(String roomNumber) {
-        this.roomNumber.set(roomNumber);
+        synchronized (getChangeTracker()) {
+            String oldValue = this.roomNumber.get();
+            this.roomNumber.set(roomNumber);
+            getChangeTracker().markChanged("roomNumber", oldValue, roomNumber);
+        }
+    }
+
+    /**
+     * Applies the changed fields of this patient to the current version of the same row, which was read after a
+     * conflict with another workstation.
+     *
+     * @param current The current version of the patient.
+     */
+    public void copyChangesTo(Patient current) {
+        super.copyChangesTo(current);
+        if (getChangeTracker().isChanged("dateOfBirth")) {
+            current.setDateOfBirth(getDateOfBirth());
+        }
+        if (getChangeTracker().isChanged("careLevel")) {
+            current.setCareLevel(getCareLevel());
+        }
+        if (getChangeTracker().isChanged("roomNumber")) {
+            current.setRoomNumber(getRoomNumber());
+        }
     }
 
     /**
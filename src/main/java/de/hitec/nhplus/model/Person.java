@@ -12,6 +12,7 @@ public abstract class Person {
     private final SimpleStringProperty firstName;
     private final SimpleStringProperty surname;
     private SimpleLongProperty id = null;
+    private final ChangeTracker changes = new ChangeTracker();
 
     /**
      * Constructs a Person object with the specified first name, surname, and ID.
@@ -45,6 +46,13 @@ public abstract class Person {
         return id.get();
     }
 
+    /**
+     * @return The fields changed by the setters since the person was read or last written.
+     */
+    public ChangeTracker getChangeTracker() {
+        return changes;
+    }
+
     public String getFirstName() {
         return firstName.get();
     }
@@ -54,7 +62,11 @@ public abstract class Person {
     }
 
     public void setFirstName(String firstName) {
-        this.firstName.set(firstName);
+        synchronized (this.changes) {
+            String oldValue = this.firstName.get();
+            this.firstName.set(firstName);
+            this.changes.markChanged("firstName", oldValue, firstName);
+        }
     }
 
     public String getSurname() {
@@ -66,6 +78,25 @@ public abstract class Person {
     }
 
     public void setSurname(String surname) {
-        this.surname.set(surname);
+        synchronized (this.changes) {
+            String oldValue = this.surname.get();
+            this.surname.set(surname);
+            this.changes.markChanged("surname", oldValue, surname);
+        }
+    }
+
+    /**
+     * Applies the changed fields of this person to another instance of the same row, e.g. to the current version read
+     * after a conflict. The fields of the other instance, which were not changed here, are kept.
+     *
+     * @param current The other instance, whose fields are marked as changed, where they differ.
+     */
+    protected void copyChangesTo(Person current) {
+        if (this.changes.isChanged("firstName")) {
+            current.setFirstName(getFirstName());
+        }
+        if (this.changes.isChanged("surname")) {
+            current.setSurname(getSurname());
+        }
     }
 }
@@ -14,6 +14,8 @@ public class Treatment {
     private LocalTime end;
     private String description;
     private String remarks;
+    private boolean remarksLoaded = true;
+    private final ChangeTracker changes = new ChangeTracker();
 
 
     /**
@@ -74,6 +76,13 @@ public class Treatment {
         return cgid;
     }
 
+    /**
+     * @return The fields changed by the setters since the treatment was read or last written.
+     */
+    public ChangeTracker getChangeTracker() {
+        return changes;
+    }
+
     public String getDate() {
         return date.toString();
     }
@@ -86,16 +95,49 @@ public class Treatment {
         return end.toString();
     }
 
+    public LocalDate getLocalDate() {
+        return date;
+    }
+
+    /**
+     * @return Begin of the treatment as minutes since midnight.
+     */
+    public int getBeginMinute() {
+        return begin.toSecondOfDay() / 60;
+    }
+
+    /**
+     * @return End of the treatment as minutes since midnight.
+     */
+    public int getEndMinute() {
+        return end.toSecondOfDay() / 60;
+    }
+
     public void setDate(String date) {
-        this.date = DateConverter.convertStringToLocalDate(date);
+        LocalDate value = DateConverter.convertStringToLocalDate(date);
+        synchronized (this.changes) {
+            LocalDate oldValue = this.date;
+            this.date = value;
+            this.changes.markChanged("date", oldValue, value);
+        }
     }
 
     public void setBegin(String begin) {
-        this.begin = DateConverter.convertStringToLocalTime(begin);
+        LocalTime value = DateConverter.convertStringToLocalTime(begin);
+        synchronized (this.changes) {
+            LocalTime oldValue = this.begin;
+            this.begin = value;
+            this.changes.markChanged("begin", oldValue, value);
+        }
     }
 
     public void setEnd(String end) {
-        this.end = DateConverter.convertStringToLocalTime(end);
+        LocalTime value = DateConverter.convertStringToLocalTime(end);
+        synchronized (this.changes) {
+            LocalTime oldValue = this.end;
+            this.end = value;
+            this.changes.markChanged("end", oldValue, value);
+        }
     }
 
     public String getDescription() {
@@ -103,15 +145,75 @@ public class Treatment {
     }
 
     public void setDescription(String description) {
-        this.description = description;
+        synchronized (this.changes) {
+            String oldValue = this.description;
+            this.description = description;
+            this.changes.markChanged("description", oldValue, description);
+        }
     }
 
+    /**
+     * @return The remarks, or null, if they were not loaded with the treatment.
+     */
     public String getRemarks() {
         return remarks;
     }
 
-    public void setRemarks(String remarks) {
+    /**
+     * @return false, if the treatment was read for a list without its remarks.
+     */
+    public boolean isRemarksLoaded() {
+        return remarksLoaded;
+    }
+
+    /**
+     * Marks the remarks as not loaded. Used by lists, which do not read the long remark texts.
+     */
+    public void unloadRemarks() {
+        this.remarks = null;
+        this.remarksLoaded = false;
+    }
+
+    /**
+     * Sets the remarks, which were read later, without marking them as changed.
+     *
+     * @param remarks The remarks read from the database.
+     */
+    public void loadRemarks(String remarks) {
         this.remarks = remarks;
+        this.remarksLoaded = true;
+    }
+
+    public void setRemarks(String remarks) {
+        synchronized (this.changes) {
+            String oldValue = this.remarks;
+            this.remarks = remarks;
+            this.changes.markChanged("remarks", oldValue, remarks);
+        }
+    }
+
+    /**
+     * Applies the changed fields of this treatment to the current version of the same row, which was read after a
+     * conflict with another workstation.
+     *
+     * @param current The current version of the treatment.
+     */
+    public void copyChangesTo(Treatment current) {
+        if (this.changes.isChanged("date")) {
+            current.setDate(getDate());
+        }
+        if (this.changes.isChanged("begin")) {
+            current.setBegin(getBegin());
+        }
+        if (this.changes.isChanged("end")) {
+            current.setEnd(getEnd());
+        }
+        if (this.changes.isChanged("description")) {
+            current.setDescription(getDescription());
+        }
+        if (this.changes.isChanged("remarks")) {
+            current.setRemarks(getRemarks());
+        }
     }
 
     public String toString() {
@@ -2,14 +2,19 @@ package de.hitec.nhplus.presenter;
 
 import de.hitec.nhplus.datastorage.CaregiverDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
-import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.Page;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
 import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.utils.PagedTableLoader;
+import de.hitec.nhplus.utils.StartupOrchestrator;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
@@ -17,12 +22,13 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 
 import java.sql.SQLException;
+import java.util.Arrays;
 
 /**
  * The <code>AllCaregiverPresenter</code> contains the entire logic of the caregiver view. It determines which data is displayed and how to react to events.
  */
 
-public class AllCaregiverPresenter {
+public class AllCaregiverPresenter implements Refreshable {
 
     @FXML
     private TableView<Caregiver> tableView;
@@ -54,8 +60,14 @@ public class AllCaregiverPresenter {
     @FXML
     private Button btnDelete;
 
+    @FXML
+    private Label labelUnsaved;
+
     private final ObservableList<Caregiver> caregivers = FXCollections.observableArrayList();
-    private CaregiverDao dao;
+    private final WriteBehindQueue<Caregiver> writeQueue = DaoFactory.getDaoFactory().getCaregiverWriteQueue();
+    private PagedTableLoader<Caregiver> loader;
+    // stamp of the shown caregivers, taken before they were read
+    private long[] shownStamp;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. For example from the FXMLLoader
@@ -63,7 +75,16 @@ public class AllCaregiverPresenter {
      * configured.
      */
     public void initialize() {
+        // the DAO is fetched per call, because the view may be loaded on another thread than the one using it
+        DaoFactory factory = DaoFactory.getDaoFactory();
+        this.loader = new PagedTableLoader<>(this.tableView, this.caregivers,
+                field -> factory.createCaregiverDao().isSortable(field),
+                (field, ascending, after, limit) -> factory.createCaregiverDao().readPage(field, ascending, after,
+                        limit));
+        this.loader.setOnPageLoaded(this.writeQueue::replaceUnsaved);
         this.readAllAndShowInTableView();
+        this.writeQueue.addListener((pending, failing) -> Platform.runLater(() -> this.showUnsaved(pending, failing)));
+        this.writeQueue.addConflictListener(caregiver -> Platform.runLater(() -> this.resolveConflict(caregiver)));
 
         this.colID.setCellValueFactory(new PropertyValueFactory<>("id"));
 
@@ -99,6 +120,29 @@ public class AllCaregiverPresenter {
         this.txfTelephone.textProperty().addListener(inputNewCaregiverListener);
     }
 
+    /**
+     * Reloads the caregivers, when the cached view is shown again and the caregivers were changed in the meantime.
+     */
+    @Override
+    public void refresh() {
+        long[] stamp = readStamp();
+        if (stamp == null || !Arrays.equals(stamp, this.shownStamp)) {
+            this.readAllAndShowInTableView();
+        }
+    }
+
+    /**
+     * @return The stamp of the caregivers, or null, if it could not be read.
+     */
+    private long[] readStamp() {
+        try {
+            return DaoFactory.getDaoFactory().createCaregiverDao().getDataStamp("Caregiver");
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * When a cell of the column with first names was changed, this method will be called, to persist the change.
      *
@@ -133,29 +177,74 @@ public class AllCaregiverPresenter {
     }
 
     /**
-     * Updates a patient by calling the method <code>update()</code> of {@link CaregiverDao}.
+     * Queues the update of the edited caregiver in the write-behind queue, which writes it in the background. Repeated
+     * edits of the same row are written together.
      *
      * @param event Event including the changed object and the change.
      */
     private void doUpdate(TableColumn.CellEditEvent<Caregiver, String> event) {
+        this.writeQueue.submit(event.getRowValue());
+    }
+
+    /**
+     * Resolves a conflict with another workstation, which saved the caregiver after it was read here. If the user
+     * keeps the own changes, they are applied to the current version of the caregiver, which replaces the row in the
+     * table and is written again. Otherwise the current version is shown.
+     *
+     * @param caregiver The caregiver, which could not be written.
+     */
+    private void resolveConflict(Caregiver caregiver) {
+        String subject = "Pfleger/in " + caregiver.getSurname() + ", " + caregiver.getFirstName();
         try {
-            this.dao.update(event.getRowValue());
+            Caregiver current = DaoFactory.getDaoFactory().createCaregiverDao().read(caregiver.getId());
+            int index = this.caregivers.indexOf(caregiver);
+            if (current == null) {
+                ConflictDialog.showDeleted(subject);
+                this.caregivers.remove(caregiver);
+                return;
+            }
+            if (ConflictDialog.askOverwrite(subject)) {
+                caregiver.copyChangesTo(current);
+                this.writeQueue.submit(current);
+            }
+            if (index >= 0) {
+                this.caregivers.set(index, current);
+            }
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
     }
 
     /**
-     * Reloads all patients to the table by clearing the list of all patients and filling it again by all persisted
-     * patients, delivered by {@link PatientDao}.
+     * Shows the number of edits, which are not written yet, or that writing them failed.
+     *
+     * @param pending Number of unsaved edits.
+     * @param failing true, if the last attempt to write them failed.
+     */
+    private void showUnsaved(int pending, boolean failing) {
+        if (pending == 0) {
+            this.labelUnsaved.setText(failing ? "Änderungen konnten nicht gespeichert werden" : "");
+        } else if (failing) {
+            this.labelUnsaved.setText(pending + " ungespeicherte Änderungen, neuer Versuch folgt");
+        } else {
+            this.labelUnsaved.setText(pending == 1 ? "1 ungespeicherte Änderung"
+                    : pending + " ungespeicherte Änderungen");
+        }
+    }
+
+    /**
+     * Reloads the table with the first page of the caregivers in the current sort order of the table. Further pages are
+     * loaded while scrolling. The first time, the page preloaded during the login is used.
      */
     private void readAllAndShowInTableView() {
-        this.caregivers.clear();
-        this.dao = DaoFactory.getDaoFactory().createCaregiverDao();
-        try {
-            this.caregivers.addAll(this.dao.readAll());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+        this.shownStamp = readStamp();
+        Page<Caregiver> preloaded = StartupOrchestrator.takePreloadedCaregivers();
+        if (preloaded != null) {
+            // the preloaded page is older than the stamp, so the next refresh reads the current page
+            this.shownStamp = null;
+            this.loader.show(preloaded);
+        } else {
+            this.loader.reload();
         }
     }
 
@@ -169,6 +258,7 @@ public class AllCaregiverPresenter {
         Caregiver selectedItem = this.tableView.getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
             try {
+                this.writeQueue.discard(selectedItem.getId());
                 DaoFactory.getDaoFactory().createCaregiverDao().deleteById(selectedItem.getId());
                 this.tableView.getItems().remove(selectedItem);
             } catch (SQLException exception) {
@@ -188,7 +278,7 @@ public class AllCaregiverPresenter {
         String firstName = this.txfFirstname.getText();
         String telephone = this.txfTelephone.getText();
         try {
-            this.dao.create(new Caregiver(firstName, surname, telephone));
+            DaoFactory.getDaoFactory().createCaregiverDao().create(new Caregiver(firstName, surname, telephone));
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -1,13 +1,17 @@
 package de.hitec.nhplus.presenter;
 
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.Page;
 import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
@@ -15,15 +19,18 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.utils.DateConverter;
+import de.hitec.nhplus.utils.PagedTableLoader;
+import de.hitec.nhplus.utils.StartupOrchestrator;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Arrays;
 
 
 /**
  * The <code>AllPatientPresenter</code> contains the entire logic of the patient view. It determines which data is displayed and how to react to events.
  */
-public class AllPatientPresenter {
+public class AllPatientPresenter implements Refreshable {
 
     @FXML
     private TableView<Patient> tableView;
@@ -52,6 +59,9 @@ public class AllPatientPresenter {
     @FXML
     private Button buttonAdd;
 
+    @FXML
+    private Label labelUnsaved;
+
     @FXML
     private TextField textFieldSurname;
 
@@ -68,7 +78,10 @@ public class AllPatientPresenter {
     private TextField textFieldRoomNumber;
 
     private final ObservableList<Patient> patients = FXCollections.observableArrayList();
-    private PatientDao dao;
+    private final WriteBehindQueue<Patient> writeQueue = DaoFactory.getDaoFactory().getPatientWriteQueue();
+    private PagedTableLoader<Patient> loader;
+    // stamp of the shown patients, taken before they were read
+    private long[] shownStamp;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. For example from the FXMLLoader
@@ -76,7 +89,16 @@ public class AllPatientPresenter {
      * configured.
      */
     public void initialize() {
+        // the DAO is fetched per call, because the view may be loaded on another thread than the one using it
+        DaoFactory factory = DaoFactory.getDaoFactory();
+        this.loader = new PagedTableLoader<>(this.tableView, this.patients,
+                field -> factory.createPatientDao().isSortable(field),
+                (field, ascending, after, limit) -> factory.createPatientDao().readPage(field, ascending, after,
+                        limit));
+        this.loader.setOnPageLoaded(this.writeQueue::replaceUnsaved);
         this.readAllAndShowInTableView();
+        this.writeQueue.addListener((pending, failing) -> Platform.runLater(() -> this.showUnsaved(pending, failing)));
+        this.writeQueue.addConflictListener(patient -> Platform.runLater(() -> this.resolveConflict(patient)));
 
         this.columnId.setCellValueFactory(new PropertyValueFactory<>("id"));
 
@@ -118,6 +140,29 @@ public class AllPatientPresenter {
         this.textFieldRoomNumber.textProperty().addListener(inputNewPatientListener);
     }
 
+    /**
+     * Reloads the patients, when the cached view is shown again and the patients were changed in the meantime.
+     */
+    @Override
+    public void refresh() {
+        long[] stamp = readStamp();
+        if (stamp == null || !Arrays.equals(stamp, this.shownStamp)) {
+            this.readAllAndShowInTableView();
+        }
+    }
+
+    /**
+     * @return The stamp of the patients, or null, if it could not be read.
+     */
+    private long[] readStamp() {
+        try {
+            return DaoFactory.getDaoFactory().createPatientDao().getDataStamp("Patient");
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * When a cell of the column with first names was changed, this method will be called, to persist the change.
      *
@@ -174,29 +219,74 @@ public class AllPatientPresenter {
     }
 
     /**
-     * Updates a patient by calling the method <code>update()</code> of {@link PatientDao}.
+     * Queues the update of the edited patient in the write-behind queue, which writes it in the background. Repeated
+     * edits of the same row are written together.
      *
      * @param event Event including the changed object and the change.
      */
     private void doUpdate(TableColumn.CellEditEvent<Patient, String> event) {
+        this.writeQueue.submit(event.getRowValue());
+    }
+
+    /**
+     * Resolves a conflict with another workstation, which saved the patient after it was read here. If the user keeps
+     * the own changes, they are applied to the current version of the patient, which replaces the row in the table and
+     * is written again. Otherwise the current version is shown.
+     *
+     * @param patient The patient, which could not be written.
+     */
+    private void resolveConflict(Patient patient) {
+        String subject = "Patient/in " + patient.getSurname() + ", " + patient.getFirstName();
         try {
-            this.dao.update(event.getRowValue());
+            Patient current = DaoFactory.getDaoFactory().createPatientDao().read(patient.getId());
+            int index = this.patients.indexOf(patient);
+            if (current == null) {
+                ConflictDialog.showDeleted(subject);
+                this.patients.remove(patient);
+                return;
+            }
+            if (ConflictDialog.askOverwrite(subject)) {
+                patient.copyChangesTo(current);
+                this.writeQueue.submit(current);
+            }
+            if (index >= 0) {
+                this.patients.set(index, current);
+            }
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
     }
 
     /**
-     * Reloads all patients to the table by clearing the list of all patients and filling it again by all persisted
-     * patients, delivered by {@link PatientDao}.
+     * Shows the number of edits, which are not written yet, or that writing them failed.
+     *
+     * @param pending Number of unsaved edits.
+     * @param failing true, if the last attempt to write them failed.
+     */
+    private void showUnsaved(int pending, boolean failing) {
+        if (pending == 0) {
+            this.labelUnsaved.setText(failing ? "Änderungen konnten nicht gespeichert werden" : "");
+        } else if (failing) {
+            this.labelUnsaved.setText(pending + " ungespeicherte Änderungen, neuer Versuch folgt");
+        } else {
+            this.labelUnsaved.setText(pending == 1 ? "1 ungespeicherte Änderung"
+                    : pending + " ungespeicherte Änderungen");
+        }
+    }
+
+    /**
+     * Reloads the table with the first page of the patients in the current sort order of the table. Further pages are
+     * loaded while scrolling. The first time, the page preloaded during the login is used.
      */
     private void readAllAndShowInTableView() {
-        this.patients.clear();
-        this.dao = DaoFactory.getDaoFactory().createPatientDao();
-        try {
-            this.patients.addAll(this.dao.readAll());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+        this.shownStamp = readStamp();
+        Page<Patient> preloaded = StartupOrchestrator.takePreloadedPatients();
+        if (preloaded != null) {
+            // the preloaded page is older than the stamp, so the next refresh reads the current page
+            this.shownStamp = null;
+            this.loader.show(preloaded);
+        } else {
+            this.loader.reload();
         }
     }
 
@@ -210,6 +300,7 @@ public class AllPatientPresenter {
         Patient selectedItem = this.tableView.getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
             try {
+                this.writeQueue.discard(selectedItem.getId());
                 DaoFactory.getDaoFactory().createPatientDao().deleteById(selectedItem.getId());
                 this.tableView.getItems().remove(selectedItem);
             } catch (SQLException exception) {
@@ -232,7 +323,8 @@ public class AllPatientPresenter {
         String careLevel = this.textFieldCareLevel.getText();
         String roomNumber = this.textFieldRoomNumber.getText();
         try {
-            this.dao.create(new Patient(firstName, surname, date, careLevel, roomNumber));
+            DaoFactory.getDaoFactory().createPatientDao()
+                    .create(new Patient(firstName, surname, date, careLevel, roomNumber));
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
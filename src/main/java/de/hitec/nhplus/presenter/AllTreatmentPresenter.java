@@ -1,12 +1,21 @@
 package de.hitec.nhplus.presenter;
 
 import de.hitec.nhplus.Main;
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.CaregiverDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.Page;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentCriteria;
 import de.hitec.nhplus.datastorage.TreatmentDao;
 import de.hitec.nhplus.model.Caregiver;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Person;
 import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.utils.CareSchedule;
+import de.hitec.nhplus.utils.PagedTableLoader;
+import de.hitec.nhplus.utils.TreatmentDetailCache;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -20,7 +29,10 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 
 /**
@@ -31,7 +43,7 @@ import java.util.List;
  * filtering, adding, and deleting treatments.
  */
 
-public class AllTreatmentPresenter {
+public class AllTreatmentPresenter implements Refreshable {
 
     @FXML
     private TableView<Treatment> tableView;
@@ -60,37 +72,79 @@ public class AllTreatmentPresenter {
     @FXML
     private ComboBox<String> comboBoxCaregiverSelection;
 
+    @FXML
+    private DatePicker datePickerFrom;
+
+    @FXML
+    private DatePicker datePickerTo;
+
+    @FXML
+    private ComboBox<String> comboBoxDescription;
+
+    @FXML
+    private TextField textFieldCareLevel;
+
+    @FXML
+    private TextField textFieldRoomNumber;
+
     @FXML
     private Button buttonNewTreatment;
 
     @FXML
     private Button buttonDelete;
 
-    private TreatmentDao dao;
+    private PagedTableLoader<Treatment> loader;
+    private final TreatmentDetailCache detailCache = new TreatmentDetailCache();
+    private Stage treatmentStage;
+    private TreatmentPresenter treatmentPresenter;
     private final ObservableList<String> patientSelection = FXCollections.observableArrayList();
     private final ObservableList<String> caregiverSelection = FXCollections.observableArrayList();
     private final ObservableList<Treatment> treatments = FXCollections.observableArrayList();
-    private ArrayList<Patient> patientList;
-    private ArrayList<Caregiver> caregiverList;
+    private List<Patient> patientList = new ArrayList<>();
+    private List<Caregiver> caregiverList = new ArrayList<>();
+    private final AsyncDao<Patient, PatientDao> asyncPatientDao =
+            DaoFactory.getDaoFactory().createAsyncPatientDao();
+    private final AsyncDao<Caregiver, CaregiverDao> asyncCaregiverDao =
+            DaoFactory.getDaoFactory().createAsyncCaregiverDao();
+    private final AsyncDao<Treatment, TreatmentDao> asyncTreatmentDao =
+            DaoFactory.getDaoFactory().createAsyncTreatmentDao();
     private final String ALL_PATIENTS = "alle Patienten";
     private final String ALL_CAREGIVERS = "alle Pflegekräfte";
+    private final String ALL_DESCRIPTIONS = "alle Behandlungsarten";
+    private static final int PREFETCHED_NEIGHBORS = 2;
+    // stamp of the shown treatments, patients and caregivers, taken before they were read
+    private long[] shownStamp;
 
 
     /**
      * Initializes the view and sets up necessary configurations for displaying and managing treatments.
      * This method performs the following actions:
-     * - Populates data into TableView and ComboBoxes.
+     * - Reads the patients, caregivers, treatment types and the first page of the treatments in the
+     *   background and populates the TableView and ComboBoxes, as soon as all of them are read.
      * - Configures columns in the TableView for displaying treatment attributes.
      * - Assigns data to the ComboBoxes for selecting patients and caregivers, and sets default selections.
      * - Disables the delete button until a treatment is selected in the TableView.
-     * - Adds a listener to manage the delete button's state based on TableView selection changes.
+     * - Adds a listener to manage the delete button's state based on TableView selection changes, which also
+     *   prefetches the details of the selected treatment and its neighbors and shows the selected treatment in the
+     *   open detail pane.
      * - Initializes DAOs for retrieving necessary data from the database.
      * - Prepares the patient and caregiver lists for use in ComboBoxes.
      *
-     * Throws a RuntimeException if a SQL exception is encountered during DAO retrieval or data loading.
+     * If the data could not be read, the stack trace is printed and the view stays empty.
      */
     public void initialize() {
-        readAllAndShowInTableView();
+        // the DAO is fetched per call, because the view may be loaded on another thread than the one using it
+        DaoFactory factory = DaoFactory.getDaoFactory();
+        this.loader = new PagedTableLoader<>(this.tableView, this.treatments,
+                field -> factory.createTreatmentDao().isSortable(field),
+                (field, ascending, after, limit) -> factory.createTreatmentDao().readTreatmentsPage(getCriteria(),
+                        field, ascending, after, limit));
+        // sorted in memory, the treatments of the filter fill the table chunk by chunk
+        this.loader.setAllRows(() -> {
+            TreatmentCriteria criteria = getCriteria();
+            return this.asyncTreatmentDao.publish(treatmentDao ->
+                    treatmentDao.streamTreatments(criteria, PagedTableLoader.PAGE_SIZE));
+        });
         comboBoxPatientSelection.setItems(patientSelection);
         comboBoxPatientSelection.getSelectionModel().select(0);
 
@@ -108,40 +162,113 @@ public class AllTreatmentPresenter {
         // Disabling the button to delete treatments as long, as no treatment was selected.
         this.buttonDelete.setDisable(true);
         this.tableView.getSelectionModel().selectedItemProperty().addListener(
-                (observableValue, oldTreatment, newTreatment) ->
-                        AllTreatmentPresenter.this.buttonDelete.setDisable(newTreatment == null));
-
-        try {
-            dao = DaoFactory.getDaoFactory().createTreatmentDao();
-            patientList = (ArrayList<Patient>) DaoFactory.getDaoFactory().createPatientDao().readAll();
-            caregiverList = (ArrayList<Caregiver>) DaoFactory.getDaoFactory().createCaregiverDao().readAll();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-        this.createComboBoxDataForPatient();
-        this.createComboBoxDataForCaregiver();
-
+                (observableValue, oldTreatment, newTreatment) -> {
+                    AllTreatmentPresenter.this.buttonDelete.setDisable(newTreatment == null);
+                    if (newTreatment != null) {
+                        prefetchNeighbors();
+                        if (this.treatmentStage != null && this.treatmentStage.isShowing()) {
+                            treatmentWindow(newTreatment);
+                        }
+                    }
+                });
+
+        this.shownStamp = readStamp();
+        TreatmentCriteria criteria = getCriteria();
+        CompletableFuture<List<Patient>> patients = this.asyncPatientDao.readAll();
+        CompletableFuture<List<Caregiver>> caregivers = this.asyncCaregiverDao.readAll();
+        CompletableFuture<List<String>> descriptions = this.asyncTreatmentDao.query(TreatmentDao::readDescriptions);
+        CompletableFuture<Page<Treatment>> firstPage = this.asyncTreatmentDao.query(treatmentDao ->
+                treatmentDao.readTreatmentsPage(criteria, null, true, null, PagedTableLoader.PAGE_SIZE));
+        CompletableFuture.allOf(patients, caregivers, descriptions, firstPage).whenComplete((ignored, exception) ->
+                Platform.runLater(() -> {
+                    if (exception != null) {
+                        exception.printStackTrace();
+                        this.shownStamp = null;
+                        return;
+                    }
+                    this.loader.show(firstPage.join());
+                    this.patientList = new ArrayList<>(patients.join());
+                    this.caregiverList = new ArrayList<>(caregivers.join());
+                    this.createComboBoxDataForPatient();
+                    this.createComboBoxDataForCaregiver();
+                    this.createComboBoxDataForDescription(descriptions.join());
+                }));
     }
 
     /**
-     * Reads all treatment records from the database and displays them in the
+     * Reads the treatment records from the database and displays them in the
      * associated TableView component. The method also ensures that default
      * selections are set for patient and caregiver ComboBox components.
      *
-     * The DAO is initialized using the {@code DaoFactory}, and the treatments
-     * retrieved from the database are added to the list backing the TableView.
-     * If an SQL exception occurs during the process, it is caught and printed
-     * to the standard error output.
+     * The first page of the treatments, sorted like the TableView, is added to the list backing the
+     * TableView. Further pages are loaded while scrolling.
      */
     public void readAllAndShowInTableView() {
         comboBoxPatientSelection.getSelectionModel().select(0);
         comboBoxCaregiverSelection.getSelectionModel().select(0);
-        this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
+        this.loader.reload();
+    }
+
+    /**
+     * Reloads the patients, caregivers and treatments, when the cached view is shown again and one of them was changed
+     * in the meantime. The patients and caregivers are read in the background. The selected patient and caregiver
+     * stay selected as long as they still exist. The ComboBoxes are only rebuilt, if persons were added, changed or
+     * removed in the meantime.
+     */
+    @Override
+    public void refresh() {
+        long[] stamp = readStamp();
+        if (stamp != null && Arrays.equals(stamp, this.shownStamp)) {
+            return;
+        }
+        this.shownStamp = stamp;
+        CompletableFuture<List<Patient>> patients = this.asyncPatientDao.readAll();
+        CompletableFuture<List<Caregiver>> caregivers = this.asyncCaregiverDao.readAll();
+        CompletableFuture.allOf(patients, caregivers).whenComplete((ignored, exception) ->
+                Platform.runLater(() -> {
+                    if (exception != null) {
+                        exception.printStackTrace();
+                        this.shownStamp = null;
+                        return;
+                    }
+                    this.patientList = patients.join();
+                    this.caregiverList = caregivers.join();
+                    updateComboBoxData(patientSelection, comboBoxPatientSelection, patientList, ALL_PATIENTS);
+                    updateComboBoxData(caregiverSelection, comboBoxCaregiverSelection, caregiverList, ALL_CAREGIVERS);
+                    this.handleComboBoxes();
+                }));
+    }
+
+    /**
+     * @return The stamp of the treatments, patients and caregivers, or null, if it could not be read.
+     */
+    private long[] readStamp() {
         try {
-            this.treatments.clear();
-            this.treatments.addAll(dao.readAll());
+            return DaoFactory.getDaoFactory().createTreatmentDao().getDataStamp("Treatment", "Patient", "Caregiver");
         } catch (SQLException exception) {
             exception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the items of a ComboBox, if the display names of the persons differ from the current items, and
+     * selects the previously selected item again.
+     */
+    private <T extends Person> void updateComboBoxData(ObservableList<String> selectionList, ComboBox<String> comboBox,
+                                                       List<T> personList, String firstOption) {
+        List<String> names = new ArrayList<>();
+        names.add(firstOption);
+        for (Person person : personList) {
+            names.add(formatPersonDisplayName(person));
+        }
+        if (names.equals(selectionList)) {
+            return;
+        }
+        String selected = comboBox.getSelectionModel().getSelectedItem();
+        createComboBoxData(selectionList, comboBox, personList, firstOption);
+        if (selected != null && selectionList.contains(selected)) {
+            comboBox.getSelectionModel().select(selected);
         }
     }
 
@@ -195,56 +322,84 @@ public class AllTreatmentPresenter {
     }
 
     /**
-     * Handles the filtering and synchronization of treatments based on the selected
-     * values in the patient and caregiver combo boxes. This method updates the internal
-     * treatments list to include only those treatments that are associated with the currently
-     * selected patient and caregiver.
+     * Handles the filtering of treatments based on the selected values in the patient
+     * and caregiver combo boxes. The database selects the treatments, which match the
+     * selected persons and the filter panel, and the first page of them is shown in the
+     * current sort order of the TableView.
      */
     @FXML
     public void handleComboBoxes() {
-        this.treatments.clear();
-        List<Treatment> patientTreatments = getTreatments(comboBoxPatientSelection, "pid", patientList);
-        List<Treatment> caregiverTreatments = getTreatments(comboBoxCaregiverSelection, "cgid", caregiverList);
-
-        for (Treatment treatment : patientTreatments) {
-            for (Treatment treatmentCaregiver : caregiverTreatments) {
-                if (treatmentCaregiver.getTid() == treatment.getTid()) {
-                    this.treatments.add(treatment);
-                }
-            }
-        }
+        this.loader.reload();
     }
 
     /**
-     * Retrieves a list of treatments based on the selected value in a given ComboBox.
-     * The method fetches treatments for all persons if the "All" option is selected
-     * in the ComboBox, or filters treatments for a specific person if one is selected.
-     * The filtering is performed using the person's identifier and the specified column name.
+     * Applies the date range, description, care level and room number of the filter panel.
+     */
+    @FXML
+    public void handleFilter() {
+        this.loader.reload();
+    }
+
+    /**
+     * Clears the filter panel and shows the treatments of the selected persons again.
+     */
+    @FXML
+    public void handleResetFilter() {
+        this.datePickerFrom.setValue(null);
+        this.datePickerTo.setValue(null);
+        this.comboBoxDescription.getSelectionModel().selectFirst();
+        this.textFieldCareLevel.clear();
+        this.textFieldRoomNumber.clear();
+        this.loader.reload();
+    }
+
+    /**
+     * Builds the filter of the treatments from the selected persons and the filter panel.
+     *
+     * @return Filter of the shown treatments.
+     */
+    private TreatmentCriteria getCriteria() {
+        String description = this.comboBoxDescription.getSelectionModel().getSelectedItem();
+        return TreatmentCriteria.builder()
+                .patient(getSelectedPersonId(comboBoxPatientSelection, patientList))
+                .caregiver(getSelectedPersonId(comboBoxCaregiverSelection, caregiverList))
+                .between(this.datePickerFrom.getValue(), this.datePickerTo.getValue())
+                .description(ALL_DESCRIPTIONS.equals(description) ? null : description)
+                .careLevel(this.textFieldCareLevel.getText())
+                .roomNumber(this.textFieldRoomNumber.getText())
+                .build();
+    }
+
+    /**
+     * Returns the id of the person selected in a given ComboBox.
      *
      * @param <T> The type of person, which must extend the {@code Person} class.
      * @param comboBoxSelection The ComboBox used for selecting a person or group.
-     * @param columnName The name of the database column used for filtering treatments.
      * @param personList A list of persons that may include the selected person.
-     * @return A list of {@code Treatment} objects matching the specified criteria.
-     *         If no treatments match or an SQL exception occurs, an empty list is returned.
-     * @throws RuntimeException if a SQLException occurs during data retrieval.
+     * @return The id of the selected person, or null, if the "All" option is selected.
      */
-    public <T extends Person> List<Treatment> getTreatments(ComboBox<String> comboBoxSelection, String columnName, List<T> personList) {
+    private <T extends Person> Long getSelectedPersonId(ComboBox<String> comboBoxSelection, List<T> personList) {
         String selectedPerson = comboBoxSelection.getSelectionModel().getSelectedItem();
-        List<Treatment> personTreatment = new ArrayList<>();
-        try {
-            if (selectedPerson == null || selectedPerson.equals(ALL_PATIENTS) || selectedPerson.equals(ALL_CAREGIVERS)) {
-                personTreatment.addAll(this.dao.readAll());
-            } else {
-                Person person = getPersonFromDisplayName(selectedPerson, personList);
-                if (person != null) {
-                    personTreatment.addAll(this.dao.readTreatmentsById(person.getId(), columnName));
-                }
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        if (selectedPerson == null || selectedPerson.equals(ALL_PATIENTS) || selectedPerson.equals(ALL_CAREGIVERS)) {
+            return null;
         }
-        return personTreatment;
+        Person person = getPersonFromDisplayName(selectedPerson, personList);
+        // a person, which does not exist anymore, matches no treatments
+        return person != null ? person.getId() : -1L;
+    }
+
+    /**
+     * Populates the description ComboBox of the filter panel with the treatment types
+     * and an initial "all descriptions" option.
+     *
+     * @param types The names of the treatment types.
+     */
+    private void createComboBoxDataForDescription(List<String> types) {
+        List<String> descriptions = new ArrayList<>();
+        descriptions.add(ALL_DESCRIPTIONS);
+        descriptions.addAll(types);
+        this.comboBoxDescription.setItems(FXCollections.observableArrayList(descriptions));
+        this.comboBoxDescription.getSelectionModel().selectFirst();
     }
 
     /**
@@ -295,6 +450,46 @@ public class AllTreatmentPresenter {
         }
     }
 
+    /**
+     * Checks whether the caregiver of the given treatment is free during the treatment time. Only the schedule of
+     * this caregiver on that day is loaded on the reader thread of the DAOs and the conflict is looked up in its
+     * interval index, so the FX thread does not wait for the query. If the caregiver is already booked, an alert
+     * listing the conflicting treatments is shown. The result is passed on the FX thread; if the schedule could not be
+     * read, the caregiver counts as available.
+     *
+     * @param treatment The new or changed treatment to check. A persisted treatment does not conflict with itself.
+     * @param result    Gets true if the caregiver is available, false if the treatment would double-book the
+     *                  caregiver.
+     */
+    public void checkCaregiverAvailability(Treatment treatment, Consumer<Boolean> result) {
+        this.asyncTreatmentDao.query(treatmentDao -> CareSchedule.loadForCaregiver(treatmentDao, treatment.getCgid(),
+                        treatment.getLocalDate()).findConflicts(treatment))
+                .whenComplete((conflicts, exception) -> Platform.runLater(() -> {
+                    if (exception != null) {
+                        exception.printStackTrace();
+                        result.accept(true);
+                    } else if (conflicts.isEmpty()) {
+                        result.accept(true);
+                    } else {
+                        showConflicts(conflicts);
+                        result.accept(false);
+                    }
+                }));
+    }
+
+    private void showConflicts(List<Treatment> conflicts) {
+        StringBuilder content = new StringBuilder("Die Pflegekraft ist zu dieser Zeit bereits eingeplant:");
+        for (Treatment conflict : conflicts) {
+            content.append(String.format("%n%s - %s  %s (PatientID %d)", conflict.getBegin(), conflict.getEnd(),
+                    conflict.getDescription(), conflict.getPid()));
+        }
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Terminüberschneidung");
+        alert.setHeaderText("Pflegekraft doppelt belegt!");
+        alert.setContentText(content.toString());
+        alert.showAndWait();
+    }
+
     /**
      * Handles the action of initiating a new treatment by selecting a patient and a caregiver from
      * the respective combo boxes. If both selections are valid, it opens a new treatment window
@@ -372,30 +567,107 @@ public class AllTreatmentPresenter {
     }
 
     /**
-     * Opens a new window that displays the treatment details and allows
-     * interaction related to the specified treatment. The method sets up
-     * the window layout using an FXML file and initializes its controller
-     * with relevant data.
+     * Shows a treatment in the detail pane, which displays the treatment details and allows
+     * interaction related to the specified treatment. The pane is loaded once and reused; it
+     * does not block the table, so the user can step through the treatments while it is open.
+     * The patient, caregiver and remarks are usually already prefetched. Unsaved changes of the
+     * shown treatment are saved or discarded first, as the user decides; otherwise the shown
+     * treatment is selected again.
      *
      * @param treatment The {@code Treatment} object containing the details
      *                  of the treatment to be displayed in the window.
      */
     public void treatmentWindow(Treatment treatment) {
+        if (this.treatmentStage == null) {
+            try {
+                FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/TreatmentView.fxml"));
+                AnchorPane pane = loader.load();
+
+                // the primary stage should stay in the background
+                this.treatmentStage = new Stage();
+                this.treatmentStage.setScene(new Scene(pane));
+                this.treatmentStage.setResizable(false);
+                this.treatmentPresenter = loader.getController();
+                this.treatmentPresenter.initializePresenter(this, this.treatmentStage);
+            } catch (IOException exception) {
+                exception.printStackTrace();
+                return;
+            }
+        } else if (this.treatmentStage.isShowing()) {
+            if (this.treatmentPresenter.isShowing(treatment)) {
+                this.treatmentStage.toFront();
+                return;
+            }
+            this.treatmentPresenter.leaveTreatment(left -> {
+                if (!left) {
+                    selectShownTreatment();
+                    return;
+                }
+                // the saved changes were applied to the row of the table
+                this.tableView.refresh();
+                showTreatment(treatment);
+                // the selection may have been moved back, while the changes were checked in the background
+                if (this.tableView.getSelectionModel().getSelectedItem() != treatment) {
+                    selectShownTreatment();
+                }
+            });
+            return;
+        }
+        showTreatment(treatment);
+    }
+
+    private void showTreatment(Treatment treatment) {
         try {
-            FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/TreatmentView.fxml"));
-            AnchorPane pane = loader.load();
-            Scene scene = new Scene(pane);
+            this.treatmentPresenter.showTreatment(treatment, this.detailCache.get(treatment));
+            this.treatmentStage.show();
+            this.treatmentStage.toFront();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
 
-            // the primary stage should stay in the background
-            Stage stage = new Stage();
-            TreatmentPresenter controller = loader.getController();
-            controller.initializePresenter(this, stage, treatment);
+    /**
+     * Selects the treatment shown in the detail pane again. The selection is changed after the current change of the
+     * selection was handled.
+     */
+    private void selectShownTreatment() {
+        long tid = this.treatmentPresenter.getTid();
+        Platform.runLater(() -> {
+            for (int i = 0; i < this.treatments.size(); i++) {
+                if (this.treatments.get(i).getTid() == tid) {
+                    this.tableView.getSelectionModel().clearAndSelect(i);
+                    return;
+                }
+            }
+        });
+    }
 
-            stage.setScene(scene);
-            stage.setResizable(false);
-            stage.showAndWait();
-        } catch (IOException exception) {
-            exception.printStackTrace();
+    /**
+     * Selects the previous or next treatment of the table, which is then shown in the detail pane.
+     *
+     * @param offset -1 for the previous, 1 for the next treatment.
+     */
+    public void selectNeighbor(int offset) {
+        int index = this.tableView.getSelectionModel().getSelectedIndex() + offset;
+        if (index >= this.treatments.size()) {
+            this.loader.loadNextPage();
+        }
+        if (index >= 0 && index < this.treatments.size()) {
+            this.tableView.getSelectionModel().clearAndSelect(index);
+            this.tableView.scrollTo(index);
+        }
+    }
+
+    /**
+     * Prefetches the details of the selected treatment and its neighbors in the background.
+     */
+    private void prefetchNeighbors() {
+        int index = this.tableView.getSelectionModel().getSelectedIndex();
+        if (index < 0) {
+            return;
         }
+        int from = Math.max(0, index - PREFETCHED_NEIGHBORS);
+        int to = Math.min(this.treatments.size(), index + PREFETCHED_NEIGHBORS + 1);
+        this.detailCache.prefetch(new ArrayList<>(this.treatments.subList(from, to)));
     }
 }
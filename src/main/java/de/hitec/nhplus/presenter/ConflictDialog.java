@@ -0,0 +1,86 @@
+package de.hitec.nhplus.presenter;
+
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+
+import java.util.Optional;
+
+/**
+ * Asks the user, how to resolve a conflict with the changes of another workstation, which were saved after the data
+ * was read, or with own changes, which were not saved yet.
+ */
+class ConflictDialog {
+
+    private ConflictDialog() {
+    }
+
+    /**
+     * Asks, whether the own changes are written on top of the current version of the row. Only the fields changed by
+     * the user are overwritten, the other changes of the other workstation are kept.
+     *
+     * @param subject Description of the changed row, e.g. "Patient/in Müller, Elisabeth".
+     * @return true, if the own changes are written; false, if they are discarded.
+     */
+    static boolean askOverwrite(String subject) {
+        ButtonType overwrite = new ButtonType("Meine Änderungen übernehmen", ButtonBar.ButtonData.OK_DONE);
+        ButtonType discard = new ButtonType("Verwerfen", ButtonBar.ButtonData.CANCEL_CLOSE);
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", overwrite, discard);
+        alert.setTitle("Konflikt");
+        alert.setHeaderText(subject + " wurde inzwischen an einem anderen Arbeitsplatz geändert!");
+        alert.setContentText("Sollen Ihre Änderungen die aktuellen Daten überschreiben? Felder, die Sie nicht " +
+                "geändert haben, behalten die Werte des anderen Arbeitsplatzes. Beim Verwerfen werden die aktuellen " +
+                "Daten angezeigt.");
+        Optional<ButtonType> result = alert.showAndWait();
+        return result.isPresent() && result.get() == overwrite;
+    }
+
+    /**
+     * Asks, whether the changes of a row, which were not saved yet, are saved before another row is shown.
+     *
+     * @param subject Description of the changed row.
+     * @return true, if the changes are saved; false, if they are discarded; empty, if the row stays shown.
+     */
+    static Optional<Boolean> askSaveChanges(String subject) {
+        ButtonType save = new ButtonType("Speichern", ButtonBar.ButtonData.YES);
+        ButtonType discard = new ButtonType("Verwerfen", ButtonBar.ButtonData.NO);
+        ButtonType cancel = new ButtonType("Abbrechen", ButtonBar.ButtonData.CANCEL_CLOSE);
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", save, discard, cancel);
+        alert.setTitle("Ungespeicherte Änderungen");
+        alert.setHeaderText(subject + " wurde geändert, aber noch nicht gespeichert!");
+        alert.setContentText("Sollen Ihre Änderungen gespeichert werden, bevor die nächste Behandlung angezeigt wird?");
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isEmpty() || result.get() == cancel) {
+            return Optional.empty();
+        }
+        return Optional.of(result.get() == save);
+    }
+
+    /**
+     * Informs the user, that the changed row was deleted by another workstation.
+     *
+     * @param subject Description of the changed row.
+     */
+    static void showDeleted(String subject) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Konflikt");
+        alert.setHeaderText(subject + " wurde an einem anderen Arbeitsplatz gelöscht!");
+        alert.setContentText("Ihre Änderungen konnten nicht gespeichert werden.");
+        alert.showAndWait();
+    }
+
+    /**
+     * Informs the user, that the changes of a row could not be saved, e.g. because the row was changed again while the
+     * conflict was resolved.
+     *
+     * @param subject   Description of the changed row.
+     * @param exception The cause of the failure.
+     */
+    static void showFailed(String subject, Exception exception) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Datenbankfehler");
+        alert.setHeaderText(subject + " konnte nicht gespeichert werden!");
+        alert.setContentText(exception.getMessage());
+        alert.showAndWait();
+    }
+}
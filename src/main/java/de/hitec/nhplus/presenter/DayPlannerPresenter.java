@@ -0,0 +1,150 @@
+package de.hitec.nhplus.presenter;
+
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.utils.CareSchedule;
+import de.hitec.nhplus.utils.DateConverter;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.util.StringConverter;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The <code>DayPlannerPresenter</code> contains the entire logic of the day planner view. It shows the schedule of
+ * every caregiver for one day, including the free slots within the shift and the number of double-booked treatments.
+ * All treatments of the day are loaded with one query and indexed in a {@link CareSchedule}.
+ */
+public class DayPlannerPresenter implements Refreshable {
+
+    private static final LocalTime SHIFT_BEGIN = LocalTime.of(6, 0);
+    private static final LocalTime SHIFT_END = LocalTime.of(22, 0);
+
+    @FXML
+    private TableView<Caregiver> tableView;
+
+    @FXML
+    private TableColumn<Caregiver, String> columnCaregiver;
+
+    @FXML
+    private TableColumn<Caregiver, String> columnTreatments;
+
+    @FXML
+    private TableColumn<Caregiver, String> columnFreeSlots;
+
+    @FXML
+    private TableColumn<Caregiver, String> columnConflicts;
+
+    @FXML
+    private DatePicker datePicker;
+
+    private final ObservableList<Caregiver> caregivers = FXCollections.observableArrayList();
+    private CareSchedule schedule = new CareSchedule(List.of());
+    // stamp of the shown treatments and caregivers, taken before they were read
+    private long[] shownStamp;
+
+    /**
+     * When <code>initialize()</code> gets called, all fields are already initialized. The columns are bound to the
+     * schedule of the selected day and the schedule of today is shown.
+     */
+    public void initialize() {
+        this.columnCaregiver.setCellValueFactory(cell -> new SimpleStringProperty(
+                cell.getValue().getSurname() + ", " + cell.getValue().getFirstName()));
+        this.columnTreatments.setCellValueFactory(cell -> new SimpleStringProperty(
+                formatTreatments(this.schedule.getTreatments(cell.getValue().getId(), this.datePicker.getValue()))));
+        this.columnFreeSlots.setCellValueFactory(cell -> new SimpleStringProperty(
+                this.schedule.findFreeSlots(cell.getValue().getId(), this.datePicker.getValue(), SHIFT_BEGIN, SHIFT_END)
+                        .stream().map(CareSchedule.TimeSlot::toString).collect(Collectors.joining("\n"))));
+        this.columnConflicts.setCellValueFactory(cell -> new SimpleStringProperty(
+                String.valueOf(countConflicts(cell.getValue()))));
+        this.tableView.setItems(this.caregivers);
+
+        this.datePicker.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(LocalDate localDate) {
+                return (localDate == null) ? "" : DateConverter.convertLocalDateToString(localDate);
+            }
+
+            @Override
+            public LocalDate fromString(String localDate) {
+                return DateConverter.convertStringToLocalDate(localDate);
+            }
+        });
+        // setting the value fires the onAction event of the DatePicker, which loads the schedule
+        this.datePicker.setValue(LocalDate.now());
+    }
+
+    /**
+     * Reloads the schedule when another day was picked.
+     */
+    @FXML
+    public void handleDateChanged() {
+        this.readScheduleAndShowInTableView();
+    }
+
+    /**
+     * Reloads the schedule of the selected day, when the cached view is shown again and the treatments or caregivers
+     * were changed in the meantime.
+     */
+    @Override
+    public void refresh() {
+        long[] stamp = readStamp();
+        if (stamp == null || !Arrays.equals(stamp, this.shownStamp)) {
+            this.readScheduleAndShowInTableView();
+        }
+    }
+
+    /**
+     * @return The stamp of the treatments and caregivers, or null, if it could not be read.
+     */
+    private long[] readStamp() {
+        try {
+            return DaoFactory.getDaoFactory().createTreatmentDao().getDataStamp("Treatment", "Caregiver");
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Loads all caregivers and all treatments of the selected day and refreshes the table.
+     */
+    private void readScheduleAndShowInTableView() {
+        LocalDate date = this.datePicker.getValue();
+        if (date == null) {
+            return;
+        }
+        this.shownStamp = readStamp();
+        try {
+            this.schedule = CareSchedule.load(DaoFactory.getDaoFactory().createTreatmentDao(), date, date);
+            this.caregivers.setAll(DaoFactory.getDaoFactory().createCaregiverDao().readAll());
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        this.tableView.refresh();
+    }
+
+    private long countConflicts(Caregiver caregiver) {
+        return this.schedule.getTreatments(caregiver.getId(), this.datePicker.getValue()).stream()
+                .filter(this.schedule::hasConflict)
+                .count();
+    }
+
+    private String formatTreatments(List<Treatment> treatments) {
+        return treatments.stream()
+                .map(treatment -> String.format("%s-%s %s (PatientID %d)", treatment.getBegin(), treatment.getEnd(),
+                        treatment.getDescription(), treatment.getPid()))
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -1,21 +1,51 @@
 package de.hitec.nhplus.presenter;
 
 import de.hitec.nhplus.Main;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.DaoMetrics;
+import de.hitec.nhplus.utils.StartupOrchestrator;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
 import javafx.scene.layout.BorderPane;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The <code>MainWindowPresenter</code> contains the entire logic of the mainWindow view. It determines which data is displayed and how to react to events.
+ *
+ * Every view is loaded from its FXML file only once and kept together with its presenter. Showing the view again only
+ * refreshes its data, if the presenter implements {@link Refreshable}. The views of patients, treatments and
+ * caregivers are loaded on a background thread right after the login, so the first click shows them without delay.
+ * A view is loaded by the thread, which claims it first, so there is never a second presenter of a view, which would
+ * also listen to the shared write queues.
  */
 public class MainWindowPresenter {
 
+    private static final String[] PREWARMED_VIEWS =
+            {"AllPatientView.fxml", "AllTreatmentView.fxml", "AllCaregiverView.fxml"};
+
     @FXML
     private BorderPane mainBorderPane;
 
+    // the views, which are loaded or being loaded by the JavaFX application thread or the prewarm thread
+    private final Map<String, CompletableFuture<CachedView>> views = new ConcurrentHashMap<>();
+
+    /**
+     * When <code>initialize()</code> gets called, the main window was loaded after a successful login. The most used
+     * views are loaded in the background.
+     */
+    public void initialize() {
+        Thread thread = new Thread(this::prewarmViews, "nhplus-view-prewarm");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Handles the event to display the view showing all patients. This method replaces the center of the mainBorderPane
      * with the content loaded from the "AllPatientView.fxml" file.
@@ -24,12 +54,7 @@ public class MainWindowPresenter {
      */
     @FXML
     private void handleShowAllPatient(ActionEvent event) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllPatientView.fxml"));
-        try {
-            mainBorderPane.setCenter(loader.load());
-        } catch (IOException exception) {
-            exception.printStackTrace();
-        }
+        this.showView("AllPatientView.fxml");
     }
 
     /**
@@ -40,12 +65,7 @@ public class MainWindowPresenter {
      */
     @FXML
     private void handleShowAllTreatments(ActionEvent event) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllTreatmentView.fxml"));
-        try {
-            mainBorderPane.setCenter(loader.load());
-        } catch (IOException exception) {
-            exception.printStackTrace();
-        }
+        this.showView("AllTreatmentView.fxml");
     }
 
     /**
@@ -57,11 +77,118 @@ public class MainWindowPresenter {
      */
     @FXML
     private void handleShowAllCaregivers(ActionEvent event) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllCaregiverView.fxml"));
+        this.showView("AllCaregiverView.fxml");
+    }
+
+    /**
+     * Handles the event of showing the day planner, which lists the schedule and free slots of every caregiver
+     * for one day.
+     *
+     * @param event the ActionEvent triggered by user interaction, typically a button click
+     */
+    @FXML
+    private void handleShowDayPlanner(ActionEvent event) {
+        this.showView("DayPlannerView.fxml");
+    }
+
+    /**
+     * Handles the event of showing the report view, which sums the care minutes per month for patients,
+     * caregivers and care levels.
+     *
+     * @param event the ActionEvent triggered by user interaction, typically a button click
+     */
+    @FXML
+    private void handleShowReports(ActionEvent event) {
+        this.showView("ReportView.fxml");
+    }
+
+    /**
+     * Shows the view of the given FXML file in the center of the main window. A view shown or preloaded before is taken
+     * from the cache and refreshed, which only reloads its data, if it changed since it was read. If the view is still
+     * preloaded in the background, the preload is waited for. Otherwise the view is loaded and added to the cache.
+     *
+     * @param fxml Name of the FXML file of the view.
+     */
+    private void showView(String fxml) {
+        DaoMetrics.setScreen(fxml.replace(".fxml", ""));
+        CompletableFuture<CachedView> claim = new CompletableFuture<>();
+        CompletableFuture<CachedView> loaded = this.views.putIfAbsent(fxml, claim);
+        CachedView cachedView;
+        if (loaded == null) {
+            cachedView = load(fxml, claim);
+            if (cachedView == null) {
+                return;
+            }
+        } else {
+            try {
+                cachedView = loaded.join();
+            } catch (CompletionException exception) {
+                // the preload failed, the next click loads the view again
+                return;
+            }
+            if (cachedView.presenter instanceof Refreshable) {
+                ((Refreshable) cachedView.presenter).refresh();
+            }
+        }
+        this.mainBorderPane.setCenter(cachedView.view);
+        StartupOrchestrator.markFirstTableShown();
+    }
+
+    /**
+     * Loads the views of <code>PREWARMED_VIEWS</code>. Runs on a background thread: the views are not attached to a
+     * scene yet, so they may be built outside of the JavaFX application thread. A view, which the user opened in the
+     * meantime, is skipped. The DAOs, which the views used on this thread, are closed at the end.
+     */
+    private void prewarmViews() {
+        long start = System.nanoTime();
         try {
-            mainBorderPane.setCenter(loader.load());
-        } catch (IOException exception) {
+            for (String fxml : PREWARMED_VIEWS) {
+                CompletableFuture<CachedView> claim = new CompletableFuture<>();
+                if (this.views.putIfAbsent(fxml, claim) == null) {
+                    load(fxml, claim);
+                }
+            }
+        } finally {
+            DaoFactory.getDaoFactory().releaseThreadDaos();
+        }
+        System.out.printf("Ansichten vorgeladen (%d ms)%n", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Loads a view, which the calling thread claimed, and completes the claim. If the view could not be loaded, the
+     * claim is removed, so the view is loaded again the next time it is shown.
+     *
+     * @return The loaded view, or null, if it could not be loaded.
+     */
+    private CachedView load(String fxml, CompletableFuture<CachedView> claim) {
+        try {
+            CachedView cachedView = loadView(fxml);
+            claim.complete(cachedView);
+            return cachedView;
+        } catch (IOException | RuntimeException exception) {
             exception.printStackTrace();
+            this.views.remove(fxml, claim);
+            claim.completeExceptionally(exception);
+            return null;
+        }
+    }
+
+    private static CachedView loadView(String fxml) throws IOException {
+        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/" + fxml));
+        Parent view = loader.load();
+        return new CachedView(view, loader.getController());
+    }
+
+    /**
+     * A loaded view together with its presenter.
+     */
+    private static class CachedView {
+        private final Parent view;
+        private final Object presenter;
+
+        private CachedView(Parent view, Object presenter) {
+            this.view = view;
+            this.presenter = presenter;
         }
     }
 }
@@ -99,9 +99,17 @@ public class NewTreatmentPresenter {
         String description = textFieldDescription.getText();
         String remarks = textAreaRemarks.getText();
         Treatment treatment = new Treatment(patient.getId(), date, begin, end, description, remarks, caregiver.getId());
-        createTreatment(treatment);
-        presenter.readAllAndShowInTableView();
-        stage.close();
+        // the caregiver is checked in the background, so the treatment must not be added twice meanwhile
+        this.buttonAdd.setDisable(true);
+        presenter.checkCaregiverAvailability(treatment, available -> {
+            if (!available) {
+                this.buttonAdd.setDisable(this.areInputDataInvalid());
+                return;
+            }
+            createTreatment(treatment);
+            presenter.readAllAndShowInTableView();
+            stage.close();
+        });
     }
 
     private void createTreatment(Treatment treatment) {
@@ -0,0 +1,16 @@
+package de.hitec.nhplus.presenter;
+
+/**
+ * Presenters of views, which are cached by the {@link MainWindowPresenter}, implement this interface. Instead of
+ * loading the FXML file and building the view again, the cached view is shown again and only its data is reloaded.
+ * A presenter keeps the stamp of the data it shows (see <code>DaoImp.getDataStamp</code>) and skips reloading, as long
+ * as the stamp did not change.
+ */
+public interface Refreshable {
+
+    /**
+     * Reloads the data shown in the view, if it changed since it was shown. The view itself, its columns and listeners
+     * are kept.
+     */
+    void refresh();
+}
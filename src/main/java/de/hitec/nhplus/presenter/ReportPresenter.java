@@ -0,0 +1,149 @@
+package de.hitec.nhplus.presenter;
+
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.ReportDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.TreatmentSnapshot;
+import de.hitec.nhplus.model.CareMinutes;
+import de.hitec.nhplus.model.Treatment;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * The <code>ReportPresenter</code> contains the entire logic of the report view. It shows the care minutes per month
+ * for patients, caregivers, care levels or descriptions within a date range. The sums are calculated by the
+ * {@link ReportDao}, except the sums per description, which are scanned from a {@link TreatmentSnapshot}. The snapshot
+ * is read and scanned in the background, and only read again after the treatments were changed.
+ */
+public class ReportPresenter implements Refreshable {
+
+    private static final String PER_PATIENT = "pro Patient";
+    private static final String PER_CAREGIVER = "pro Pflegekraft";
+    private static final String PER_CARE_LEVEL = "pro Pflegestufe";
+    private static final String PER_DESCRIPTION = "pro Behandlungsart";
+
+    @FXML
+    private TableView<CareMinutes> tableView;
+
+    @FXML
+    private TableColumn<CareMinutes, String> columnMonth;
+
+    @FXML
+    private TableColumn<CareMinutes, String> columnLabel;
+
+    @FXML
+    private TableColumn<CareMinutes, Long> columnCount;
+
+    @FXML
+    private TableColumn<CareMinutes, Long> columnMinutes;
+
+    @FXML
+    private ComboBox<String> comboBoxReport;
+
+    @FXML
+    private DatePicker datePickerFrom;
+
+    @FXML
+    private DatePicker datePickerTo;
+
+    private final ObservableList<CareMinutes> rows = FXCollections.observableArrayList();
+    private final AsyncDao<Treatment, TreatmentDao> asyncTreatmentDao =
+            DaoFactory.getDaoFactory().createAsyncTreatmentDao();
+    // counts the requested reports, so a report read in the background is not shown after a newer one
+    private long reportRequest;
+    // stamp of the treatments and persons of the shown report, taken before it was read
+    private long[] shownStamp;
+
+    /**
+     * When <code>initialize()</code> gets called, all fields are already initialized. The report of the current year
+     * per patient is shown.
+     */
+    public void initialize() {
+        this.columnMonth.setCellValueFactory(new PropertyValueFactory<>("month"));
+        this.columnLabel.setCellValueFactory(new PropertyValueFactory<>("label"));
+        this.columnCount.setCellValueFactory(new PropertyValueFactory<>("count"));
+        this.columnMinutes.setCellValueFactory(new PropertyValueFactory<>("minutes"));
+        this.tableView.setItems(this.rows);
+
+        this.comboBoxReport.setItems(FXCollections.observableArrayList(PER_PATIENT, PER_CAREGIVER, PER_CARE_LEVEL,
+                PER_DESCRIPTION));
+        this.comboBoxReport.getSelectionModel().selectFirst();
+        // setting the last value fires the onAction event of the DatePicker, which loads the report
+        LocalDate today = LocalDate.now();
+        this.datePickerFrom.setValue(today.withDayOfYear(1));
+        this.datePickerTo.setValue(today.withDayOfYear(today.lengthOfYear()));
+    }
+
+    /**
+     * Reads the selected report again, when the cached view is shown again and the treatments or persons were changed
+     * in the meantime.
+     */
+    @Override
+    public void refresh() {
+        long[] stamp = readStamp();
+        if (stamp == null || !Arrays.equals(stamp, this.shownStamp)) {
+            this.handleShowReport();
+        }
+    }
+
+    /**
+     * @return The stamp of the treatments and persons, or null, if it could not be read.
+     */
+    private long[] readStamp() {
+        try {
+            return DaoFactory.getDaoFactory().createTreatmentDao().getDataStamp("Treatment", "Patient", "Caregiver");
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads the selected report for the selected date range and shows it in the table. The sums per description are
+     * scanned in the background and shown, unless another report was requested in the meantime.
+     */
+    @FXML
+    public void handleShowReport() {
+        LocalDate from = this.datePickerFrom.getValue();
+        LocalDate to = this.datePickerTo.getValue();
+        String report = this.comboBoxReport.getSelectionModel().getSelectedItem();
+        if (from == null || to == null || report == null) {
+            return;
+        }
+        long request = ++this.reportRequest;
+        this.shownStamp = readStamp();
+        if (PER_DESCRIPTION.equals(report)) {
+            this.asyncTreatmentDao.query(dao -> dao.readSnapshot().sumMinutesPerMonthAndDescription(from, to))
+                    .whenComplete((minutes, exception) -> Platform.runLater(() -> {
+                        if (exception != null) {
+                            exception.printStackTrace();
+                        } else if (request == this.reportRequest) {
+                            this.rows.setAll(minutes);
+                        }
+                    }));
+            return;
+        }
+        ReportDao dao = DaoFactory.getDaoFactory().createReportDao();
+        try {
+            switch (report) {
+                case PER_CAREGIVER -> this.rows.setAll(dao.readMinutesPerCaregiver(from, to));
+                case PER_CARE_LEVEL -> this.rows.setAll(dao.readMinutesPerCareLevel(from, to));
+                default -> this.rows.setAll(dao.readMinutesPerPatient(from, to));
+            }
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+}
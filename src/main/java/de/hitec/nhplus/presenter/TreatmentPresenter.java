@@ -1,8 +1,7 @@
 package de.hitec.nhplus.presenter;
 
-import de.hitec.nhplus.datastorage.CaregiverDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
-import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.OptimisticLockException;
 import de.hitec.nhplus.datastorage.TreatmentDao;
 import de.hitec.nhplus.model.Caregiver;
 import javafx.fxml.FXML;
@@ -11,9 +10,13 @@ import javafx.stage.Stage;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.utils.DateConverter;
+import de.hitec.nhplus.utils.TreatmentDetailCache;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * The TreatmentPresenter class manages the presentation layer for displaying
@@ -25,6 +28,9 @@ import java.time.LocalDate;
  * to the underlying database. The class includes functionality to initialize
  * the presenter with the necessary dependencies, populate UI components with
  * data, handle user actions, and update treatment details.
+ *
+ * The view is a non-modal pane, which is loaded once and reused: the presenter is initialized with its stage once and
+ * then shows one treatment after the other, e.g. while the user steps through the table.
  */
 public class TreatmentPresenter {
 
@@ -55,35 +61,100 @@ public class TreatmentPresenter {
     @FXML
     private DatePicker datePicker;
 
+    @FXML
+    private Button btnChange;
+
     private AllTreatmentPresenter presenter;
     private Stage stage;
     private Patient patient;
     private Caregiver caregiver;
     private Treatment treatment;
+    // true, while the changes of the shown treatment are checked in the background
+    private boolean checking;
 
     /**
-     * Initializes the presenter for the treatment view, sets up the stage, retrieves patient
-     * and caregiver data from the database, and displays the relevant information.
+     * Initializes the presenter for the treatment view once, after the view was loaded.
      *
      * @param presenter the {@code AllTreatmentPresenter} responsible for managing the treatment view
      * @param stage the {@code Stage} on which the treatment data is displayed
-     * @param treatment the {@code Treatment} object containing details of the treatment to be presented
      */
-    public void initializePresenter(AllTreatmentPresenter presenter, Stage stage, Treatment treatment) {
+    public void initializePresenter(AllTreatmentPresenter presenter, Stage stage) {
         this.stage = stage;
         this.presenter = presenter;
-        PatientDao pDao = DaoFactory.getDaoFactory().createPatientDao();
-        CaregiverDao cDao = DaoFactory.getDaoFactory().createCaregiverDao();
-        try {
-            this.treatment = treatment;
-            this.patient = pDao.read((int) treatment.getPid());
-            this.caregiver = cDao.read((int) treatment.getCgid());
-            showData();
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+    }
+
+    /**
+     * Shows a treatment with its patient, caregiver and remarks, which were usually prefetched in the background.
+     * Changes of the previously shown treatment, which were not applied with "Ändern", are discarded, so the caller
+     * asks with {@link #leaveTreatment(Consumer)} first. The remarks are only taken from the details, if the treatment
+     * from the list did not load them yet.
+     *
+     * @param treatment the {@code Treatment} object containing details of the treatment to be presented
+     * @param details the patient, caregiver and remarks of the treatment
+     */
+    public void showTreatment(Treatment treatment, TreatmentDetailCache.Details details) {
+        this.treatment = treatment;
+        if (!treatment.isRemarksLoaded()) {
+            treatment.loadRemarks(details.getRemarks());
+        }
+        this.patient = details.getPatient();
+        this.caregiver = details.getCaregiver();
+        showData();
+    }
+
+    /**
+     * @param treatment A treatment of the table.
+     * @return true, if the pane shows this treatment.
+     */
+    public boolean isShowing(Treatment treatment) {
+        return this.treatment != null && this.treatment.getTid() == treatment.getTid();
+    }
+
+    /**
+     * @return The id of the shown treatment.
+     */
+    public long getTid() {
+        return this.treatment.getTid();
+    }
+
+    /**
+     * Prepares showing another treatment. If the shown treatment was edited, but not saved, the user decides whether
+     * the changes are saved or discarded, or the treatment stays shown. Saved changes are checked in the background
+     * first, so the result may be passed later, but always on the FX thread.
+     *
+     * @param result Gets true, if another treatment can be shown; false, if the shown treatment stays, e.g. because
+     *               its changes could not be saved or are still being checked.
+     */
+    public void leaveTreatment(Consumer<Boolean> result) {
+        if (this.checking) {
+            result.accept(false);
+            return;
+        }
+        if (!hasUnsavedChanges()) {
+            result.accept(true);
+            return;
+        }
+        Optional<Boolean> save = ConflictDialog.askSaveChanges("Die Behandlung vom " + this.treatment.getDate());
+        if (save.isEmpty()) {
+            result.accept(false);
+        } else if (!save.get()) {
+            result.accept(true);
+        } else {
+            applyChanges(applied -> result.accept(applied && doUpdate()));
         }
     }
 
+    /**
+     * @return true, if a field of the pane differs from the shown treatment.
+     */
+    private boolean hasUnsavedChanges() {
+        return !Objects.equals(this.datePicker.getValue(), DateConverter.convertStringToLocalDate(treatment.getDate()))
+                || !Objects.equals(this.textFieldBegin.getText(), this.treatment.getBegin())
+                || !Objects.equals(this.textFieldEnd.getText(), this.treatment.getEnd())
+                || !Objects.equals(this.textFieldDescription.getText(), this.treatment.getDescription())
+                || !Objects.equals(this.textAreaRemarks.getText(), this.treatment.getRemarks());
+    }
+
     /**
      * Populates the user interface fields with data from the associated patient, caregiver,
      * and treatment objects, allowing the user to view and edit the treatment details.
@@ -115,26 +186,66 @@ public class TreatmentPresenter {
     /**
      * Handles the "change" event when triggered in the GUI. Updates the treatment
      * details with new data from the corresponding UI input fields (date, begin time,
-     * end time, description, and remarks). After updating the treatment, it performs
-     * the following actions:
+     * end time, description, and remarks). If the changed time would double-book the
+     * caregiver, the change is rejected and the window stays open. After updating the
+     * treatment, it performs the following actions:
      *
      * - Calls the `doUpdate` method to persist the changes to the database.
      * - Triggers the presenter to fetch all treatments and refresh the TableView display.
-     * - Closes the current stage.
+     * - Hides the current stage, which is reused for the next treatment, unless the changes were not saved or the
+     *   current version of the treatment is shown after a conflict.
      *
      * This method ensures that the treatment details are updated and the UI reflects
      * the most recent data.
      */
     @FXML
     public void handleChange(){
-        this.treatment.setDate(this.datePicker.getValue().toString());
-        this.treatment.setBegin(textFieldBegin.getText());
-        this.treatment.setEnd(textFieldEnd.getText());
-        this.treatment.setDescription(textFieldDescription.getText());
-        this.treatment.setRemarks(textAreaRemarks.getText());
-        doUpdate();
-        presenter.readAllAndShowInTableView();
-        stage.close();
+        applyChanges(applied -> {
+            if (!applied) {
+                return;
+            }
+            boolean saved = doUpdate();
+            presenter.readAllAndShowInTableView();
+            if (saved) {
+                stage.close();
+            }
+        });
+    }
+
+    /**
+     * Applies the fields of the pane to the treatment, unless the changed time would double-book the caregiver. The
+     * caregiver is checked in the background; meanwhile "Ändern" is disabled and the shown treatment stays. The values
+     * of the fields, which were checked, are applied, also if the fields were edited during the check.
+     *
+     * @param result Gets true on the FX thread, if the changes were applied.
+     */
+    private void applyChanges(Consumer<Boolean> result) {
+        Treatment target = this.treatment;
+        LocalDate date = this.datePicker.getValue();
+        String begin = textFieldBegin.getText();
+        String end = textFieldEnd.getText();
+        String description = textFieldDescription.getText();
+        String remarks = textAreaRemarks.getText();
+        Treatment changed = new Treatment(target.getTid(), target.getPid(), date,
+                DateConverter.convertStringToLocalTime(begin), DateConverter.convertStringToLocalTime(end),
+                description, remarks, target.getCgid());
+        this.checking = true;
+        this.btnChange.setDisable(true);
+        presenter.checkCaregiverAvailability(changed, available -> {
+            this.checking = false;
+            this.btnChange.setDisable(false);
+            // the pane may show another treatment, if it was closed and opened again during the check
+            if (!available || this.treatment != target) {
+                result.accept(false);
+                return;
+            }
+            target.setDate(date.toString());
+            target.setBegin(begin);
+            target.setEnd(end);
+            target.setDescription(description);
+            target.setRemarks(remarks);
+            result.accept(true);
+        });
     }
 
     /**
@@ -143,17 +254,74 @@ public class TreatmentPresenter {
      * This method utilizes the TreatmentDao to perform an update operation on
      * the treatment object. It retrieves the DAO instance from the DaoFactory
      * and executes the update method. If an SQLException occurs during the
-     * update, the exception stack trace is printed to the console.
+     * update, it is shown to the user.
+     *
+     * @return true, if the pane can be closed; false, if the changes were not saved or the pane shows the current
+     * version of the treatment.
      */
-    private void doUpdate(){
+    private boolean doUpdate(){
         TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
         try {
             dao.update(treatment);
+            return true;
+        } catch (OptimisticLockException exception) {
+            return resolveConflict(dao);
         } catch (SQLException exception) {
             exception.printStackTrace();
+            ConflictDialog.showFailed("Die Behandlung vom " + this.treatment.getDate(), exception);
+            return false;
         }
     }
 
+    /**
+     * Resolves a conflict with another workstation, which saved the treatment after it was opened here. The pane
+     * continues with the current version of the treatment, so its version and changed fields match the row. If the
+     * user keeps the own changes, they are applied to the current version and written again. Otherwise the current
+     * version is shown. If writing again fails, the failure is shown and the pane keeps the entered values.
+     *
+     * @param dao DAO to read and write the treatment.
+     * @return true, if the pane can be closed.
+     */
+    private boolean resolveConflict(TreatmentDao dao) {
+        String subject = "Die Behandlung vom " + this.treatment.getDate();
+        try {
+            Treatment current = dao.read(this.treatment.getTid());
+            if (current == null) {
+                ConflictDialog.showDeleted(subject);
+                return true;
+            }
+            if (!ConflictDialog.askOverwrite(subject)) {
+                this.treatment = current;
+                showData();
+                return false;
+            }
+            this.treatment.copyChangesTo(current);
+            this.treatment = current;
+            dao.update(current);
+            return true;
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            ConflictDialog.showFailed(subject, exception);
+            return false;
+        }
+    }
+
+    /**
+     * Shows the previous treatment of the table.
+     */
+    @FXML
+    public void handlePrevious() {
+        presenter.selectNeighbor(-1);
+    }
+
+    /**
+     * Shows the next treatment of the table.
+     */
+    @FXML
+    public void handleNext() {
+        presenter.selectNeighbor(1);
+    }
+
     /**
      * Handles the cancel action triggered by the user.
      * This method closes the current stage, effectively dismissing the
@@ -5,6 +5,7 @@ import de.hitec.nhplus.datastorage.ConnectionBuilder;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.UserDao;
 import de.hitec.nhplus.model.User;
+import de.hitec.nhplus.utils.StartupOrchestrator;
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.fxml.FXML;
@@ -73,7 +74,12 @@ public class UserLoginPresenter {
         String name = this.username.getText().trim();
         String password = this.userPassword.getText();
 
+        // the database is prepared in the background since the start of the application
+        if (!StartupOrchestrator.awaitDatabase()) {
+            return;
+        }
         if(areInputDataCorrect(name, password)){
+            StartupOrchestrator.markLogin();
             mainWindow();
         }else{
             Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -104,6 +110,7 @@ public class UserLoginPresenter {
             stage.show();
 
             stage.setOnCloseRequest(event -> {
+                DaoFactory.getDaoFactory().closeWriteQueues();
                 ConnectionBuilder.closeConnection();
                 Platform.exit();
                 System.exit(0);
@@ -0,0 +1,159 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Treatment;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory schedule of treatments, indexed per caregiver and per day by a {@link TreatmentIntervalIndex}. It is built
+ * from one date range query and answers conflict and free slot queries without further database access.
+ */
+public class CareSchedule {
+
+    private final Map<Long, Map<LocalDate, TreatmentIntervalIndex>> index = new HashMap<>();
+
+    /**
+     * Loads all treatments of the given date range with one query and indexes them.
+     *
+     * @param dao  DAO to read the treatments with.
+     * @param from First day of the schedule (inclusive).
+     * @param to   Last day of the schedule (inclusive).
+     * @return The schedule of the date range.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static CareSchedule load(TreatmentDao dao, LocalDate from, LocalDate to) throws SQLException {
+        return new CareSchedule(dao.readTreatmentsBetween(from, to));
+    }
+
+    /**
+     * Loads the treatments of one caregiver on one day, which is all a conflict check for a single treatment needs.
+     *
+     * @param dao  DAO to read the treatments with.
+     * @param cgid Id of the caregiver.
+     * @param date Day of the schedule.
+     * @return The schedule of the caregiver on that day.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static CareSchedule loadForCaregiver(TreatmentDao dao, long cgid, LocalDate date) throws SQLException {
+        return new CareSchedule(dao.readTreatmentsOfCaregiverOnDate(cgid, date));
+    }
+
+    /**
+     * Groups the given treatments by caregiver and day and builds one interval index per group.
+     *
+     * @param treatments Treatments to index.
+     */
+    public CareSchedule(List<Treatment> treatments) {
+        Map<Long, Map<LocalDate, List<Treatment>>> groups = new HashMap<>();
+        for (Treatment treatment : treatments) {
+            groups.computeIfAbsent(treatment.getCgid(), cgid -> new HashMap<>())
+                    .computeIfAbsent(treatment.getLocalDate(), date -> new ArrayList<>())
+                    .add(treatment);
+        }
+        groups.forEach((cgid, days) -> {
+            Map<LocalDate, TreatmentIntervalIndex> dayIndex = new HashMap<>();
+            days.forEach((date, list) -> dayIndex.put(date, new TreatmentIntervalIndex(list)));
+            this.index.put(cgid, dayIndex);
+        });
+    }
+
+    /**
+     * Checks whether the caregiver of the given treatment is already booked during its time. The treatment itself is
+     * ignored, so an existing treatment can be checked after it was edited.
+     *
+     * @param treatment Treatment to check.
+     * @return true if the caregiver is double-booked by the treatment.
+     */
+    public boolean hasConflict(Treatment treatment) {
+        TreatmentIntervalIndex day = getDay(treatment.getCgid(), treatment.getLocalDate());
+        return day != null && day.overlaps(treatment.getBeginMinute(), treatment.getEndMinute(), treatment.getTid());
+    }
+
+    /**
+     * Returns all treatments of the same caregiver overlapping the given treatment.
+     *
+     * @param treatment Treatment to check.
+     * @return The conflicting treatments, sorted by begin. Empty if there is no conflict.
+     */
+    public List<Treatment> findConflicts(Treatment treatment) {
+        TreatmentIntervalIndex day = getDay(treatment.getCgid(), treatment.getLocalDate());
+        if (day == null) {
+            return new ArrayList<>();
+        }
+        return day.findOverlapping(treatment.getBeginMinute(), treatment.getEndMinute(), treatment.getTid());
+    }
+
+    /**
+     * Returns the treatments of a caregiver on one day.
+     *
+     * @param cgid Id of the caregiver.
+     * @param date Day of the treatments.
+     * @return The treatments, sorted by begin.
+     */
+    public List<Treatment> getTreatments(long cgid, LocalDate date) {
+        TreatmentIntervalIndex day = getDay(cgid, date);
+        return day == null ? List.of() : day.getTreatments();
+    }
+
+    /**
+     * Returns the free slots of a caregiver within a shift.
+     *
+     * @param cgid       Id of the caregiver.
+     * @param date       Day of the shift.
+     * @param shiftBegin Begin of the shift.
+     * @param shiftEnd   End of the shift.
+     * @return The free slots, sorted by begin.
+     */
+    public List<TimeSlot> findFreeSlots(long cgid, LocalDate date, LocalTime shiftBegin, LocalTime shiftEnd) {
+        int from = shiftBegin.toSecondOfDay() / 60;
+        int to = shiftEnd.toSecondOfDay() / 60;
+        TreatmentIntervalIndex day = getDay(cgid, date);
+        List<TimeSlot> slots = new ArrayList<>();
+        if (day == null) {
+            slots.add(new TimeSlot(shiftBegin, shiftEnd));
+            return slots;
+        }
+        for (int[] slot : day.freeSlots(from, to)) {
+            slots.add(new TimeSlot(LocalTime.ofSecondOfDay(slot[0] * 60L), LocalTime.ofSecondOfDay(slot[1] * 60L)));
+        }
+        return slots;
+    }
+
+    private TreatmentIntervalIndex getDay(long cgid, LocalDate date) {
+        Map<LocalDate, TreatmentIntervalIndex> days = this.index.get(cgid);
+        return days == null ? null : days.get(date);
+    }
+
+    /**
+     * A free period of time between two treatments.
+     */
+    public static class TimeSlot {
+        private final LocalTime begin;
+        private final LocalTime end;
+
+        public TimeSlot(LocalTime begin, LocalTime end) {
+            this.begin = begin;
+            this.end = end;
+        }
+
+        public LocalTime getBegin() {
+            return begin;
+        }
+
+        public LocalTime getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return DateConverter.convertLocalTimeToString(begin) + "-" + DateConverter.convertLocalTimeToString(end);
+        }
+    }
+}
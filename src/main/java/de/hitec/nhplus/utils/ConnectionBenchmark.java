@@ -0,0 +1,125 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DatabaseConfig;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.QueryCache;
+import de.hitec.nhplus.datastorage.SchemaMigrator;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.TreatmentTypeCache;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the PRAGMA profiles of <code>database.properties</code>. For every profile a new
+ * temporary database is created and migrated, then the typical operations of NHPlus are measured:
+ * <ul>
+ *     <li>single inserts, each in its own transaction, like adding a patient in the view</li>
+ *     <li>inserts within one transaction, like an import</li>
+ *     <li>single updates, like editing a cell of a table</li>
+ *     <li>reads of single treatments by id</li>
+ *     <li>reads of the whole treatment table, like opening the treatment view</li>
+ * </ul>
+ * Executing the class benchmarks all profiles. The names of profiles can be passed as arguments to benchmark only
+ * those. The single writes show the price of durability, because every commit waits for the sync of the profile.
+ */
+public class ConnectionBenchmark {
+
+    private static final int SINGLE_WRITES = 300;
+    private static final int BATCH_INSERTS = 5_000;
+    private static final int READS = 2_000;
+    private static final int SCANS = 20;
+    private static final String[] DESCRIPTIONS = {"Gespräch", "Waschen", "Spaziergang", "Physiotherapie", "KG",
+            "Toilettengang"};
+
+    public static void main(String[] args) {
+        DatabaseConfig config = ConnectionBuilder.getConfig();
+        List<String> profiles = args.length > 0 ? Arrays.asList(args) : config.getProfiles();
+        System.out.printf("%-12s %20s %24s %12s %12s %18s%n", "Profil", "Einfügen einzeln/s",
+                "Einfügen Transaktion/s", "Ändern/s", "Lesen/s", "Tabellenscans/s");
+        for (String profile : profiles) {
+            try {
+                double[] result = benchmark(config.withProfile(profile));
+                System.out.printf("%-12s %20.0f %24.0f %12.0f %12.0f %18.1f%n", profile,
+                        result[0], result[1], result[2], result[3], result[4]);
+            } catch (SQLException | IOException exception) {
+                System.out.println(profile + ": " + exception.getMessage());
+            }
+        }
+    }
+
+    private static double[] benchmark(DatabaseConfig config) throws SQLException, IOException {
+        Path file = Files.createTempFile("nhplus-benchmark-", ".db");
+        TreatmentTypeCache.clear();
+        QueryCache.clear();
+        try (Connection connection = ConnectionBuilder.openConnection(config.withPath(file.toString()))) {
+            SchemaMigrator.migrate(connection);
+            PatientDao patientDao = new PatientDao(connection);
+            TreatmentDao treatmentDao = new TreatmentDao(connection);
+            Random random = new Random(42);
+            double[] result = new double[5];
+
+            long start = System.nanoTime();
+            for (int i = 0; i < SINGLE_WRITES; i++) {
+                patientDao.create(new Patient("Vorname" + i, "Nachname" + i, LocalDate.of(1940, 1, 1).plusDays(i),
+                        String.valueOf(1 + i % 5), String.format("%03d", i)));
+            }
+            result[0] = perSecond(SINGLE_WRITES, start);
+
+            start = System.nanoTime();
+            connection.setAutoCommit(false);
+            for (int i = 0; i < BATCH_INSERTS; i++) {
+                LocalTime begin = LocalTime.of(6 + random.nextInt(14), 15 * random.nextInt(4));
+                treatmentDao.create(new Treatment(1 + random.nextInt(SINGLE_WRITES),
+                        LocalDate.of(2023, 1, 1).plusDays(random.nextInt(365)), begin, begin.plusMinutes(30),
+                        DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)], "Bemerkung " + i, 1 + random.nextInt(5)));
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+            result[1] = perSecond(BATCH_INSERTS, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < SINGLE_WRITES; i++) {
+                Treatment treatment = treatmentDao.read(1 + random.nextInt(BATCH_INSERTS));
+                treatment.setRemarks("Geändert " + i);
+                treatmentDao.update(treatment);
+            }
+            result[2] = perSecond(SINGLE_WRITES, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < READS; i++) {
+                treatmentDao.read(1 + random.nextInt(BATCH_INSERTS));
+            }
+            result[3] = perSecond(READS, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < SCANS; i++) {
+                treatmentDao.readAll();
+            }
+            result[4] = perSecond(SCANS, start);
+            return result;
+        } finally {
+            TreatmentTypeCache.clear();
+            QueryCache.clear();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+            Files.deleteIfExists(Path.of(file + "-journal"));
+        }
+    }
+
+    private static double perSecond(int operations, long start) {
+        return operations / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+}
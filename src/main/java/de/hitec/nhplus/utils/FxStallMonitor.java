@@ -0,0 +1,157 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.DaoMetrics;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Optional watchdog of the JavaFX application thread. It is enabled with the system property
+ * <code>nhplus.fx.monitor=true</code>; the threshold of a stall in milliseconds is set with
+ * <code>nhplus.fx.stallMs</code> (default 100).
+ *
+ * A background thread posts a heartbeat to the FX thread every few milliseconds. If the heartbeat is not processed
+ * within the threshold, the stack of the FX thread is captured, and when the FX thread responds again, the stall is
+ * logged with its duration, the shown screen and the captured stack. So a DAO call blocking the FX thread shows up
+ * with the presenter method, which made it. In addition an <code>AnimationTimer</code> records the time between two
+ * pulses. A summary of the frame times and the stalls is printed when the application exits.
+ */
+public class FxStallMonitor {
+
+    private static final long HEARTBEAT_MILLIS = 20;
+    private static final int MAX_STACK_FRAMES = 30;
+    private static final int MAX_FRAME_MILLIS = 1000;
+    private static FxStallMonitor instance;
+
+    private final long thresholdNanos;
+    private final Thread fxThread;
+    // one bucket per millisecond, the last one counts all longer frames
+    private final AtomicLongArray frameMillis = new AtomicLongArray(MAX_FRAME_MILLIS + 1);
+    private final AtomicLong maxFrameNanos = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong longestStallNanos = new AtomicLong();
+    private final Map<String, Long> stallsByScreen = new TreeMap<>();
+    private long lastPulse;
+
+    private FxStallMonitor(long thresholdNanos, Thread fxThread) {
+        this.thresholdNanos = thresholdNanos;
+        this.fxThread = fxThread;
+    }
+
+    /**
+     * Starts the monitor, if it is enabled by the system property <code>nhplus.fx.monitor</code>. Has to be called on
+     * the FX thread.
+     */
+    public static synchronized void start() {
+        if (instance != null || !Boolean.getBoolean("nhplus.fx.monitor")) {
+            return;
+        }
+        long thresholdMillis = Long.getLong("nhplus.fx.stallMs", 100);
+        instance = new FxStallMonitor(TimeUnit.MILLISECONDS.toNanos(thresholdMillis), Thread.currentThread());
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                instance.recordPulse(now);
+            }
+        }.start();
+
+        Thread watchdog = new Thread(instance::watch, "nhplus-fx-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(instance::printSummary, "nhplus-fx-summary"));
+        System.out.println("FX-Überwachung aktiv, Blockaden ab " + thresholdMillis + " ms werden protokolliert");
+    }
+
+    private void recordPulse(long now) {
+        if (this.lastPulse != 0) {
+            long nanos = now - this.lastPulse;
+            this.frameMillis.incrementAndGet((int) Math.min(TimeUnit.NANOSECONDS.toMillis(nanos), MAX_FRAME_MILLIS));
+            this.maxFrameNanos.accumulateAndGet(nanos, Math::max);
+        }
+        this.lastPulse = now;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                CountDownLatch answered = new CountDownLatch(1);
+                long sent = System.nanoTime();
+                Platform.runLater(answered::countDown);
+                StackTraceElement[] stack = null;
+                String screen = null;
+                while (!answered.await(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (stack == null && System.nanoTime() - sent >= this.thresholdNanos) {
+                        stack = this.fxThread.getStackTrace();
+                        screen = DaoMetrics.getScreen();
+                    }
+                }
+                long nanos = System.nanoTime() - sent;
+                if (nanos >= this.thresholdNanos) {
+                    recordStall(nanos, screen != null ? screen : DaoMetrics.getScreen(), stack);
+                }
+                Thread.sleep(HEARTBEAT_MILLIS);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recordStall(long nanos, String screen, StackTraceElement[] stack) {
+        this.stalls.incrementAndGet();
+        this.longestStallNanos.accumulateAndGet(nanos, Math::max);
+        synchronized (this.stallsByScreen) {
+            this.stallsByScreen.merge(screen, 1L, Long::sum);
+        }
+        StringBuilder message = new StringBuilder(String.format("FX-Thread blockiert für %d ms (Ansicht %s)",
+                TimeUnit.NANOSECONDS.toMillis(nanos), screen));
+        if (stack != null) {
+            for (int i = 0; i < Math.min(stack.length, MAX_STACK_FRAMES); i++) {
+                message.append(System.lineSeparator()).append("    at ").append(stack[i]);
+            }
+            if (stack.length > MAX_STACK_FRAMES) {
+                message.append(System.lineSeparator()).append("    ...");
+            }
+        }
+        System.out.println(message);
+    }
+
+    private void printSummary() {
+        long frames = 0;
+        for (int i = 0; i < this.frameMillis.length(); i++) {
+            frames += this.frameMillis.get(i);
+        }
+        System.out.println("--- FX-Thread ---");
+        if (frames > 0) {
+            System.out.printf("%d Bilder  p50 %d ms  p95 %d ms  p99 %d ms  max %d ms%n", frames,
+                    frameQuantile(frames, 0.50), frameQuantile(frames, 0.95), frameQuantile(frames, 0.99),
+                    TimeUnit.NANOSECONDS.toMillis(this.maxFrameNanos.get()));
+        }
+        System.out.printf("%d Blockaden ab %d ms, längste %d ms%n", this.stalls.get(),
+                TimeUnit.NANOSECONDS.toMillis(this.thresholdNanos),
+                TimeUnit.NANOSECONDS.toMillis(this.longestStallNanos.get()));
+        synchronized (this.stallsByScreen) {
+            for (Map.Entry<String, Long> entry : this.stallsByScreen.entrySet()) {
+                System.out.printf("  %-20s %d Blockaden%n", entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private long frameQuantile(long frames, double quantile) {
+        long rank = (long) Math.ceil(frames * quantile);
+        long seen = 0;
+        for (int i = 0; i < this.frameMillis.length(); i++) {
+            seen += this.frameMillis.get(i);
+            if (seen >= rank) {
+                return i;
+            }
+        }
+        return MAX_FRAME_MILLIS;
+    }
+}
@@ -0,0 +1,123 @@
+package de.hitec.nhplus.utils;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Appends the rows of a <code>Flow.Publisher</code>, e.g. of a DAO query, to an <code>ObservableList</code> chunk by
+ * chunk, so a large result fills a table progressively. The rows of a chunk are collected on the thread of the
+ * publisher and appended on the FX thread with the next pulse. The next chunk is only requested after the previous
+ * one was appended, so the FX thread is never flooded with rows.
+ *
+ * @param <T> Type of the rows.
+ */
+public class ObservableListSubscriber<T> implements Flow.Subscriber<T> {
+
+    private final ObservableList<T> target;
+    private final int chunkSize;
+    private Consumer<List<T>> onChunk = chunk -> {
+    };
+    private Runnable onFinished = () -> {
+    };
+    private Flow.Subscription subscription;
+    private List<T> chunk = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * @param target    List, to which the rows are appended.
+     * @param chunkSize Number of rows, which are requested and appended at once.
+     */
+    public ObservableListSubscriber(ObservableList<T> target, int chunkSize) {
+        this.target = target;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets an action, which gets every chunk on the FX thread before it is appended, e.g. to replace rows with
+     * unsaved changes.
+     *
+     * @param onChunk Action getting the modifiable list of the chunk.
+     */
+    public void setOnChunk(Consumer<List<T>> onChunk) {
+        this.onChunk = onChunk;
+    }
+
+    /**
+     * Sets an action, which is run on the FX thread after the last chunk was appended or reading failed.
+     *
+     * @param onFinished The action.
+     */
+    public void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Stops appending rows and cancels the subscription, which closes the cursor of the query. Chunks, which were not
+     * appended yet, are discarded.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        Flow.Subscription current = this.subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (this.cancelled) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(this.chunkSize);
+    }
+
+    @Override
+    public void onNext(T row) {
+        this.chunk.add(row);
+        if (this.chunk.size() == this.chunkSize) {
+            append(takeChunk(), true);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        throwable.printStackTrace();
+        append(takeChunk(), false);
+    }
+
+    @Override
+    public void onComplete() {
+        append(takeChunk(), false);
+    }
+
+    private List<T> takeChunk() {
+        List<T> rows = this.chunk;
+        this.chunk = new ArrayList<>();
+        return rows;
+    }
+
+    /**
+     * Appends a chunk on the FX thread and requests the next one, or finishes after the last one.
+     */
+    private void append(List<T> rows, boolean requestMore) {
+        Platform.runLater(() -> {
+            if (this.cancelled) {
+                return;
+            }
+            this.onChunk.accept(rows);
+            this.target.addAll(rows);
+            if (requestMore) {
+                this.subscription.request(this.chunkSize);
+            } else {
+                this.onFinished.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,273 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.Page;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Loads the rows of a <code>TableView</code> page by page in the order chosen by the user. The sort policy of the
+ * table is replaced: instead of sorting the loaded rows on the FX thread, the sort column is passed to the DAO, which
+ * lets the database sort by an index and returns the first page. The next page is loaded when the table is scrolled
+ * to its end, so a sorted view of a large table opens without loading all rows.
+ *
+ * The sort field of a column is the property of its <code>PropertyValueFactory</code>. If the database cannot sort
+ * by that field, or the table is sorted by more than one column, all rows are loaded and sorted in memory as before.
+ * If a publisher of all rows was set, they are appended chunk by chunk, so the table fills progressively, and sorted
+ * after the last chunk.
+ *
+ * @param <T> Type of the rows.
+ */
+public class PagedTableLoader<T> {
+
+    /**
+     * Reads one page of rows from the database.
+     */
+    @FunctionalInterface
+    public interface PageReader<T> {
+        /**
+         * @param field     Field to sort by, or null for the order of the key.
+         * @param ascending true for ascending, false for descending order.
+         * @param after     Previous page in the same order, or null for the first page.
+         * @param limit     Maximum number of rows.
+         * @return The page.
+         * @throws SQLException If a database access error occurs.
+         */
+        Page<T> read(String field, boolean ascending, Page<T> after, int limit) throws SQLException;
+    }
+
+    public static final int PAGE_SIZE = 200;
+
+    private final TableView<T> table;
+    private final ObservableList<T> rows;
+    private final Predicate<String> sortable;
+    private final PageReader<T> reader;
+    private Consumer<List<T>> onPageLoaded = page -> {
+    };
+    private Supplier<Flow.Publisher<T>> allRows;
+    private ObservableListSubscriber<T> streaming;
+    private String field;
+    private boolean ascending = true;
+    private boolean sortedInMemory;
+    // the last page with rows, whose keyset the next page starts after
+    private Page<T> lastRead;
+    private boolean complete;
+
+    /**
+     * Creates the loader and installs it as sort policy of the table.
+     *
+     * @param table    Table showing the rows.
+     * @param rows     Items of the table.
+     * @param sortable Tells, whether the database can sort by a field.
+     * @param reader   Reads a page.
+     */
+    public PagedTableLoader(TableView<T> table, ObservableList<T> rows, Predicate<String> sortable,
+                            PageReader<T> reader) {
+        this.table = table;
+        this.rows = rows;
+        this.sortable = sortable;
+        this.reader = reader;
+        table.setSortPolicy(this::sort);
+        table.skinProperty().addListener((observable, oldSkin, newSkin) -> watchScrolling());
+    }
+
+    /**
+     * Sets an action, which gets every page before it is shown, e.g. to replace rows with unsaved changes.
+     *
+     * @param onPageLoaded Action getting the modifiable list of the page.
+     */
+    public void setOnPageLoaded(Consumer<List<T>> onPageLoaded) {
+        this.onPageLoaded = onPageLoaded;
+    }
+
+    /**
+     * Sets the source of all rows, which fills a table sorted in memory progressively. Without it, all pages are read
+     * at once.
+     *
+     * @param allRows Creates a publisher of all rows, which is subscribed on the FX thread.
+     */
+    public void setAllRows(Supplier<Flow.Publisher<T>> allRows) {
+        this.allRows = allRows;
+    }
+
+    /**
+     * Clears the table and loads the first page in the current order. If the table is sorted in memory, all rows are
+     * loaded and sorted again.
+     */
+    public void reload() {
+        stopStreaming();
+        this.rows.clear();
+        this.lastRead = null;
+        this.complete = false;
+        if (this.sortedInMemory && this.allRows != null) {
+            streamAll();
+            return;
+        }
+        loadNextPage();
+        if (this.sortedInMemory) {
+            loadAll();
+            TableView.DEFAULT_SORT_POLICY.call(this.table);
+        }
+    }
+
+    /**
+     * Shows a first page, which was read in the order of the key, e.g. during the startup. If the table is sorted by
+     * a column, the first page is read again in that order.
+     *
+     * @param firstPage First page in the order of the key.
+     */
+    public void show(Page<T> firstPage) {
+        if (this.field != null || this.sortedInMemory) {
+            reload();
+            return;
+        }
+        stopStreaming();
+        this.rows.clear();
+        this.lastRead = null;
+        this.complete = false;
+        showPage(firstPage);
+    }
+
+    /**
+     * Loads the next page, unless the last page was already loaded.
+     */
+    public void loadNextPage() {
+        if (this.complete) {
+            return;
+        }
+        try {
+            showPage(this.reader.read(this.field, this.ascending, this.lastRead, PAGE_SIZE));
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads all remaining pages.
+     */
+    public void loadAll() {
+        while (!this.complete) {
+            int loaded = this.rows.size();
+            loadNextPage();
+            if (this.rows.size() == loaded && !this.complete) {
+                return;
+            }
+        }
+    }
+
+    private void showPage(Page<T> read) {
+        List<T> page = new ArrayList<>(read.getRows());
+        this.complete = page.size() < PAGE_SIZE;
+        if (!read.isEmpty()) {
+            // the page keeps the keyset of its last row as it was read, so edits of the shown row do not matter
+            this.lastRead = read;
+        }
+        this.onPageLoaded.accept(page);
+        this.rows.addAll(page);
+    }
+
+    /**
+     * Sort policy of the table. Reloads the rows sorted by the database, or sorts all rows in memory, if the database
+     * cannot sort by the chosen column.
+     */
+    private boolean sort(TableView<T> table) {
+        List<TableColumn<T, ?>> sortOrder = table.getSortOrder();
+        if (sortOrder.isEmpty()) {
+            return setOrder(null, true);
+        }
+        TableColumn<T, ?> column = sortOrder.get(0);
+        String sortField = getField(column);
+        if (sortOrder.size() == 1 && sortField != null && this.sortable.test(sortField)) {
+            return setOrder(sortField, column.getSortType() == TableColumn.SortType.ASCENDING);
+        }
+        this.sortedInMemory = true;
+        if (this.streaming != null) {
+            // sorted after the last chunk
+            return true;
+        }
+        if (this.allRows != null && !this.complete) {
+            this.rows.clear();
+            this.lastRead = null;
+            streamAll();
+            return true;
+        }
+        loadAll();
+        return TableView.DEFAULT_SORT_POLICY.call(table);
+    }
+
+    /**
+     * Appends all rows chunk by chunk and sorts them in memory after the last chunk. Paging is stopped meanwhile.
+     */
+    private void streamAll() {
+        this.complete = true;
+        ObservableListSubscriber<T> subscriber = new ObservableListSubscriber<>(this.rows, PAGE_SIZE);
+        subscriber.setOnChunk(this.onPageLoaded);
+        subscriber.setOnFinished(() -> {
+            if (this.streaming == subscriber) {
+                this.streaming = null;
+                TableView.DEFAULT_SORT_POLICY.call(this.table);
+            }
+        });
+        this.streaming = subscriber;
+        this.allRows.get().subscribe(subscriber);
+    }
+
+    /**
+     * Cancels appending all rows, which closes the cursor of the query.
+     */
+    private void stopStreaming() {
+        if (this.streaming != null) {
+            this.streaming.cancel();
+            this.streaming = null;
+        }
+    }
+
+    private boolean setOrder(String sortField, boolean sortAscending) {
+        if (!this.sortedInMemory && Objects.equals(this.field, sortField) && this.ascending == sortAscending) {
+            return true;
+        }
+        this.field = sortField;
+        this.ascending = sortAscending;
+        this.sortedInMemory = false;
+        reload();
+        return true;
+    }
+
+    private String getField(TableColumn<T, ?> column) {
+        Object factory = column.getCellValueFactory();
+        if (factory instanceof PropertyValueFactory) {
+            return ((PropertyValueFactory<?, ?>) factory).getProperty();
+        }
+        return null;
+    }
+
+    /**
+     * Loads the next page, when the vertical scroll bar of the table reaches its end. The scroll bars exist as soon as
+     * the table has its skin.
+     */
+    private void watchScrolling() {
+        for (Node node : this.table.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                ScrollBar scrollBar = (ScrollBar) node;
+                scrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax()) {
+                        loadNextPage();
+                    }
+                });
+            }
+        }
+    }
+}
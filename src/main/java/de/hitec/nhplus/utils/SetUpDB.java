@@ -22,16 +22,19 @@ import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalTime;
 public class SetUpDB {
 
     /**
-     * This method wipes the database by dropping the tables. Then the method calls DDL statements to build it up from
-     * scratch and DML statements to fill the database with hard coded test data.
+     * This method wipes the database by dropping the tables. Then the method applies all migration scripts of
+     * <code>SchemaMigrator</code> to build it up from scratch and DML statements to fill the database with hard coded
+     * test data.
      */
     public static void setUpDb() {
         Connection connection = ConnectionBuilder.getConnection();
         SetUpDB.wipeDb(connection);
-        SetUpDB.setUpTablePatient(connection);
-        SetUpDB.setUpTableTreatment(connection);
-        SetUpDB.setUpTableCaregiver(connection);
-        SetUpDB.setUpTableUsers(connection);
+        try {
+            SchemaMigrator.migrate(connection);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return;
+        }
         setUpUsers();
         SetUpDB.setUpPatients();
         SetUpDB.setUpTreatments();
@@ -39,85 +42,54 @@ public class SetUpDB {
     }
 
     /**
-     * This method wipes the database by dropping the tables.
+     * This method wipes the database by dropping the tables, including the applied schema versions.
      */
     public static void wipeDb(Connection connection) {
         try (Statement statement = connection.createStatement()) {
-            statement.execute("DROP TABLE patient");
-            statement.execute("DROP TABLE treatment");
-            statement.execute("DROP TABLE caregiver");
-            statement.execute("DROP TABLE user");
+            statement.execute("DROP TABLE IF EXISTS treatment_daily_summary");
+            statement.execute("DROP TABLE IF EXISTS treatment");
+            statement.execute("DROP TABLE IF EXISTS treatment_type");
+            statement.execute("DROP TABLE IF EXISTS patient");
+            statement.execute("DROP TABLE IF EXISTS caregiver");
+            statement.execute("DROP TABLE IF EXISTS user");
+            statement.execute("DROP TABLE IF EXISTS schema_version");
         } catch (SQLException exception) {
             System.out.println(exception.getMessage());
         }
+        TreatmentTypeCache.clear();
+        QueryCache.clear();
     }
 
-    private static void setUpTablePatient(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS patient (" +
-                "   pid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   firstname TEXT NOT NULL, " +
-                "   surname TEXT NOT NULL, " +
-                "   dateOfBirth TEXT NOT NULL, " +
-                "   carelevel TEXT NOT NULL, " +
-                "   roomnumber TEXT NOT NULL" +
-                ");";
-        try {
-            Statement statement = connection.createStatement();
-            statement.execute(SQL);
-        } catch (SQLException exception) {
-            System.out.println(exception.getMessage());
-        }
-    }
-
-    private static void setUpTableTreatment(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS treatment (" +
-                "   tid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   pid INTEGER NOT NULL, " +
-                "   treatment_date TEXT NOT NULL, " +
-                "   begin TEXT NOT NULL, " +
-                "   end TEXT NOT NULL, " +
-                "   description TEXT NOT NULL, " +
-                "   remark TEXT NOT NULL," +
-                "   cgid INTEGER NOT NULL," +
-                "   FOREIGN KEY (pid) REFERENCES patient (pid) ON DELETE CASCADE " +
-                ");";
-
-        try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
-        } catch (SQLException exception) {
-            System.out.println(exception.getMessage());
-        }
-    }
-
-    private static void setUpTableCaregiver(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS caregiver (" +
-                "   cgID INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   firstname TEXT NOT NULL, " +
-                "   surname TEXT NOT NULL, " +
-                "   telNumber TEXT NOT NULL" +
-                ");";
-
+    /**
+     * Recalculates the table <code>treatment_daily_summary</code> from all treatments. This is only necessary after
+     * the treatments were changed without the triggers, e.g. by importing an old database.
+     */
+    public static void rebuildDailySummary(Connection connection) {
+        final String SQL = "INSERT INTO treatment_daily_summary (summary_date, pid, cgid, minutes, treatment_count) " +
+                "SELECT treatment_date, pid, cgid, " +
+                "SUM((strftime('%s', end) - strftime('%s', begin)) / 60), COUNT(*) " +
+                "FROM treatment GROUP BY treatment_date, pid, cgid";
         try (Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.execute("DELETE FROM treatment_daily_summary");
             statement.execute(SQL);
+            connection.commit();
         } catch (SQLException exception) {
             System.out.println(exception.getMessage());
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                rollbackException.printStackTrace();
+            }
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
         }
     }
 
-    private static void setUpTableUsers(Connection connection){
-        final String SQL = "CREATE TABLE IF NOT EXISTS user (" +
-                "username TEXT NOT NULL," +
-                "password TEXT NOT NULL" +
-                ");";
-        try {
-            Statement statement = connection.createStatement();
-            statement.execute(SQL);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-
-    }
-
     private static void setUpPatients() {
         try {
             PatientDao dao = DaoFactory.getDaoFactory().createPatientDao();
@@ -176,7 +148,25 @@ public class SetUpDB {
         }
     }
 
+    /**
+     * Without arguments the database is wiped and filled with test data. With the argument <code>migrate</code> the
+     * pending migration scripts are applied to the existing database. With the argument <code>rebuildSummary</code>
+     * the daily summary of the treatments is recalculated after migrating.
+     */
     public static void main(String[] args) {
+        if (args.length > 0 && (args[0].equals("migrate") || args[0].equals("rebuildSummary"))) {
+            Connection connection = ConnectionBuilder.getConnection();
+            try {
+                SchemaMigrator.migrate(connection);
+                if (args[0].equals("rebuildSummary")) {
+                    SetUpDB.rebuildDailySummary(connection);
+                }
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+            ConnectionBuilder.closeConnection();
+            return;
+        }
         SetUpDB.setUpDb();
     }
 }
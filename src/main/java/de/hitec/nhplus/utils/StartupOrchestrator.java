@@ -0,0 +1,184 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.Page;
+import de.hitec.nhplus.datastorage.SchemaMigrator;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prepares the application in the background while the login form is shown. On a single background thread the
+ * database connection is opened (which applies the PRAGMA tuning of <code>ConnectionBuilder</code>), the pending
+ * migrations are applied and afterwards the first page of the patients and caregivers is read once. The preloaded
+ * pages are handed out to the first view, which needs them, so the first table after the login is shown without a
+ * cold query.
+ *
+ * The class also measures the startup: every milestone is printed with the time elapsed since the start of the JVM,
+ * including the time-to-first-usable-table.
+ */
+public class StartupOrchestrator {
+
+    private static final Instant JVM_START = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+
+    private static final AtomicReference<CompletableFuture<Page<Patient>>> preloadedPatients =
+            new AtomicReference<>();
+    private static final AtomicReference<CompletableFuture<Page<Caregiver>>> preloadedCaregivers =
+            new AtomicReference<>();
+    private static final AtomicBoolean firstTableShown = new AtomicBoolean();
+    private static volatile CompletableFuture<Void> databaseReady;
+    private static volatile Instant loginTime;
+
+    private StartupOrchestrator() {
+    }
+
+    /**
+     * Starts preparing the database and preloading the patients and caregivers on a background thread. Calling the
+     * method again returns the already started preparation.
+     *
+     * @return Future, which completes when the database is migrated and ready to use, or completes exceptionally
+     * with the <code>SQLException</code> of a failed connection or migration.
+     */
+    public static synchronized CompletableFuture<Void> start() {
+        if (databaseReady != null) {
+            return databaseReady;
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        databaseReady = CompletableFuture.runAsync(StartupOrchestrator::prepareDatabase, executor);
+        CompletableFuture<Page<Patient>> patients = databaseReady.thenApplyAsync(ignored -> {
+            try {
+                return DaoFactory.getDaoFactory().createPatientDao().readPage(null, true, null,
+                        PagedTableLoader.PAGE_SIZE);
+            } catch (SQLException exception) {
+                throw new CompletionException(exception);
+            }
+        }, executor);
+        CompletableFuture<Page<Caregiver>> caregivers = databaseReady.thenApplyAsync(ignored -> {
+            try {
+                return DaoFactory.getDaoFactory().createCaregiverDao().readPage(null, true, null,
+                        PagedTableLoader.PAGE_SIZE);
+            } catch (SQLException exception) {
+                throw new CompletionException(exception);
+            }
+        }, executor);
+        preloadedPatients.set(patients);
+        preloadedCaregivers.set(caregivers);
+        CompletableFuture.allOf(patients, caregivers).whenComplete((ignored, exception) -> {
+            if (exception == null) {
+                mark("Patienten und Pflegekräfte vorgeladen");
+            }
+            // the thread ends after the preloads, so its DAOs are closed as its last task
+            executor.execute(DaoFactory.getDaoFactory()::releaseThreadDaos);
+            executor.shutdown();
+        });
+        return databaseReady;
+    }
+
+    /**
+     * Waits until the database is ready. Usually the preparation is finished long before the user submitted the
+     * login form.
+     *
+     * @return true, if the database is ready; false, if it could not be prepared or <code>start()</code> was not
+     * called.
+     */
+    public static boolean awaitDatabase() {
+        CompletableFuture<Void> ready = databaseReady;
+        if (ready == null) {
+            return false;
+        }
+        try {
+            ready.join();
+            return true;
+        } catch (CompletionException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the preloaded first page of the patients once. Later calls, or calls before the preload is finished,
+     * return null, so the caller reads the current data itself.
+     *
+     * @return The preloaded patients or null.
+     */
+    public static Page<Patient> takePreloadedPatients() {
+        return take(preloadedPatients);
+    }
+
+    /**
+     * Returns the preloaded first page of the caregivers once. Later calls, or calls before the preload is finished,
+     * return null, so the caller reads the current data itself.
+     *
+     * @return The preloaded caregivers or null.
+     */
+    public static Page<Caregiver> takePreloadedCaregivers() {
+        return take(preloadedCaregivers);
+    }
+
+    /**
+     * Prints a milestone of the startup with the time elapsed since the start of the JVM.
+     *
+     * @param milestone Description of the reached milestone.
+     */
+    public static void mark(String milestone) {
+        System.out.printf("Start: %s nach %d ms%n", milestone, Duration.between(JVM_START, Instant.now()).toMillis());
+    }
+
+    /**
+     * Records the successful login, so the time-to-first-usable-table can also be reported without the time the
+     * user needed to log in.
+     */
+    public static void markLogin() {
+        loginTime = Instant.now();
+        mark("Anmeldung erfolgreich");
+    }
+
+    /**
+     * Reports the time-to-first-usable-table. Only the first call after the start of the application is reported.
+     */
+    public static void markFirstTableShown() {
+        if (!firstTableShown.compareAndSet(false, true)) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant login = loginTime;
+        System.out.printf("Start: erste Tabelle angezeigt nach %d ms (%d ms nach der Anmeldung)%n",
+                Duration.between(JVM_START, now).toMillis(),
+                login == null ? 0 : Duration.between(login, now).toMillis());
+    }
+
+    private static void prepareDatabase() {
+        try {
+            Connection connection = ConnectionBuilder.getConnection();
+            if (connection == null) {
+                throw new SQLException("Verbindung zur Datenbank konnte nicht aufgebaut werden!");
+            }
+            SchemaMigrator.migrate(connection);
+        } catch (SQLException exception) {
+            throw new CompletionException(exception);
+        }
+        mark("Datenbank bereit");
+    }
+
+    private static <T> Page<T> take(AtomicReference<CompletableFuture<Page<T>>> preload) {
+        CompletableFuture<Page<T>> future = preload.getAndSet(null);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join();
+    }
+}
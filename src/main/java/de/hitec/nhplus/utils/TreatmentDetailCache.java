@@ -0,0 +1,192 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.QueryCache;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the patient, caregiver and remarks shown in the detail pane of a treatment. The details of the selected
+ * treatment and its neighbors are prefetched on a background thread, so stepping through the treatments shows them
+ * without waiting for the database. At most <code>MAX_ENTRIES</code> details are kept, the least recently used ones
+ * are forgotten first.
+ *
+ * Every details carry the modification counters of the patient, caregiver and treatment tables of the
+ * {@link QueryCache} and the <code>data_version</code> of the connection, taken before they were read. Details, which
+ * were read before one of these tables was written here or at another workstation, are read again. If the details are
+ * requested while their prefetch is running, the request waits for it instead of reading them a second time.
+ */
+public class TreatmentDetailCache {
+
+    private static final int MAX_ENTRIES = 64;
+    private static final String[] TABLES = {"Patient", "Caregiver", "Treatment"};
+
+    /**
+     * The data of a treatment, which is not contained in the row of the list.
+     */
+    public static class Details {
+        private final Patient patient;
+        private final Caregiver caregiver;
+        private final String remarks;
+        private final long[] stamp;
+
+        private Details(Patient patient, Caregiver caregiver, String remarks, long[] stamp) {
+            this.patient = patient;
+            this.caregiver = caregiver;
+            this.remarks = remarks;
+            this.stamp = stamp;
+        }
+
+        public Patient getPatient() {
+            return patient;
+        }
+
+        public Caregiver getCaregiver() {
+            return caregiver;
+        }
+
+        public String getRemarks() {
+            return remarks;
+        }
+    }
+
+    private final Map<Long, CompletableFuture<Details>> details = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<Details>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // prefetches, which were not started yet; a request takes them over and reads the details itself
+    private final Set<CompletableFuture<Details>> queued = new HashSet<>();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "nhplus-treatment-details");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Reads the details of the given treatments in the background, unless they are already read or queued. The ids
+     * are taken from the treatments on the calling thread, so the treatments themselves are not accessed in the
+     * background.
+     *
+     * @param treatments Treatments, e.g. the selected row of a table and its neighbors.
+     */
+    public void prefetch(List<Treatment> treatments) {
+        long[] stamp;
+        try {
+            stamp = getStamp();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return;
+        }
+        for (Treatment treatment : treatments) {
+            long tid = treatment.getTid();
+            long pid = treatment.getPid();
+            long cgid = treatment.getCgid();
+            CompletableFuture<Details> future;
+            synchronized (this.details) {
+                if (isCurrent(this.details.get(tid), stamp)) {
+                    continue;
+                }
+                future = new CompletableFuture<>();
+                this.details.put(tid, future);
+                this.queued.add(future);
+            }
+            this.loader.execute(() -> {
+                synchronized (this.details) {
+                    if (!this.queued.remove(future)) {
+                        return;
+                    }
+                }
+                try {
+                    future.complete(load(tid, pid, cgid));
+                } catch (SQLException exception) {
+                    future.completeExceptionally(exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the details of a treatment. Prefetched details are returned at once; if their prefetch is running, it
+     * is waited for. Otherwise, or if they are stale, the details are read on the calling thread.
+     *
+     * @param treatment The treatment.
+     * @return The details of the treatment.
+     * @throws SQLException If the details could not be read.
+     */
+    public Details get(Treatment treatment) throws SQLException {
+        CompletableFuture<Details> future;
+        boolean takenOver;
+        synchronized (this.details) {
+            future = this.details.get(treatment.getTid());
+            takenOver = this.queued.remove(future);
+        }
+        if (future != null && !takenOver) {
+            try {
+                Details prefetched = future.join();
+                if (Arrays.equals(prefetched.stamp, getStamp())) {
+                    return prefetched;
+                }
+            } catch (CompletionException exception) {
+                // the prefetch failed, the details are read again
+            }
+        }
+        Details loaded = load(treatment.getTid(), treatment.getPid(), treatment.getCgid());
+        if (future == null || !future.complete(loaded)) {
+            synchronized (this.details) {
+                this.details.put(treatment.getTid(), CompletableFuture.completedFuture(loaded));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Forgets all details.
+     */
+    public void clear() {
+        synchronized (this.details) {
+            this.details.clear();
+        }
+    }
+
+    /**
+     * @return true, if the details are still being read, or were read with the given stamp.
+     */
+    private static boolean isCurrent(CompletableFuture<Details> future, long[] stamp) {
+        if (future == null || future.isCompletedExceptionally()) {
+            return false;
+        }
+        return !future.isDone() || Arrays.equals(future.join().stamp, stamp);
+    }
+
+    /**
+     * @return The stamp of the tables of the details, read with the DAO of the calling thread.
+     */
+    private static long[] getStamp() throws SQLException {
+        return DaoFactory.getDaoFactory().createTreatmentDao().getDataStamp(TABLES);
+    }
+
+    /**
+     * Reads the details with the DAOs, which the factory shares with the calling thread.
+     */
+    private static Details load(long tid, long pid, long cgid) throws SQLException {
+        DaoFactory factory = DaoFactory.getDaoFactory();
+        long[] stamp = getStamp();
+        return new Details(factory.createPatientDao().read(pid), factory.createCaregiverDao().read(cgid),
+                factory.createTreatmentDao().readRemarks(tid), stamp);
+    }
+}
@@ -0,0 +1,152 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.model.Treatment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Static interval index over the treatments of one caregiver on one day. The treatments are sorted by their begin and
+ * every position stores the two largest ends seen so far (prefix maxima). An overlap query then needs a single binary
+ * search: all treatments starting before the end of the queried slot form a prefix, and the slot overlaps one of them
+ * exactly if the largest end of that prefix lies after the begin of the slot.
+ *
+ * Intervals are half-open, so a treatment ending at 12:00 does not overlap one beginning at 12:00.
+ */
+public class TreatmentIntervalIndex {
+
+    private final Treatment[] treatments;
+    private final int[] begins;
+    private final int[] ends;
+    private final int[] maxEnd;
+    private final int[] maxEndIndex;
+    private final int[] secondMaxEnd;
+
+    /**
+     * Builds the index from the given treatments in O(n log n).
+     *
+     * @param treatments Treatments of one caregiver on one day.
+     */
+    public TreatmentIntervalIndex(List<Treatment> treatments) {
+        this.treatments = treatments.toArray(new Treatment[0]);
+        Arrays.sort(this.treatments, Comparator.comparingInt(Treatment::getBeginMinute));
+        int size = this.treatments.length;
+        this.begins = new int[size];
+        this.ends = new int[size];
+        this.maxEnd = new int[size];
+        this.maxEndIndex = new int[size];
+        this.secondMaxEnd = new int[size];
+
+        int first = Integer.MIN_VALUE;
+        int firstIndex = -1;
+        int second = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            this.begins[i] = this.treatments[i].getBeginMinute();
+            this.ends[i] = this.treatments[i].getEndMinute();
+            if (this.ends[i] > first) {
+                second = first;
+                first = this.ends[i];
+                firstIndex = i;
+            } else if (this.ends[i] > second) {
+                second = this.ends[i];
+            }
+            this.maxEnd[i] = first;
+            this.maxEndIndex[i] = firstIndex;
+            this.secondMaxEnd[i] = second;
+        }
+    }
+
+    /**
+     * Checks in O(log n) whether the slot overlaps any indexed treatment except the one with the given id.
+     *
+     * @param begin      Begin of the slot in minutes since midnight.
+     * @param end        End of the slot in minutes since midnight.
+     * @param excludeTid Id of a treatment to ignore, e.g. the treatment being edited. Use 0 to ignore none.
+     * @return true if at least one other treatment overlaps the slot.
+     */
+    public boolean overlaps(int begin, int end, long excludeTid) {
+        int last = countBeginningBefore(end) - 1;
+        if (last < 0) {
+            return false;
+        }
+        int max = this.maxEnd[last];
+        if (excludeTid != 0 && this.treatments[this.maxEndIndex[last]].getTid() == excludeTid) {
+            max = this.secondMaxEnd[last];
+        }
+        return max > begin;
+    }
+
+    /**
+     * Returns all treatments overlapping the slot, except the one with the given id. The search stops as soon as the
+     * prefix maxima show that no earlier treatment can reach into the slot.
+     *
+     * @param begin      Begin of the slot in minutes since midnight.
+     * @param end        End of the slot in minutes since midnight.
+     * @param excludeTid Id of a treatment to ignore. Use 0 to ignore none.
+     * @return The overlapping treatments, sorted by begin.
+     */
+    public List<Treatment> findOverlapping(int begin, int end, long excludeTid) {
+        List<Treatment> result = new ArrayList<>();
+        for (int i = countBeginningBefore(end) - 1; i >= 0 && this.maxEnd[i] > begin; i--) {
+            if (this.ends[i] > begin && this.treatments[i].getTid() != excludeTid) {
+                result.add(0, this.treatments[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the free slots between <code>from</code> and <code>to</code>, which are not covered by any treatment.
+     *
+     * @param from Begin of the shift in minutes since midnight.
+     * @param to   End of the shift in minutes since midnight.
+     * @return Pairs of begin and end minutes of the free slots, sorted by begin.
+     */
+    public List<int[]> freeSlots(int from, int to) {
+        List<int[]> slots = new ArrayList<>();
+        int cursor = from;
+        for (int i = 0; i < this.begins.length && cursor < to; i++) {
+            if (this.begins[i] > cursor) {
+                slots.add(new int[]{cursor, Math.min(this.begins[i], to)});
+            }
+            cursor = Math.max(cursor, this.ends[i]);
+        }
+        if (cursor < to) {
+            slots.add(new int[]{cursor, to});
+        }
+        return slots;
+    }
+
+    /**
+     * @return The indexed treatments, sorted by begin.
+     */
+    public List<Treatment> getTreatments() {
+        return List.of(this.treatments);
+    }
+
+    /**
+     * @return The number of indexed treatments.
+     */
+    public int size() {
+        return this.treatments.length;
+    }
+
+    /**
+     * Binary search for the number of treatments beginning strictly before the given minute.
+     */
+    private int countBeginningBefore(int minute) {
+        int low = 0;
+        int high = this.begins.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.begins[middle] < minute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -6,6 +6,7 @@ module de.hitec.nhplus {
     requires java.sql;
     requires org.xerial.sqlitejdbc;
     requires java.desktop;
+    requires java.management;
 
     opens de.hitec.nhplus to javafx.fxml;
     opens de.hitec.nhplus.presenter to javafx.fxml;
@@ -14,4 +15,5 @@ module de.hitec.nhplus {
     exports de.hitec.nhplus;
     exports de.hitec.nhplus.presenter;
     exports de.hitec.nhplus.model;
+    exports de.hitec.nhplus.datastorage to java.management;
 }
\ No newline at end of file
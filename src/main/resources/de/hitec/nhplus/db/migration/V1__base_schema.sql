@@ -0,0 +1,34 @@
+-- Tables of the first release. They are created only if missing, so databases created by
+-- older versions of SetUpDB are adopted without changes.
+CREATE TABLE IF NOT EXISTS patient (
+   pid INTEGER PRIMARY KEY AUTOINCREMENT,
+   firstname TEXT NOT NULL,
+   surname TEXT NOT NULL,
+   dateOfBirth TEXT NOT NULL,
+   carelevel TEXT NOT NULL,
+   roomnumber TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS treatment (
+   tid INTEGER PRIMARY KEY AUTOINCREMENT,
+   pid INTEGER NOT NULL,
+   treatment_date TEXT NOT NULL,
+   begin TEXT NOT NULL,
+   end TEXT NOT NULL,
+   description TEXT NOT NULL,
+   remark TEXT NOT NULL,
+   cgid INTEGER NOT NULL,
+   FOREIGN KEY (pid) REFERENCES patient (pid) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS caregiver (
+   cgID INTEGER PRIMARY KEY AUTOINCREMENT,
+   firstname TEXT NOT NULL,
+   surname TEXT NOT NULL,
+   telNumber TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS user (
+   username TEXT NOT NULL,
+   password TEXT NOT NULL
+);
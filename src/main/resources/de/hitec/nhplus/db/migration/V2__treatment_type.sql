@@ -0,0 +1,31 @@
+-- Moves the repeated treatment descriptions into the lookup table treatment_type and
+-- references them by id. The column keeps its position, so the treatment rows are copied
+-- into a new table.
+CREATE TABLE treatment_type (
+   ttid INTEGER PRIMARY KEY AUTOINCREMENT,
+   name TEXT NOT NULL UNIQUE
+);
+
+INSERT INTO treatment_type (name)
+SELECT DISTINCT description FROM treatment ORDER BY description;
+
+ALTER TABLE treatment RENAME TO treatment_old;
+
+CREATE TABLE treatment (
+   tid INTEGER PRIMARY KEY AUTOINCREMENT,
+   pid INTEGER NOT NULL,
+   treatment_date TEXT NOT NULL,
+   begin TEXT NOT NULL,
+   end TEXT NOT NULL,
+   ttid INTEGER NOT NULL,
+   remark TEXT NOT NULL,
+   cgid INTEGER NOT NULL,
+   FOREIGN KEY (pid) REFERENCES patient (pid) ON DELETE CASCADE,
+   FOREIGN KEY (ttid) REFERENCES treatment_type (ttid)
+);
+
+INSERT INTO treatment (tid, pid, treatment_date, begin, end, ttid, remark, cgid)
+SELECT t.tid, t.pid, t.treatment_date, t.begin, t.end, tt.ttid, t.remark, t.cgid
+FROM treatment_old t JOIN treatment_type tt ON tt.name = t.description;
+
+DROP TABLE treatment_old;
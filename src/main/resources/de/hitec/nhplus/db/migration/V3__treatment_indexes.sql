@@ -0,0 +1,4 @@
+-- Indexes for the date range queries and the caregiver day schedule of TreatmentDao.
+CREATE INDEX IF NOT EXISTS idx_treatment_date ON treatment (treatment_date);
+
+CREATE INDEX IF NOT EXISTS idx_treatment_cgid_date ON treatment (cgid, treatment_date);
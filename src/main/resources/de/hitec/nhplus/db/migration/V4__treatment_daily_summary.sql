@@ -0,0 +1,51 @@
+-- Care minutes and number of treatments per day, patient and caregiver. The triggers keep
+-- the summary up to date on every write to treatment, so reports never scan the history.
+CREATE TABLE IF NOT EXISTS treatment_daily_summary (
+   summary_date TEXT NOT NULL,
+   pid INTEGER NOT NULL,
+   cgid INTEGER NOT NULL,
+   minutes INTEGER NOT NULL,
+   treatment_count INTEGER NOT NULL,
+   PRIMARY KEY (summary_date, pid, cgid)
+) WITHOUT ROWID;
+
+CREATE TRIGGER IF NOT EXISTS trg_treatment_summary_insert AFTER INSERT ON treatment
+BEGIN
+   INSERT INTO treatment_daily_summary (summary_date, pid, cgid, minutes, treatment_count)
+   VALUES (NEW.treatment_date, NEW.pid, NEW.cgid, (strftime('%s', NEW.end) - strftime('%s', NEW.begin)) / 60, 1)
+   ON CONFLICT (summary_date, pid, cgid) DO UPDATE SET
+      minutes = minutes + excluded.minutes,
+      treatment_count = treatment_count + 1;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_treatment_summary_delete AFTER DELETE ON treatment
+BEGIN
+   UPDATE treatment_daily_summary SET
+      minutes = minutes - (strftime('%s', OLD.end) - strftime('%s', OLD.begin)) / 60,
+      treatment_count = treatment_count - 1
+   WHERE summary_date = OLD.treatment_date AND pid = OLD.pid AND cgid = OLD.cgid;
+   DELETE FROM treatment_daily_summary
+   WHERE summary_date = OLD.treatment_date AND pid = OLD.pid AND cgid = OLD.cgid AND treatment_count <= 0;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trg_treatment_summary_update
+AFTER UPDATE OF pid, treatment_date, begin, end, cgid ON treatment
+BEGIN
+   UPDATE treatment_daily_summary SET
+      minutes = minutes - (strftime('%s', OLD.end) - strftime('%s', OLD.begin)) / 60,
+      treatment_count = treatment_count - 1
+   WHERE summary_date = OLD.treatment_date AND pid = OLD.pid AND cgid = OLD.cgid;
+   DELETE FROM treatment_daily_summary
+   WHERE summary_date = OLD.treatment_date AND pid = OLD.pid AND cgid = OLD.cgid AND treatment_count <= 0;
+   INSERT INTO treatment_daily_summary (summary_date, pid, cgid, minutes, treatment_count)
+   VALUES (NEW.treatment_date, NEW.pid, NEW.cgid, (strftime('%s', NEW.end) - strftime('%s', NEW.begin)) / 60, 1)
+   ON CONFLICT (summary_date, pid, cgid) DO UPDATE SET
+      minutes = minutes + excluded.minutes,
+      treatment_count = treatment_count + 1;
+END;
+
+DELETE FROM treatment_daily_summary;
+
+INSERT INTO treatment_daily_summary (summary_date, pid, cgid, minutes, treatment_count)
+SELECT treatment_date, pid, cgid, SUM((strftime('%s', end) - strftime('%s', begin)) / 60), COUNT(*)
+FROM treatment GROUP BY treatment_date, pid, cgid;
@@ -0,0 +1,8 @@
+-- Row versions for optimistic locking between several workstations. Every update increments
+-- the version of the row and only succeeds, if the row still has the version, which was read.
+-- The columns are appended, so the positions of the existing columns do not change.
+ALTER TABLE patient ADD COLUMN version INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE caregiver ADD COLUMN version INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE treatment ADD COLUMN version INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- Indexes for the sorted pages of the patient, caregiver and treatment views. Every index ends
+-- implicitly with the key of the row, so ORDER BY column, key and the keyset condition of the
+-- next page are answered by the index without sorting.
+CREATE INDEX IF NOT EXISTS idx_patient_surname ON patient (surname);
+
+CREATE INDEX IF NOT EXISTS idx_patient_roomnumber ON patient (roomnumber);
+
+CREATE INDEX IF NOT EXISTS idx_caregiver_surname ON caregiver (surname);
+
+CREATE INDEX IF NOT EXISTS idx_treatment_pid_date ON treatment (pid, treatment_date);
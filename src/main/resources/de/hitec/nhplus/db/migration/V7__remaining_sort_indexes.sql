@@ -0,0 +1,17 @@
+-- Indexes for the sortable columns, which V6 left out, so every sorted page of the patient,
+-- caregiver and treatment views is read from an index instead of a temporary sort tree. As in
+-- V6, every index ends implicitly with the key of the row, which orders equal values. Sorting by
+-- pid is served by idx_treatment_pid_date from V6, whose leading column is pid.
+CREATE INDEX IF NOT EXISTS idx_patient_firstname ON patient (firstname);
+
+CREATE INDEX IF NOT EXISTS idx_patient_dateofbirth ON patient (dateOfBirth);
+
+CREATE INDEX IF NOT EXISTS idx_patient_carelevel ON patient (carelevel);
+
+CREATE INDEX IF NOT EXISTS idx_caregiver_firstname ON caregiver (firstname);
+
+CREATE INDEX IF NOT EXISTS idx_caregiver_telnumber ON caregiver (telNumber);
+
+CREATE INDEX IF NOT EXISTS idx_treatment_begin ON treatment (begin);
+
+CREATE INDEX IF NOT EXISTS idx_treatment_end ON treatment ("end");
@@ -0,0 +1,101 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.ChangeTracker;
+import de.hitec.nhplus.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests, that updates write only the columns, which the {@link ChangeTracker} of an entity marked as changed.
+ */
+class DirtyColumnUpdateTest {
+
+    private Connection connection;
+    private PatientDao dao;
+    private Patient patient;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        QueryCache.clear();
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        SchemaMigrator.migrate(this.connection);
+        this.dao = new PatientDao(this.connection);
+        this.dao.create(new Patient("Elisabeth", "Müller", LocalDate.of(1940, 5, 12), "3", "101"));
+        this.patient = this.dao.readAll().get(0);
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        this.dao.close();
+        this.connection.close();
+    }
+
+    private String queryString(String sql) throws SQLException {
+        try (Statement statement = this.connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            return result.next() ? result.getString(1) : null;
+        }
+    }
+
+    @Test
+    void updateWritesOnlyTheChangedColumns() throws SQLException {
+        // changed behind the back of the DAO, without a new version, so only an update of all columns overwrites it
+        try (Statement statement = this.connection.createStatement()) {
+            statement.executeUpdate("UPDATE patient SET roomnumber = '999'");
+        }
+        this.patient.setSurname("Meier");
+        this.dao.update(this.patient);
+
+        assertEquals("Meier", queryString("SELECT surname FROM patient"));
+        assertEquals("999", queryString("SELECT roomnumber FROM patient"));
+        assertEquals("1", queryString("SELECT version FROM patient"));
+        assertFalse(this.patient.getChangeTracker().hasChanges());
+        assertEquals(1, this.patient.getChangeTracker().getVersion());
+    }
+
+    @Test
+    void unchangedEntityIsNotWritten() throws SQLException {
+        this.patient.setSurname("Müller");
+        assertFalse(this.patient.getChangeTracker().hasChanges(), "setting the same value is no change");
+        this.dao.update(this.patient);
+        assertEquals("0", queryString("SELECT version FROM patient"));
+        assertNull(this.dao.getUpdateStatement(this.patient));
+    }
+
+    @Test
+    void everyColumnSetGetsItsOwnStatement() throws SQLException {
+        this.patient.setSurname("Meier");
+        ChangeTracker.Snapshot surname = this.patient.getChangeTracker().snapshot();
+        this.patient.setCareLevel("4");
+        ChangeTracker.Snapshot both = this.patient.getChangeTracker().snapshot();
+
+        assertSame(this.dao.getUpdateStatement(this.patient, surname),
+                this.dao.getUpdateStatement(this.patient, surname), "the statement of a column set is reused");
+        assertNotSame(this.dao.getUpdateStatement(this.patient, surname),
+                this.dao.getUpdateStatement(this.patient, both));
+    }
+
+    @Test
+    void changeAfterTheSnapshotIsKeptWhenTheSnapshotIsCleared() {
+        this.patient.setSurname("Meier");
+        this.patient.setCareLevel("4");
+        ChangeTracker.Snapshot written = this.patient.getChangeTracker().snapshot();
+        this.patient.setSurname("Schulz");
+
+        this.patient.getChangeTracker().clear(written, 1);
+        assertTrue(this.patient.getChangeTracker().isChanged("surname"));
+        assertFalse(this.patient.getChangeTracker().isChanged("careLevel"));
+        assertEquals("Schulz", this.patient.getChangeTracker().snapshot().getValue("surname"));
+        assertEquals(1, this.patient.getChangeTracker().getVersion());
+    }
+}
@@ -0,0 +1,105 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests detecting the changes of another workstation by the version of a row. Both workstations open the same shared
+ * in-memory database with their own connection.
+ */
+class OptimisticLockTest {
+
+    private static final String URL = "jdbc:sqlite:file:nhplus-versions?mode=memory&cache=shared";
+
+    private Connection first;
+    private Connection second;
+    private PatientDao firstDao;
+    private PatientDao secondDao;
+    private long pid;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        QueryCache.clear();
+        this.first = DriverManager.getConnection(URL);
+        this.second = DriverManager.getConnection(URL);
+        SchemaMigrator.migrate(this.first);
+        this.firstDao = new PatientDao(this.first);
+        this.secondDao = new PatientDao(this.second);
+        this.firstDao.create(new Patient("Elisabeth", "Müller", LocalDate.of(1940, 5, 12), "3", "101"));
+        this.pid = this.firstDao.readAll().get(0).getId();
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        this.firstDao.close();
+        this.secondDao.close();
+        this.first.close();
+        this.second.close();
+    }
+
+    @Test
+    void updateOfAnOutdatedVersionFailsAndKeepsTheChanges() throws SQLException {
+        Patient atFirst = this.firstDao.read(this.pid);
+        Patient atSecond = this.secondDao.read(this.pid);
+        atFirst.setSurname("Meier");
+        this.firstDao.update(atFirst);
+
+        atSecond.setRoomNumber("205");
+        OptimisticLockException exception =
+                assertThrows(OptimisticLockException.class, () -> this.secondDao.update(atSecond));
+        assertEquals("Patient", exception.getEntity());
+        assertTrue(atSecond.getChangeTracker().isChanged("roomNumber"));
+        assertEquals(0, atSecond.getChangeTracker().getVersion());
+
+        Patient current = this.secondDao.read(this.pid);
+        assertEquals("Meier", current.getSurname());
+        assertEquals("101", current.getRoomNumber());
+        assertEquals(1, current.getChangeTracker().getVersion());
+    }
+
+    @Test
+    void changesAppliedToTheCurrentVersionAreWritten() throws SQLException {
+        Patient atFirst = this.firstDao.read(this.pid);
+        Patient atSecond = this.secondDao.read(this.pid);
+        atFirst.setSurname("Meier");
+        this.firstDao.update(atFirst);
+        atSecond.setRoomNumber("205");
+        assertThrows(OptimisticLockException.class, () -> this.secondDao.update(atSecond));
+
+        Patient current = this.secondDao.read(this.pid);
+        atSecond.copyChangesTo(current);
+        this.secondDao.update(current);
+
+        Patient written = this.firstDao.read(this.pid);
+        assertEquals("Meier", written.getSurname());
+        assertEquals("205", written.getRoomNumber());
+        assertEquals(2, written.getChangeTracker().getVersion());
+    }
+
+    @Test
+    void updateOfADeletedRowFails() throws SQLException {
+        Patient atSecond = this.secondDao.read(this.pid);
+        this.firstDao.deleteById(this.pid);
+        atSecond.setSurname("Meier");
+        assertThrows(OptimisticLockException.class, () -> this.secondDao.update(atSecond));
+    }
+
+    @Test
+    void consecutiveUpdatesOfTheSameWorkstationDoNotConflict() throws SQLException {
+        Patient patient = this.firstDao.read(this.pid);
+        patient.setSurname("Meier");
+        this.firstDao.update(patient);
+        patient.setSurname("Schulz");
+        this.firstDao.update(patient);
+        assertEquals(2, this.secondDao.read(this.pid).getChangeTracker().getVersion());
+    }
+}
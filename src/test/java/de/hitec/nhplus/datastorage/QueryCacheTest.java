@@ -0,0 +1,116 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the pages, which <code>PagedDaoImp</code> serves from the {@link QueryCache}, against an in-memory database.
+ */
+class QueryCacheTest {
+
+    private Connection connection;
+    private PatientDao dao;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        QueryCache.clear();
+        DaoMetrics.getInstance().reset();
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        SchemaMigrator.migrate(this.connection);
+        this.dao = new PatientDao(this.connection);
+        this.dao.create(new Patient("Elisabeth", "Müller", LocalDate.of(1940, 5, 12), "3", "101"));
+        this.dao.create(new Patient("Karl", "Schmidt", LocalDate.of(1938, 1, 3), "2", "102"));
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        this.dao.close();
+        this.connection.close();
+    }
+
+    private List<String> readSurnames() throws SQLException {
+        return this.dao.readPage("surname", true, null, 10).getRows().stream().map(Patient::getSurname).toList();
+    }
+
+    @Test
+    void editingARowDoesNotChangeTheCachedPage() throws SQLException {
+        Page<Patient> first = this.dao.readPage("surname", true, null, 10);
+        first.getRows().get(0).setSurname("Meier");
+
+        Page<Patient> second = this.dao.readPage("surname", true, null, 10);
+        assertNotSame(first.getRows().get(0), second.getRows().get(0));
+        assertEquals("Müller", second.getRows().get(0).getSurname());
+        assertFalse(second.getRows().get(0).getChangeTracker().hasChanges());
+        assertEquals(first.getRows().get(0).getChangeTracker().getVersion(),
+                second.getRows().get(0).getChangeTracker().getVersion());
+    }
+
+    @Test
+    void everyReadFromTheCacheGetsItsOwnRows() throws SQLException {
+        this.dao.readPage("surname", true, null, 10);
+        Page<Patient> second = this.dao.readPage("surname", true, null, 10);
+        Page<Patient> third = this.dao.readPage("surname", true, null, 10);
+        second.getRows().get(1).setSurname("Meier");
+        assertEquals("Schmidt", third.getRows().get(1).getSurname());
+    }
+
+    @Test
+    void unchangedDataIsServedFromTheCache() throws SQLException {
+        readSurnames();
+        readSurnames();
+        assertEquals(1, DaoMetrics.getInstance().getQueryCacheHits());
+        assertEquals(1, DaoMetrics.getInstance().getQueryCacheMisses());
+    }
+
+    @Test
+    void writeOfAnyDaoOfTheTableMakesTheCachedPageStale() throws SQLException {
+        assertEquals(List.of("Müller", "Schmidt"), readSurnames());
+        this.dao.create(new Patient("Hans", "Schulz", LocalDate.of(1945, 8, 20), "1", "103"));
+        assertEquals(List.of("Müller", "Schmidt", "Schulz"), readSurnames());
+
+        PatientDao other = new PatientDao(this.connection);
+        Patient patient = other.read(this.dao.readAll().get(0).getId());
+        patient.setSurname("Meier");
+        other.update(patient);
+        other.close();
+        assertEquals(List.of("Meier", "Schmidt", "Schulz"), readSurnames());
+        assertEquals(0, DaoMetrics.getInstance().getQueryCacheHits());
+    }
+
+    @Test
+    void commitOfAnotherConnectionMakesTheCachedPageStale() throws Exception {
+        Path file = Files.createTempFile("nhplus-query-cache", ".db");
+        try (Connection reader = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Connection writer = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            SchemaMigrator.migrate(reader);
+            PatientDao readerDao = new PatientDao(reader);
+            readerDao.create(new Patient("Elisabeth", "Müller", LocalDate.of(1940, 5, 12), "3", "101"));
+            assertEquals("Müller", readerDao.readPage("surname", true, null, 10).getRows().get(0).getSurname());
+            long[] stamp = readerDao.getDataStamp("Patient");
+
+            // another workstation writes without the DAO, so only the data_version of the reader changes
+            try (Statement statement = writer.createStatement()) {
+                statement.executeUpdate("UPDATE patient SET surname = 'Meier'");
+            }
+            assertNotEquals(stamp[1], readerDao.getDataStamp("Patient")[1]);
+            assertEquals(stamp[0], readerDao.getDataStamp("Patient")[0]);
+            assertEquals("Meier", readerDao.readPage("surname", true, null, 10).getRows().get(0).getSurname());
+            readerDao.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
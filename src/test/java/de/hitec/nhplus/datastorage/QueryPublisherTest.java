@@ -0,0 +1,109 @@
+package de.hitec.nhplus.datastorage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the backpressure and the error handling of {@link QueryPublisher}. The rows are read on the calling thread, so
+ * every signal is received before <code>request</code> returns.
+ */
+class QueryPublisherTest {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger read = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private QueryPublisher<String> publisher(String... rows) {
+        return new QueryPublisher<>(() -> {
+            this.opened.incrementAndGet();
+            return List.of(rows).stream().peek(row -> this.read.incrementAndGet()).onClose(() -> this.closed.set(true));
+        }, Runnable::run);
+    }
+
+    /**
+     * Records the signals and requests the given number of rows, when it is subscribed.
+     */
+    private static class Recorder implements Flow.Subscriber<String> {
+        private final long initialRequest;
+        private final List<String> rows = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        private Recorder(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(this.initialRequest);
+        }
+
+        @Override
+        public void onNext(String row) {
+            this.rows.add(row);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+
+    @Test
+    void requestOneReadsOneRowAtATime() {
+        Recorder subscriber = new Recorder(1);
+        publisher("a", "b", "c").subscribe(subscriber);
+        assertEquals(List.of("a"), subscriber.rows);
+        assertEquals(1, this.read.get(), "only the requested row is read from the cursor");
+        assertFalse(this.closed.get());
+
+        subscriber.subscription.request(1);
+        assertEquals(List.of("a", "b"), subscriber.rows);
+        assertEquals(2, this.read.get());
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(1);
+        subscriber.subscription.request(1);
+        assertEquals(List.of("a", "b", "c"), subscriber.rows);
+        assertTrue(subscriber.completed);
+        assertTrue(this.closed.get());
+        assertNull(subscriber.error);
+        assertEquals(1, this.opened.get(), "the cursor is opened once per subscription");
+    }
+
+    @Test
+    void throwingSubscriberClosesTheCursorAndGetsTheError() {
+        IllegalStateException failure = new IllegalStateException("Zeile kann nicht angezeigt werden");
+        Recorder subscriber = new Recorder(Long.MAX_VALUE) {
+            @Override
+            public void onNext(String row) {
+                super.onNext(row);
+                throw failure;
+            }
+        };
+        publisher("a", "b", "c").subscribe(subscriber);
+        assertEquals(List.of("a"), subscriber.rows);
+        assertSame(failure, subscriber.error);
+        assertFalse(subscriber.completed);
+        assertTrue(this.closed.get());
+
+        // the subscription is finished, but further requests are still handled
+        subscriber.subscription.request(1);
+        assertEquals(List.of("a"), subscriber.rows);
+        assertEquals(1, this.opened.get());
+    }
+}
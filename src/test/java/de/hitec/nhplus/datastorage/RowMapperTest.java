@@ -0,0 +1,67 @@
+package de.hitec.nhplus.datastorage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests looking up the columns of a {@link RowMapper} in the results of an in-memory database.
+ */
+class RowMapperTest {
+
+    private static final RowMapper<String> MAPPER = new RowMapper<>(new String[]{"id", "name"}, "remark") {
+        @Override
+        protected String map(ResultSet result, int[] columns) throws SQLException {
+            String remark = columns[2] > 0 ? result.getString(columns[2]) : "-";
+            return result.getLong(columns[0]) + " " + result.getString(columns[1]) + " " + remark;
+        }
+    };
+
+    private Connection connection;
+    private Statement statement;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        this.statement = this.connection.createStatement();
+        this.statement.execute("CREATE TABLE t (id INTEGER, name TEXT, remark TEXT)");
+        this.statement.execute("INSERT INTO t VALUES (1, 'a', 'x')");
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        this.statement.close();
+        this.connection.close();
+    }
+
+    @Test
+    void mapsColumnsByNameInAnyOrderAndCase() throws SQLException {
+        try (ResultSet result = this.statement.executeQuery("SELECT REMARK, Name, id FROM t")) {
+            assertEquals("1 a x", MAPPER.mapAll(result).get(0));
+        }
+    }
+
+    @Test
+    void missingOptionalColumnGetsPositionZero() throws SQLException {
+        try (ResultSet result = this.statement.executeQuery("SELECT id, name FROM t")) {
+            assertEquals(0, MAPPER.resolve(result)[2]);
+            assertEquals("1 a -", MAPPER.mapAll(result).get(0));
+        }
+    }
+
+    @Test
+    void missingRequiredColumnFailsWithItsName() throws SQLException {
+        try (ResultSet result = this.statement.executeQuery("SELECT id, remark FROM t")) {
+            SQLException exception = assertThrows(SQLException.class, () -> MAPPER.resolve(result));
+            assertTrue(exception.getMessage().contains("name"), exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package de.hitec.nhplus.datastorage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests splitting the migration scripts into statements and applying the migrations to an in-memory database.
+ */
+class SchemaMigratorTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        this.connection.close();
+    }
+
+    @Test
+    void splitsAtSemicolonsAndSkipsBlankStatements() {
+        List<String> statements = SchemaMigrator.splitStatements("CREATE TABLE a (x);\n\nDROP TABLE b;;\n");
+        assertEquals(List.of("CREATE TABLE a (x);", "DROP TABLE b;"), statements);
+    }
+
+    @Test
+    void splitsSeveralStatementsOnOneLine() {
+        List<String> statements = SchemaMigrator.splitStatements("DELETE FROM a; DELETE FROM b;");
+        assertEquals(List.of("DELETE FROM a;", "DELETE FROM b;"), statements);
+    }
+
+    @Test
+    void keepsLastStatementWithoutSemicolon() {
+        List<String> statements = SchemaMigrator.splitStatements("DELETE FROM a;\nDELETE FROM b\n");
+        assertEquals(List.of("DELETE FROM a;", "DELETE FROM b"), statements);
+    }
+
+    @Test
+    void keepsSemicolonsWithinStringLiterals() {
+        List<String> statements = SchemaMigrator.splitStatements(
+                "INSERT INTO t VALUES ('a;\nb', 'it''s; ok');\nINSERT INTO t VALUES ('c');");
+        assertEquals(2, statements.size());
+        assertEquals("INSERT INTO t VALUES ('a;\nb', 'it''s; ok');", statements.get(0));
+        assertEquals("INSERT INTO t VALUES ('c');", statements.get(1));
+    }
+
+    @Test
+    void keepsSemicolonsWithinQuotedIdentifiers() {
+        List<String> statements = SchemaMigrator.splitStatements(
+                "CREATE TABLE \"a;b\" ([c;d] TEXT, `e;f` TEXT);");
+        assertEquals(List.of("CREATE TABLE \"a;b\" ([c;d] TEXT, `e;f` TEXT);"), statements);
+    }
+
+    @Test
+    void removesLineAndBlockComments() {
+        List<String> statements = SchemaMigrator.splitStatements(
+                "-- comment; with semicolon\nDELETE FROM a; -- trailing; comment\n" +
+                        "/* block; comment */ DELETE FROM b /* inline */;");
+        assertEquals(2, statements.size());
+        assertEquals("DELETE FROM a;", statements.get(0));
+        assertFalse(statements.get(1).contains("comment"));
+        assertTrue(statements.get(1).startsWith("DELETE FROM b"));
+        assertTrue(statements.get(1).endsWith(";"));
+    }
+
+    @Test
+    void keepsCommentMarkersWithinStringLiterals() {
+        List<String> statements = SchemaMigrator.splitStatements("INSERT INTO t VALUES ('--x', '/*y*/');");
+        assertEquals(List.of("INSERT INTO t VALUES ('--x', '/*y*/');"), statements);
+    }
+
+    @Test
+    void keepsTriggerBodyInOneStatement() {
+        String trigger = "CREATE TRIGGER IF NOT EXISTS trg AFTER DELETE ON a\n" +
+                "BEGIN\n" +
+                "   DELETE FROM b WHERE id = OLD.id;\n" +
+                "   UPDATE c SET n = CASE WHEN n > 0 THEN n - 1 ELSE 0 END;\n" +
+                "END;";
+        List<String> statements = SchemaMigrator.splitStatements(trigger + "\nDELETE FROM a;");
+        assertEquals(List.of(trigger, "DELETE FROM a;"), statements);
+    }
+
+    @Test
+    void recognizesTemporaryTriggersInAnyCase() {
+        String trigger = "create temp trigger trg after insert on a begin delete from b; end;";
+        List<String> statements = SchemaMigrator.splitStatements(trigger + " delete from a;");
+        assertEquals(List.of(trigger, "delete from a;"), statements);
+    }
+
+    @Test
+    void keepsTriggerReferencingOnlyTheEndColumnInOneStatement() throws SQLException {
+        String trigger = "CREATE TRIGGER trg_end AFTER UPDATE OF end ON treatment\n" +
+                "BEGIN\n" +
+                "   UPDATE log SET last_end = OLD.end;\n" +
+                "   DELETE FROM log WHERE last_end IS NULL;\n" +
+                "END;";
+        List<String> statements = SchemaMigrator.splitStatements(trigger + "\nDELETE FROM log;");
+        assertEquals(List.of(trigger, "DELETE FROM log;"), statements);
+
+        try (Statement statement = this.connection.createStatement()) {
+            statement.execute("CREATE TABLE treatment (begin TEXT, end TEXT)");
+            statement.execute("CREATE TABLE log (last_end TEXT)");
+            statement.execute(statements.get(0));
+            statement.execute("INSERT INTO log VALUES ('x')");
+            statement.execute("INSERT INTO treatment VALUES ('10:00', '11:00')");
+            statement.execute("UPDATE treatment SET end = '12:00'");
+        }
+        assertEquals(1, count("SELECT COUNT(*) FROM log WHERE last_end = '11:00'"));
+    }
+
+    @Test
+    void ignoresKeywordColumnsInTheTriggerHeaderAndBody() {
+        String trigger = "CREATE TRIGGER trg AFTER UPDATE OF begin, end ON treatment WHEN NEW.begin <> OLD.begin\n" +
+                "BEGIN\n" +
+                "   UPDATE treatment SET end = NEW.begin WHERE begin > end;\n" +
+                "   UPDATE log SET n = CASE WHEN NEW.end IS NULL THEN 0 ELSE 1 END;\n" +
+                "END;";
+        List<String> statements = SchemaMigrator.splitStatements(trigger + "\nDELETE FROM log;");
+        assertEquals(List.of(trigger, "DELETE FROM log;"), statements);
+    }
+
+    @Test
+    void splitsBundledTriggerScript() throws IOException {
+        List<String> statements = SchemaMigrator.splitStatements(readMigration("V4__treatment_daily_summary.sql"));
+        assertEquals(6, statements.size());
+        assertTrue(statements.get(1).startsWith("CREATE TRIGGER"));
+        assertTrue(statements.get(1).endsWith("END;"));
+    }
+
+    @Test
+    void migratesEmptyDatabaseToLatestVersion() throws SQLException {
+        int applied = SchemaMigrator.migrate(this.connection);
+        assertTrue(applied > 0);
+        assertEquals(applied, SchemaMigrator.readCurrentVersion(this.connection));
+        assertEquals(applied, count("SELECT COUNT(*) FROM schema_version"));
+    }
+
+    @Test
+    void migratingAgainAppliesNothing() throws SQLException {
+        int applied = SchemaMigrator.migrate(this.connection);
+        assertEquals(0, SchemaMigrator.migrate(this.connection));
+        assertEquals(applied, SchemaMigrator.readCurrentVersion(this.connection));
+        assertEquals(applied, count("SELECT COUNT(*) FROM schema_version"));
+    }
+
+    @Test
+    void migratingAgainKeepsData() throws SQLException {
+        SchemaMigrator.migrate(this.connection);
+        try (Statement statement = this.connection.createStatement()) {
+            statement.execute("INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber) " +
+                    "VALUES ('Anna', 'Meier', '1940-01-01', '2', '101')");
+        }
+        SchemaMigrator.migrate(this.connection);
+        assertEquals(1, count("SELECT COUNT(*) FROM patient"));
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Statement statement = this.connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            return result.next() ? result.getLong(1) : 0;
+        }
+    }
+
+    private static String readMigration(String name) throws IOException {
+        try (InputStream stream = SchemaMigrator.class.getResourceAsStream("/de/hitec/nhplus/db/migration/" + name)) {
+            assertNotNull(stream);
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests compiling a {@link TreatmentCriteria} to its condition and parameters, and the treatments the condition selects
+ * in an in-memory database.
+ */
+class TreatmentCriteriaTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2024, 3, 4);
+
+    private Connection connection;
+    private TreatmentDao dao;
+    private long mueller;
+    private long schmidt;
+    private long nurse;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        QueryCache.clear();
+        TreatmentTypeCache.clear();
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        SchemaMigrator.migrate(this.connection);
+        PatientDao patients = new PatientDao(this.connection);
+        patients.create(new Patient("Elisabeth", "Müller", LocalDate.of(1940, 5, 12), "3", "101"));
+        patients.create(new Patient("Karl", "Schmidt", LocalDate.of(1938, 1, 3), "2", "102"));
+        this.mueller = patients.readPage("surname", true, null, 10).getRows().get(0).getId();
+        this.schmidt = patients.readPage("surname", true, null, 10).getRows().get(1).getId();
+        patients.close();
+        CaregiverDao caregivers = new CaregiverDao(this.connection);
+        caregivers.create(new Caregiver("Anna", "Berg", "0171 123456"));
+        this.nurse = caregivers.readAll().get(0).getId();
+        caregivers.close();
+
+        this.dao = new TreatmentDao(this.connection);
+        createTreatment(this.mueller, MONDAY, "Waschen");
+        createTreatment(this.mueller, MONDAY.plusDays(1), "Verbandswechsel");
+        createTreatment(this.schmidt, MONDAY.plusDays(2), "Waschen");
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        this.dao.close();
+        this.connection.close();
+    }
+
+    private void createTreatment(long pid, LocalDate date, String description) throws SQLException {
+        this.dao.create(new Treatment(pid, date, LocalTime.of(8, 0), LocalTime.of(8, 30), description, "",
+                this.nurse));
+    }
+
+    private List<Long> readPids(TreatmentCriteria criteria) throws SQLException {
+        return this.dao.readTreatments(criteria).stream().map(Treatment::getPid).toList();
+    }
+
+    @Test
+    void emptyCriteriaHaveNoCondition() throws SQLException {
+        TreatmentCriteria criteria = TreatmentCriteria.builder().description(" ").careLevel(null).build();
+        assertTrue(criteria.isEmpty());
+        assertNull(criteria.getWhere());
+        assertEquals(List.of(), criteria.getParameters());
+        assertEquals(3, readPids(criteria).size());
+    }
+
+    @Test
+    void criteriaAreCompiledInAFixedOrderWithOneParameterPerValue() {
+        TreatmentCriteria criteria = TreatmentCriteria.builder()
+                .roomNumber("101")
+                .description("Waschen")
+                .between(MONDAY, MONDAY.plusDays(6))
+                .patient(7L)
+                .build();
+        assertEquals("pid = ? AND treatment_date >= ? AND treatment_date <= ? AND " +
+                "ttid = (SELECT ttid FROM treatment_type WHERE name = ?) AND " +
+                "pid IN (SELECT pid FROM patient WHERE roomnumber = ?)", criteria.getWhere());
+        assertEquals(List.of(7L, "2024-03-04", "2024-03-10", "Waschen", "101"), criteria.getParameters());
+    }
+
+    @Test
+    void criteriaWithOtherValuesHaveTheSameCondition() {
+        TreatmentCriteria first = TreatmentCriteria.builder().caregiver(1L).careLevel("2").build();
+        TreatmentCriteria second = TreatmentCriteria.builder().caregiver(2L).careLevel(" 3 ").build();
+        assertEquals(first.getWhere(), second.getWhere());
+        assertEquals(List.of(2L, "3"), second.getParameters());
+    }
+
+    @Test
+    void valuesAreBoundAsParametersAndNotConcatenated() throws SQLException {
+        TreatmentCriteria criteria = TreatmentCriteria.builder().description("Waschen' OR '1' = '1").build();
+        assertFalse(criteria.getWhere().contains("Waschen"));
+        assertEquals(List.of(), readPids(criteria));
+    }
+
+    @Test
+    void conditionSelectsTheMatchingTreatments() throws SQLException {
+        assertEquals(List.of(this.mueller, this.schmidt),
+                readPids(TreatmentCriteria.builder().description("Waschen").build()));
+        assertEquals(List.of(this.mueller, this.mueller),
+                readPids(TreatmentCriteria.builder().careLevel("3").build()));
+        assertEquals(List.of(this.mueller, this.schmidt),
+                readPids(TreatmentCriteria.builder().from(MONDAY.plusDays(1)).caregiver(this.nurse).build()));
+        assertEquals(List.of(this.schmidt), readPids(TreatmentCriteria.builder()
+                .description("Waschen").roomNumber("102").to(MONDAY.plusDays(2)).build()));
+    }
+
+    @Test
+    void toBuilderDerivesAChangedFilter() {
+        TreatmentCriteria week = TreatmentCriteria.builder().patient(7L).between(MONDAY, MONDAY.plusDays(6)).build();
+        TreatmentCriteria day = week.toBuilder().to(MONDAY).build();
+        assertEquals(week.getWhere(), day.getWhere());
+        assertEquals(List.of(7L, "2024-03-04", "2024-03-04"), day.getParameters());
+        assertEquals(MONDAY.plusDays(6), week.getTo());
+    }
+}
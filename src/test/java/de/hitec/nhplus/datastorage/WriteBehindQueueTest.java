@@ -0,0 +1,131 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.ChangeTracker;
+import de.hitec.nhplus.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests coalescing and retrying the writes of a {@link WriteBehindQueue}. The queue opens its own connection, so the
+ * database is a temporary file instead of an in-memory database.
+ */
+class WriteBehindQueueTest {
+
+    private Path file;
+    private DatabaseConfig config;
+    private Connection connection;
+    private PatientDao dao;
+    private Patient patient;
+    private WriteBehindQueue<Patient> queue;
+
+    // the updates the queue executed, and how many of them fail before the first one is written
+    private final AtomicInteger updates = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final List<Boolean> failing = new CopyOnWriteArrayList<>();
+    private final CountDownLatch saved = new CountDownLatch(1);
+    private final CountDownLatch failed = new CountDownLatch(1);
+
+    @BeforeEach
+    void openDatabase() throws Exception {
+        QueryCache.clear();
+        this.file = Files.createTempFile("nhplus-write-behind", ".db");
+        this.config = ConnectionBuilder.getConfig().withPath(this.file.toString()).withProfile("fast");
+        this.connection = ConnectionBuilder.openConnection(this.config);
+        SchemaMigrator.migrate(this.connection);
+        this.dao = new PatientDao(this.connection);
+        this.dao.create(new Patient("Elisabeth", "Müller", LocalDate.of(1940, 5, 12), "3", "101"));
+        this.patient = this.dao.readAll().get(0);
+
+        this.queue = new WriteBehindQueue<>("Patient", this.config, this::createCountingDao, Patient::getId,
+                Patient::getChangeTracker);
+        this.queue.addListener((pending, failed) -> {
+            this.failing.add(failed);
+            if (failed) {
+                this.failed.countDown();
+            } else if (pending == 0) {
+                this.saved.countDown();
+            }
+        });
+    }
+
+    @AfterEach
+    void closeDatabase() throws Exception {
+        this.queue.close();
+        this.dao.close();
+        this.connection.close();
+        Files.deleteIfExists(this.file);
+    }
+
+    private DaoImp<Patient> createCountingDao(Connection connection) {
+        return new PatientDao(connection) {
+            @Override
+            long update(Patient patient, ChangeTracker.Snapshot written) throws SQLException {
+                WriteBehindQueueTest.this.updates.incrementAndGet();
+                if (WriteBehindQueueTest.this.failures.getAndDecrement() > 0) {
+                    throw new SQLException("Datenbank ist gesperrt");
+                }
+                return super.update(patient, written);
+            }
+        };
+    }
+
+    @Test
+    void repeatedEditsOfARowAreWrittenWithOneUpdate() throws Exception {
+        this.patient.setSurname("Meier");
+        this.queue.submit(this.patient);
+        this.patient.setRoomNumber("205");
+        this.queue.submit(this.patient);
+        assertEquals(1, this.queue.getPendingCount());
+
+        assertTrue(this.saved.await(10, TimeUnit.SECONDS));
+        assertEquals(1, this.updates.get());
+        Patient written = this.dao.read(this.patient.getId());
+        assertEquals("Meier", written.getSurname());
+        assertEquals("205", written.getRoomNumber());
+        assertEquals(1, written.getChangeTracker().getVersion());
+        assertFalse(this.patient.getChangeTracker().hasChanges());
+        assertEquals(1, this.patient.getChangeTracker().getVersion());
+    }
+
+    @Test
+    void failedFlushIsRetriedWithTheSameChanges() throws Exception {
+        this.failures.set(1);
+        this.patient.setSurname("Meier");
+        this.queue.submit(this.patient);
+
+        assertTrue(this.saved.await(10, TimeUnit.SECONDS));
+        assertEquals(2, this.updates.get());
+        assertTrue(this.failing.contains(true), "the failed flush is reported to the listeners");
+        assertEquals(0, this.queue.getPendingCount());
+        assertEquals("Meier", this.dao.read(this.patient.getId()).getSurname());
+        assertFalse(this.patient.getChangeTracker().hasChanges());
+    }
+
+    @Test
+    void changesOfAFailedFlushAreKeptUntilTheyAreWritten() throws Exception {
+        this.failures.set(1);
+        this.patient.setSurname("Meier");
+        this.queue.submit(this.patient);
+
+        // the tracker is only cleared after the commit, so the rolled back change is still there
+        assertTrue(this.failed.await(10, TimeUnit.SECONDS));
+        assertTrue(this.patient.getChangeTracker().isChanged("surname"));
+        assertEquals(0, this.patient.getChangeTracker().getVersion());
+        assertEquals("Müller", this.dao.read(this.patient.getId()).getSurname());
+        assertTrue(this.saved.await(10, TimeUnit.SECONDS));
+    }
+}
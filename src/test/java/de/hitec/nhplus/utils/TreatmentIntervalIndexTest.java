@@ -0,0 +1,124 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.model.Treatment;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the overlap and boundary logic of {@link TreatmentIntervalIndex}. Intervals are half-open, so adjacent
+ * treatments never overlap.
+ */
+class TreatmentIntervalIndexTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    private static Treatment treatment(long tid, String begin, String end) {
+        return new Treatment(tid, 1, DAY, LocalTime.parse(begin), LocalTime.parse(end), "Waschen", null, 1);
+    }
+
+    private static int minute(String time) {
+        return LocalTime.parse(time).toSecondOfDay() / 60;
+    }
+
+    @Test
+    void emptyIndexHasNoOverlapsAndOneFreeSlot() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of());
+        assertFalse(index.overlaps(minute("08:00"), minute("09:00"), 0));
+        assertTrue(index.findOverlapping(minute("08:00"), minute("09:00"), 0).isEmpty());
+        List<int[]> slots = index.freeSlots(minute("08:00"), minute("16:00"));
+        assertEquals(1, slots.size());
+        assertArrayEquals(new int[]{minute("08:00"), minute("16:00")}, slots.get(0));
+    }
+
+    @Test
+    void adjacentIntervalsDoNotOverlap() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(treatment(1, "10:00", "11:00")));
+        assertFalse(index.overlaps(minute("09:00"), minute("10:00"), 0), "ends where the treatment begins");
+        assertFalse(index.overlaps(minute("11:00"), minute("12:00"), 0), "begins where the treatment ends");
+        assertTrue(index.findOverlapping(minute("09:00"), minute("10:00"), 0).isEmpty());
+        assertTrue(index.findOverlapping(minute("11:00"), minute("12:00"), 0).isEmpty());
+    }
+
+    @Test
+    void oneMinuteIntoTheTreatmentOverlaps() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(treatment(1, "10:00", "11:00")));
+        assertTrue(index.overlaps(minute("09:00"), minute("10:01"), 0));
+        assertTrue(index.overlaps(minute("10:59"), minute("12:00"), 0));
+    }
+
+    @Test
+    void containedIntervalsOverlap() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(treatment(1, "10:00", "12:00")));
+        assertTrue(index.overlaps(minute("10:30"), minute("11:00"), 0), "slot inside the treatment");
+        assertTrue(index.overlaps(minute("09:00"), minute("13:00"), 0), "treatment inside the slot");
+        assertEquals(1, index.findOverlapping(minute("10:30"), minute("11:00"), 0).size());
+        assertEquals(1, index.findOverlapping(minute("09:00"), minute("13:00"), 0).size());
+    }
+
+    @Test
+    void equalIntervalsOverlap() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(treatment(1, "10:00", "11:00")));
+        assertTrue(index.overlaps(minute("10:00"), minute("11:00"), 0));
+        List<Treatment> overlapping = index.findOverlapping(minute("10:00"), minute("11:00"), 0);
+        assertEquals(1, overlapping.size());
+        assertEquals(1L, overlapping.get(0).getTid());
+    }
+
+    @Test
+    void excludedTreatmentDoesNotConflictWithItself() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(treatment(1, "10:00", "11:00")));
+        assertFalse(index.overlaps(minute("10:00"), minute("11:00"), 1));
+        assertTrue(index.findOverlapping(minute("10:00"), minute("11:00"), 1).isEmpty());
+    }
+
+    @Test
+    void excludingTheLongestTreatmentStillFindsTheSecondLongest() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(
+                treatment(1, "08:00", "12:00"),
+                treatment(2, "09:00", "11:00")));
+        assertTrue(index.overlaps(minute("10:30"), minute("13:00"), 1));
+        assertFalse(index.overlaps(minute("11:00"), minute("13:00"), 1));
+    }
+
+    @Test
+    void findOverlappingReturnsAllMatchesSortedByBegin() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(
+                treatment(3, "13:00", "14:00"),
+                treatment(1, "08:00", "12:00"),
+                treatment(2, "09:00", "09:30"),
+                treatment(4, "11:30", "13:00")));
+        List<Treatment> overlapping = index.findOverlapping(minute("11:00"), minute("13:00"), 0);
+        assertEquals(2, overlapping.size());
+        assertEquals(1L, overlapping.get(0).getTid());
+        assertEquals(4L, overlapping.get(1).getTid());
+    }
+
+    @Test
+    void freeSlotsSkipCoveredAndAdjacentTime() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(
+                treatment(1, "09:00", "10:00"),
+                treatment(2, "10:00", "11:00"),
+                treatment(3, "10:30", "10:45"),
+                treatment(4, "13:00", "14:00")));
+        List<int[]> slots = index.freeSlots(minute("08:00"), minute("16:00"));
+        assertEquals(3, slots.size());
+        assertArrayEquals(new int[]{minute("08:00"), minute("09:00")}, slots.get(0));
+        assertArrayEquals(new int[]{minute("11:00"), minute("13:00")}, slots.get(1));
+        assertArrayEquals(new int[]{minute("14:00"), minute("16:00")}, slots.get(2));
+    }
+
+    @Test
+    void freeSlotsAreClippedToTheShift() {
+        TreatmentIntervalIndex index = new TreatmentIntervalIndex(List.of(
+                treatment(1, "07:00", "09:00"),
+                treatment(2, "15:00", "17:00")));
+        List<int[]> slots = index.freeSlots(minute("08:00"), minute("16:00"));
+        assertEquals(1, slots.size());
+        assertArrayEquals(new int[]{minute("09:00"), minute("15:00")}, slots.get(0));
+    }
+}